@@ -7,11 +7,22 @@ mkdir -p target
 mkdir -p logs
 
 echo "Compilation du projet..."
-javac -d target -cp ".:lib/*" $(find src -name "*.java")
+javac -d target -cp ".:lib/*" $(find src/main/java src/test/java -name "*.java")
 
 if [ $? -eq 0 ]; then
+    # Copier les ressources (listes de mots vides, configuration log4j) dans le classpath
+    cp -r src/main/resources/. target/
+    # Le noyau de scoring par lots basé sur l'API Vector (module incubateur) est compilé à part ;
+    # sans lui, ou avec VECTOR_API=0, le scoring par lots utilise le noyau scalaire
+    JAVA_OPTS=""
+    if [ "${VECTOR_API:-1}" != "0" ] && javac --add-modules jdk.incubator.vector -d target -cp "target:lib/*" \
+            $(find src/vector/java -name "*.java") 2>/dev/null; then
+        JAVA_OPTS="--add-modules jdk.incubator.vector"
+    else
+        echo "API Vector non utilisée, scoring par lots scalaire."
+    fi
     echo "Compilation réussie! Lancement de l'application..."
-    java -cp "target:lib/*" com.emailclassifier.Main
+    java $JAVA_OPTS -cp "target:lib/*" com.emailclassifier.Main
 else
     echo "La compilation a échoué. Veuillez vérifier les erreurs ci-dessus."
-fi
\ No newline at end of file
+fi
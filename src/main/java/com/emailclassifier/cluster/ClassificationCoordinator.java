@@ -0,0 +1,330 @@
+package com.emailclassifier.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Front node of the sharded mode: routes each message to a worker process by
+ * consistent hashing on the message hash, so every worker only sees (and
+ * caches) its share of the traffic.
+ *
+ * A background health check pings every worker. A worker that fails a ping or
+ * a request leaves the ring, and its share moves to the next workers on the
+ * ring (the failed request is retried there); it rejoins once it answers
+ * pings again. Counters for requests, failovers and rebalances are kept per
+ * worker and in total.
+ */
+public class ClassificationCoordinator implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ClassificationCoordinator.class);
+
+    public static final long DEFAULT_HEALTH_CHECK_MILLIS = 1000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+
+    private final List<WorkerNode> nodes = new ArrayList<>();
+    private final ConsistentHashRing<WorkerNode> ring = new ConsistentHashRing<>();
+    private final ScheduledExecutorService healthCheck;
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+
+    /**
+     * @param workers           Worker addresses
+     * @param healthCheckMillis Interval between health checks
+     */
+    public ClassificationCoordinator(List<InetSocketAddress> workers, long healthCheckMillis) {
+        for (InetSocketAddress address : workers) {
+            WorkerNode node = new WorkerNode(address);
+            nodes.add(node);
+            ring.add(node);
+        }
+        healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "coordinator-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthCheck.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis,
+                TimeUnit.MILLISECONDS);
+        logger.info("Coordinating {} workers: {}", nodes.size(), nodes);
+    }
+
+    /**
+     * Classifies a message on the worker owning its hash, failing over along
+     * the ring if that worker does not answer.
+     *
+     * @param body Raw message
+     * @return Category probabilities
+     * @throws IOException If no worker could classify the message
+     */
+    public Map<String, Double> classify(String body) throws IOException {
+        long hash = ClusterProtocol.hash(body);
+        requests.increment();
+        IOException last = null;
+        for (WorkerNode node : ring.nodesFor(hash)) {
+            try {
+                Map<String, Double> result = node.classify(hash, body);
+                node.requests.increment();
+                return result;
+            } catch (ClusterProtocol.WorkerException e) {
+                throw e;
+            } catch (IOException e) {
+                last = e;
+                failovers.increment();
+                markDown(node, e);
+            }
+        }
+        throw new IOException("No worker available to classify message", last);
+    }
+
+    private void checkHealth() {
+        for (WorkerNode node : nodes) {
+            try {
+                node.ping();
+                if (!ring.contains(node)) {
+                    ring.add(node);
+                    rebalances.increment();
+                    logger.info("Worker {} is back, rejoined the ring", node);
+                }
+            } catch (IOException e) {
+                markDown(node, e);
+            }
+        }
+    }
+
+    private void markDown(WorkerNode node, IOException cause) {
+        node.closeIdle();
+        synchronized (ring) {
+            if (!ring.contains(node)) {
+                return;
+            }
+            ring.remove(node);
+        }
+        rebalances.increment();
+        logger.warn("Worker {} is down ({}), its share moves to the remaining workers", node, cause.getMessage());
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    /**
+     * @return Number of times a worker left or rejoined the ring
+     */
+    public long getRebalances() {
+        return rebalances.sum();
+    }
+
+    public int getHealthyWorkers() {
+        int healthy = 0;
+        for (WorkerNode node : nodes) {
+            if (ring.contains(node)) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    /**
+     * @return Requests per second since the coordinator started
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds == 0 ? 0.0 : getRequests() / seconds;
+    }
+
+    /**
+     * @return Requests routed to each worker, keyed by address
+     */
+    public Map<String, Long> getRequestsPerWorker() {
+        Map<String, Long> perWorker = new LinkedHashMap<>();
+        for (WorkerNode node : nodes) {
+            perWorker.put(node.toString(), node.requests.sum());
+        }
+        return perWorker;
+    }
+
+    /**
+     * One line summary of the cluster, including the workers' own counters
+     * from their last health check.
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("requests=%d (%.0f/s), failovers=%d, rebalances=%d, healthy=%d/%d",
+                getRequests(), getThroughput(), getFailovers(), getRebalances(), getHealthyWorkers(), nodes.size()));
+        for (WorkerNode node : nodes) {
+            sb.append(String.format("; %s[routed=%d, served=%d, cacheHits=%d, %s]", node, node.requests.sum(),
+                    node.servedRequests, node.cacheHits, ring.contains(node) ? "up" : "down"));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        healthCheck.shutdownNow();
+        checkHealth();
+        for (WorkerNode node : nodes) {
+            node.closeIdle();
+        }
+        logger.info("Coordinator stopped: {}", getStats());
+    }
+
+    /**
+     * Connection pool and counters of one worker.
+     */
+    private static class WorkerNode {
+        final InetSocketAddress address;
+        final BlockingQueue<Connection> idle = new ArrayBlockingQueue<>(MAX_IDLE_CONNECTIONS);
+        final LongAdder requests = new LongAdder();
+        volatile long servedRequests;
+        volatile long cacheHits;
+
+        WorkerNode(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        Map<String, Double> classify(long hash, String body) throws IOException {
+            Connection connection = borrow();
+            try {
+                ClusterProtocol.writeClassify(connection.out, hash, body);
+                Map<String, Double> result = ClusterProtocol.readResult(connection.in);
+                release(connection);
+                return result;
+            } catch (ClusterProtocol.WorkerException e) {
+                release(connection);
+                throw e;
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void ping() throws IOException {
+            Connection connection = borrow();
+            try {
+                connection.out.writeByte(ClusterProtocol.PING);
+                connection.out.flush();
+                servedRequests = connection.in.readLong();
+                cacheHits = connection.in.readLong();
+                release(connection);
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        private Connection borrow() throws IOException {
+            Connection connection = idle.poll();
+            return connection != null ? connection : new Connection(address);
+        }
+
+        private void release(Connection connection) {
+            if (!idle.offer(connection)) {
+                connection.close();
+            }
+        }
+
+        void closeIdle() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+
+    private static class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close connection", e);
+            }
+        }
+    }
+
+    /**
+     * Classifies the message files of a directory through a set of workers
+     * and prints one verdict per file followed by the cluster stats.
+     *
+     * Usage: ClassificationCoordinator &lt;host:port,host:port,...&gt; &lt;messageDir&gt;
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ClassificationCoordinator <host:port,host:port,...> <messageDir>");
+            System.exit(2);
+        }
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (String worker : args[0].split(",")) {
+            int colon = worker.lastIndexOf(':');
+            workers.add(new InetSocketAddress(worker.substring(0, colon), Integer.parseInt(worker.substring(colon + 1))));
+        }
+
+        try (ClassificationCoordinator coordinator = new ClassificationCoordinator(workers, DEFAULT_HEALTH_CHECK_MILLIS);
+             Stream<Path> files = Files.list(Paths.get(args[1]))) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Map<String, Double> result = coordinator.classify(
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                String verdict = result.entrySet().stream()
+                        .max(Map.Entry.comparingByValue())
+                        .map(Map.Entry::getKey)
+                        .orElse("?");
+                System.out.println(file.getFileName() + "\t" + verdict);
+            }
+            coordinator.checkHealth();
+            System.out.println(coordinator.getStats());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.emailclassifier.cluster;
+
+import com.emailclassifier.model.EmailClassifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Worker process of the sharded mode: serves classification requests from a
+ * coordinator over TCP and caches results by message hash. Since the
+ * coordinator routes a given message to the same worker, repeated messages
+ * (e.g. a spam run) are answered from the cache.
+ */
+public class ClassificationWorker implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ClassificationWorker.class);
+
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private final EmailClassifier classifier;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final Map<Long, Map<String, Double>> cache;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param classifier Classifier with a loaded model
+     * @param port       Port to listen on, 0 for any free port
+     * @param cacheSize  Maximum number of cached results
+     * @throws IOException If the port cannot be bound
+     */
+    public ClassificationWorker(EmailClassifier classifier, int port, int cacheSize) throws IOException {
+        this.classifier = classifier;
+        this.cache = new LinkedHashMap<Long, Map<String, Double>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Double>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptLoop, "worker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Classification worker listening on port {}", getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Failed to accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (running) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (type == ClusterProtocol.PING) {
+                    out.writeLong(getRequests());
+                    out.writeLong(getCacheHits());
+                    out.flush();
+                } else if (type == ClusterProtocol.CLASSIFY) {
+                    long hash = in.readLong();
+                    String body = ClusterProtocol.readBody(in);
+                    try {
+                        ClusterProtocol.writeResult(out, classify(hash, body));
+                    } catch (RuntimeException e) {
+                        logger.warn("Failed to classify message {}", hash, e);
+                        ClusterProtocol.writeError(out, e.getMessage());
+                    }
+                } else {
+                    logger.warn("Unknown request type {}, closing connection", type);
+                    return;
+                }
+            }
+        } catch (SocketException e) {
+            logger.debug("Connection closed: {}", e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Connection failed", e);
+        }
+    }
+
+    private Map<String, Double> classify(long hash, String body) {
+        requests.increment();
+        Map<String, Double> cached;
+        synchronized (cache) {
+            cached = cache.get(hash);
+        }
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        Map<String, Double> result = classifier.classify(body);
+        synchronized (cache) {
+            cache.put(hash, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+        logger.info("Worker on port {} stopped after {} requests ({} cache hits)",
+                getPort(), getRequests(), getCacheHits());
+    }
+
+    /**
+     * Runs a worker until the process is stopped. Prints "LISTENING &lt;port&gt;"
+     * on standard output once warmed up, so a launcher can find an ephemeral port.
+     *
+     * Usage: ClassificationWorker &lt;model&gt; [port] [cacheSize]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ClassificationWorker <model> [port] [cacheSize]");
+            System.exit(2);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int cacheSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CACHE_SIZE;
+
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.loadModel(args[0]);
+        // The port is only announced once the classifier runs compiled code
+        classifier.warmUp();
+        ClassificationWorker worker = new ClassificationWorker(classifier, port, cacheSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                worker.close();
+            } catch (IOException e) {
+                logger.error("Failed to stop worker", e);
+            }
+        }, "worker-shutdown"));
+
+        System.out.println("LISTENING " + worker.getPort());
+        System.out.flush();
+        Thread.currentThread().join();
+    }
+}
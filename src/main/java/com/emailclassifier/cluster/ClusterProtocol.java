@@ -0,0 +1,100 @@
+package com.emailclassifier.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wire format between coordinator and workers, one request and one response
+ * at a time per connection:
+ * <pre>
+ * CLASSIFY: byte 1, long message hash, int length, UTF-8 body
+ *        -&gt; byte status (0 ok), byte count, then (UTF name, double probability) per category
+ *           or byte status 1, UTF error message
+ * PING:     byte 2
+ *        -&gt; long requests served, long cache hits
+ * </pre>
+ */
+final class ClusterProtocol {
+    static final byte CLASSIFY = 1;
+    static final byte PING = 2;
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    private ClusterProtocol() {
+    }
+
+    static void writeClassify(DataOutputStream out, long hash, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(CLASSIFY);
+        out.writeLong(hash);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    static String readBody(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeResult(DataOutputStream out, Map<String, Double> probabilities) throws IOException {
+        out.writeByte(OK);
+        out.writeByte(probabilities.size());
+        for (Map.Entry<String, Double> entry : probabilities.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        out.flush();
+    }
+
+    static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message == null ? "unknown error" : message);
+        out.flush();
+    }
+
+    /**
+     * Reads a classify response.
+     *
+     * @throws IOException If the connection fails or the worker reports an error
+     */
+    static Map<String, Double> readResult(DataInputStream in) throws IOException {
+        if (in.readByte() != OK) {
+            throw new WorkerException(in.readUTF());
+        }
+        int count = in.readUnsignedByte();
+        Map<String, Double> probabilities = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            probabilities.put(in.readUTF(), in.readDouble());
+        }
+        return probabilities;
+    }
+
+    /**
+     * 64-bit hash of a message body, used both as ring key and cache key.
+     */
+    static long hash(String body) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < body.length(); i++) {
+            h ^= body.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return ConsistentHashRing.mix(h);
+    }
+
+    /**
+     * Error reported by a worker that is otherwise healthy.
+     */
+    static class WorkerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        WorkerException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.emailclassifier.cluster;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring with virtual nodes. Each node is placed at several
+ * points of a 64-bit ring; a key belongs to the first node clockwise from its
+ * hash. Removing a node only moves the keys it owned, spread over the others.
+ *
+ * @param <T> Node type; its toString() seeds the node's ring positions
+ */
+public class ConsistentHashRing<T> {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final Set<T> members = new HashSet<>();
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    public synchronized void add(T node) {
+        members.add(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(position(node, i), node);
+        }
+    }
+
+    public synchronized void remove(T node) {
+        members.remove(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(position(node, i), node);
+        }
+    }
+
+    public synchronized boolean contains(T node) {
+        return members.contains(node);
+    }
+
+    public synchronized boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Lists the distinct nodes in ring order starting from the key's owner,
+     * so callers can fail over to the next node.
+     *
+     * @param keyHash Hash of the key
+     * @return Owner first, then the other nodes; empty if the ring is empty
+     */
+    public synchronized List<T> nodesFor(long keyHash) {
+        List<T> nodes = new ArrayList<>();
+        SortedMap<Long, T> tail = ring.tailMap(keyHash);
+        for (Map<Long, T> part : List.of(tail, ring.headMap(keyHash))) {
+            for (T node : part.values()) {
+                if (nodes.size() == members.size()) {
+                    return nodes;
+                }
+                if (!nodes.contains(node)) {
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private static long position(Object node, int replica) {
+        return mix(node.toString().hashCode() * 0x9E3779B97F4A7C15L + replica);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer, spreads keys over the ring.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
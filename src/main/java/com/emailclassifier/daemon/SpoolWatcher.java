@@ -0,0 +1,440 @@
+package com.emailclassifier.daemon;
+
+import com.emailclassifier.journal.VerdictJournal;
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.model.LanguageDetector;
+import com.emailclassifier.model.LanguageRouter;
+import com.emailclassifier.utils.DatasetLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Long-running ingestion mode: watches a spool directory, classifies every
+ * message file dropped into it and moves the file into a folder named after
+ * its category (e.g. spam/ or ham/) under the output directory.
+ *
+ * Files must appear in the spool complete, by an atomic rename as MTAs do for
+ * Maildir; names starting with '.' or ending in ".tmp" are ignored. A file
+ * stays in the spool until it has been moved, so after a crash or restart the
+ * startup scan picks up whatever was not processed. Files that cannot be read
+ * or classified are moved to error/.
+ *
+ * At most {@code workers + queueCapacity} files are in flight; when the
+ * workers fall behind, the watcher thread blocks instead of queueing without
+ * bound, and events left unread meanwhile are recovered by a rescan when the
+ * watch service reports an overflow.
+ *
+ * Verdicts can also be written to a {@link VerdictJournal}. A file is routed
+ * only once its verdict is on disk, so a crash never loses the verdict of a
+ * routed file; files whose verdict cannot be journaled go to error/. Workers
+ * wait for the journal's group commit, which the records of concurrent
+ * workers share.
+ *
+ * With a {@link LanguageRouter}, each message is classified by the model of
+ * its detected language, and journaled verdicts name that language.
+ */
+public class SpoolWatcher implements Closeable {
+    private static final Logger logger = LogManager.getLogger(SpoolWatcher.class);
+
+    public static final String ERROR_FOLDER = "error";
+
+    // Exactly one of the two is set
+    private final EmailClassifier classifier;
+    private final LanguageRouter router;
+    private final Path spoolDir;
+    private final Path outputDir;
+    private final DatasetLoader reader = new DatasetLoader();
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private final Map<String, Path> categoryDirs = new ConcurrentHashMap<>();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final Map<String, LongAdder> perCategory = new ConcurrentHashMap<>();
+
+    private volatile VerdictJournal journal;
+    private volatile String modelId;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean running;
+
+    /**
+     * @param classifier    Classifier with a loaded model; called from several worker threads
+     * @param spoolDir      Directory receiving incoming message files
+     * @param outputDir     Directory under which per-category folders are created
+     * @param workers       Number of classification threads
+     * @param queueCapacity Number of files queued beyond the ones being classified
+     */
+    public SpoolWatcher(EmailClassifier classifier, Path spoolDir, Path outputDir, int workers, int queueCapacity) {
+        this(classifier, null, spoolDir, outputDir, workers, queueCapacity);
+    }
+
+    /**
+     * @param router        Routes each message to the classifier of its language; called from several worker threads
+     * @param spoolDir      Directory receiving incoming message files
+     * @param outputDir     Directory under which per-category folders are created
+     * @param workers       Number of classification threads
+     * @param queueCapacity Number of files queued beyond the ones being classified
+     */
+    public SpoolWatcher(LanguageRouter router, Path spoolDir, Path outputDir, int workers, int queueCapacity) {
+        this(null, router, spoolDir, outputDir, workers, queueCapacity);
+    }
+
+    private SpoolWatcher(EmailClassifier classifier, LanguageRouter router, Path spoolDir, Path outputDir,
+                         int workers, int queueCapacity) {
+        if (workers < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Invalid pool size: workers=" + workers + ", queue=" + queueCapacity);
+        }
+        this.classifier = classifier;
+        this.router = router;
+        this.spoolDir = spoolDir;
+        this.outputDir = outputDir;
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.inFlight = new Semaphore(workers + queueCapacity);
+    }
+
+    /**
+     * Records every verdict in a journal, for replay against other models.
+     *
+     * @param journal Open journal, or null to stop journaling
+     * @param modelId Identifier stored with each verdict
+     */
+    public void setJournal(VerdictJournal journal, String modelId) {
+        this.modelId = modelId;
+        this.journal = journal;
+    }
+
+    /**
+     * Starts watching, then queues the files already in the spool.
+     * The watch is registered first so no file can slip between the two.
+     *
+     * @throws IOException If the spool directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        Files.createDirectories(spoolDir);
+        Files.createDirectories(outputDir.resolve(ERROR_FOLDER));
+
+        watchService = spoolDir.getFileSystem().newWatchService();
+        // A rename into the spool is reported as a creation
+        spoolDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        running = true;
+
+        watcherThread = new Thread(this::watchLoop, "spool-watcher");
+        watcherThread.start();
+        logger.info("Watching spool directory {}, routing into {}", spoolDir.toAbsolutePath(), outputDir.toAbsolutePath());
+    }
+
+    private void watchLoop() {
+        try {
+            if (!isReady()) {
+                // Files arriving meanwhile are queued by the watch service
+                logger.info("Waiting for the classifier to warm up");
+                while (running && !awaitReady(Duration.ofSeconds(1))) {
+                    logger.debug("Classifier not ready yet");
+                }
+            }
+            int recovered = scan();
+            logger.info("Recovery scan queued {} unprocessed files", recovered);
+
+            while (running) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        logger.warn("Watch events overflowed, rescanning spool directory");
+                        scan();
+                        continue;
+                    }
+                    submit(spoolDir.resolve((Path) event.context()));
+                }
+                if (!key.reset()) {
+                    logger.error("Spool directory {} is no longer accessible", spoolDir);
+                    running = false;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Spool watcher stopping");
+        } catch (IOException e) {
+            logger.error("Failed to scan spool directory {}", spoolDir, e);
+        }
+    }
+
+    /**
+     * Queues every message file currently in the spool.
+     */
+    private int scan() throws IOException, InterruptedException {
+        int queued = 0;
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (submit(file)) {
+                    queued++;
+                }
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Hands a file to the workers, blocking while the pool is saturated.
+     *
+     * @return false if the file is ignored or already queued
+     */
+    private boolean submit(Path file) throws InterruptedException {
+        if (!isMessageFile(file) || !pending.add(file)) {
+            return false;
+        }
+        if (!inFlight.tryAcquire()) {
+            backpressureWaits.increment();
+            inFlight.acquire();
+        }
+        workers.execute(() -> {
+            try {
+                process(file);
+            } finally {
+                pending.remove(file);
+                inFlight.release();
+            }
+        });
+        return true;
+    }
+
+    private boolean isReady() {
+        return router != null ? router.isReady() : classifier.isReady();
+    }
+
+    private boolean awaitReady(Duration timeout) throws InterruptedException {
+        return router != null ? router.awaitReady(timeout) : classifier.awaitReady(timeout);
+    }
+
+    private static boolean isMessageFile(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && !name.endsWith(".tmp") && Files.isRegularFile(file);
+    }
+
+    private void process(Path file) {
+        String category;
+        try {
+            String message = reader.readMessage(file);
+            EmailClassifier target = router != null ? router.route(message) : classifier;
+            Map<String, Double> probabilities = target.classify(message);
+            category = bestCategory(probabilities);
+            VerdictJournal verdicts = journal;
+            if (verdicts != null) {
+                // The file stays in the spool until its verdict is durable
+                String verdictModel = router != null ? modelId + ":" + target.getLanguage() : modelId;
+                verdicts.append(verdictModel, probabilities, message).get();
+            }
+        } catch (ExecutionException e) {
+            logger.warn("Failed to journal the verdict of {}", file, e.getCause());
+            failed.increment();
+            route(file, ERROR_FOLDER);
+            return;
+        } catch (InterruptedException e) {
+            // Left in the spool for the next recovery scan
+            Thread.currentThread().interrupt();
+            return;
+        } catch (NoSuchFileException e) {
+            // Already moved by an earlier event for the same file
+            return;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to classify {}", file, e);
+            failed.increment();
+            route(file, ERROR_FOLDER);
+            return;
+        }
+
+        if (route(file, category)) {
+            processed.increment();
+            perCategory.computeIfAbsent(category, c -> new LongAdder()).increment();
+        }
+    }
+
+    private static String bestCategory(Map<String, Double> probabilities) {
+        return probabilities.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(ERROR_FOLDER);
+    }
+
+    /**
+     * Atomically moves the file into the category folder, renaming it if a
+     * file of the same name was already routed there.
+     */
+    private boolean route(Path file, String category) {
+        try {
+            Path dir = categoryDirs.computeIfAbsent(category, outputDir::resolve);
+            Files.createDirectories(dir);
+            String name = file.getFileName().toString();
+            Path target = dir.resolve(name);
+            for (int attempt = 1; ; attempt++) {
+                if (!Files.exists(target)) {
+                    try {
+                        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                        return true;
+                    } catch (FileAlreadyExistsException e) {
+                        // Lost a race with another file of the same name
+                    }
+                }
+                target = dir.resolve(name + "." + attempt);
+            }
+        } catch (NoSuchFileException e) {
+            logger.debug("{} was already routed", file);
+        } catch (IOException e) {
+            logger.error("Failed to move {} into {}", file, category, e);
+            failed.increment();
+        }
+        return false;
+    }
+
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return Number of times the watcher had to wait for a free worker
+     */
+    public long getBackpressureWaits() {
+        return backpressureWaits.sum();
+    }
+
+    public long getProcessed(String category) {
+        LongAdder count = perCategory.get(category);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Stops watching and waits for the files already queued to be routed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running && watchService == null) {
+            return;
+        }
+        running = false;
+        if (watchService != null) {
+            watchService.close();
+        }
+        try {
+            if (watcherThread != null) {
+                watcherThread.join();
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Workers did not finish within a minute, leaving remaining files in the spool");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        watchService = null;
+        logger.info("Spool watcher stopped: processed={}, failed={}, backpressure waits={}",
+                getProcessed(), getFailed(), getBackpressureWaits());
+    }
+
+    /**
+     * Runs the watcher until the process is stopped.
+     *
+     * Usage: SpoolWatcher &lt;model&gt; &lt;spoolDir&gt; &lt;outputDir&gt; [workers] [queueCapacity] [journalDir]
+     *
+     * The model is either one model file, or one model per language such as
+     * "en=models/en.bin,fr=models/fr.bin", the first language being the default.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: SpoolWatcher <model> <spoolDir> <outputDir> [workers] [queueCapacity] "
+                    + "[journalDir]");
+            System.exit(2);
+        }
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = args.length > 4 ? Integer.parseInt(args[4]) : workers * 64;
+
+        SpoolWatcher watcher;
+        String modelId;
+        if (args[0].contains("=")) {
+            LanguageRouter router = loadRouter(args[0].split(","));
+            watcher = new SpoolWatcher(router, Paths.get(args[1]), Paths.get(args[2]), workers, queueCapacity);
+            modelId = args[0];
+        } else {
+            EmailClassifier classifier = new EmailClassifier();
+            classifier.setWarmUpOnLoad(true);
+            classifier.loadModel(args[0]);
+            watcher = new SpoolWatcher(classifier, Paths.get(args[1]), Paths.get(args[2]), workers, queueCapacity);
+            modelId = Paths.get(args[0]).getFileName().toString();
+        }
+        VerdictJournal journal = args.length > 5 ? VerdictJournal.open(Paths.get(args[5])) : null;
+        if (journal != null) {
+            watcher.setJournal(journal, modelId);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.close();
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to stop spool watcher", e);
+            }
+        }, "spool-watcher-shutdown"));
+        watcher.start();
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Loads one model per "language=path" pair; the first language is the default.
+     */
+    private static LanguageRouter loadRouter(String[] models) throws IOException {
+        String[] languages = new String[models.length];
+        EmailClassifier[] classifiers = new EmailClassifier[models.length];
+        for (int i = 0; i < models.length; i++) {
+            String[] pair = models[i].split("=", 2);
+            if (pair.length != 2 || pair[0].isEmpty()) {
+                throw new IllegalArgumentException("Expected language=model, got: " + models[i]);
+            }
+            languages[i] = pair[0];
+            classifiers[i] = new EmailClassifier(pair[0]);
+            classifiers[i].setWarmUpOnLoad(true);
+            classifiers[i].loadModel(pair[1]);
+        }
+
+        LanguageRouter router = new LanguageRouter(LanguageDetector.fromResources(languages[0], languages));
+        for (EmailClassifier classifier : classifiers) {
+            router.register(classifier);
+        }
+        return router;
+    }
+}
@@ -0,0 +1,163 @@
+package com.emailclassifier.gui;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.DatasetLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Classifies every message of a folder in the background and streams the
+ * results into a {@link BatchResultTableModel}.
+ *
+ * Files are listed lazily and classified in chunks through the batch scorer.
+ * Each finished chunk is published; SwingWorker hands the chunks accumulated
+ * since the last update to process() on the event dispatch thread, which
+ * appends them to the table with one event and refreshes the status line.
+ * Classification starts once the classifier has finished warming up.
+ * Cancelling stops at the next message. A cancelled worker reports DONE at
+ * once while its loop may still be classifying a chunk, so the end of the
+ * loop itself is signalled to a separate listener.
+ */
+class BatchClassificationWorker extends SwingWorker<String, BatchResultTableModel.Chunk> {
+    private static final Logger logger = LogManager.getLogger(BatchClassificationWorker.class);
+
+    /** Messages classified together and published as one chunk. */
+    static final int CHUNK_SIZE = 256;
+
+    private final EmailClassifier classifier;
+    private final DatasetLoader loader;
+    private final Path folder;
+    private final BatchResultTableModel results;
+    private final Consumer<String> statusListener;
+    private final Consumer<BatchClassificationWorker> finishedListener;
+    private volatile long startNanos;
+    private volatile int classified;
+    private volatile int unreadable;
+
+    /**
+     * @param classifier       Classifier holding a model
+     * @param loader           Lists and reads the message files
+     * @param folder           Folder of messages
+     * @param results          Table model receiving the rows
+     * @param statusListener   Receives a progress line on the event dispatch thread
+     * @param finishedListener Called on the event dispatch thread once the background loop has returned
+     */
+    BatchClassificationWorker(EmailClassifier classifier, DatasetLoader loader, Path folder,
+                              BatchResultTableModel results, Consumer<String> statusListener,
+                              Consumer<BatchClassificationWorker> finishedListener) {
+        this.classifier = classifier;
+        this.loader = loader;
+        this.folder = folder;
+        this.results = results;
+        this.statusListener = statusListener;
+        this.finishedListener = finishedListener;
+    }
+
+    @Override
+    protected String doInBackground() throws IOException, InterruptedException {
+        try {
+            return classifyFolder();
+        } finally {
+            SwingUtilities.invokeLater(() -> finishedListener.accept(this));
+        }
+    }
+
+    private String classifyFolder() throws IOException, InterruptedException {
+        if (!classifier.isReady()) {
+            SwingUtilities.invokeLater(() -> statusListener.accept("Waiting for the model to warm up..."));
+            while (!isCancelled() && !classifier.awaitReady(Duration.ofMillis(200))) {
+                logger.debug("Classifier not ready yet");
+            }
+        }
+        // Throughput is measured from the first classified message, not the warm-up
+        startNanos = System.nanoTime();
+        logger.info("Batch classification of {}", folder);
+        List<String> texts = new ArrayList<>(CHUNK_SIZE);
+        BatchResultTableModel.Chunk chunk = new BatchResultTableModel.Chunk(CHUNK_SIZE);
+        List<String> names = new ArrayList<>(CHUNK_SIZE);
+
+        try (Stream<Path> files = loader.listEmailFiles(folder)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext() && !isCancelled()) {
+                Path file = iterator.next();
+                try {
+                    texts.add(loader.readMessage(file));
+                    names.add(folder.relativize(file).toString());
+                } catch (IOException e) {
+                    logger.warn("Failed to read file: {}", file.toAbsolutePath(), e);
+                    unreadable++;
+                    continue;
+                }
+                if (texts.size() == CHUNK_SIZE) {
+                    classifyChunk(texts, names, chunk);
+                    chunk = new BatchResultTableModel.Chunk(CHUNK_SIZE);
+                }
+            }
+            if (!texts.isEmpty() && !isCancelled()) {
+                classifyChunk(texts, names, chunk);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return status();
+    }
+
+    private void classifyChunk(List<String> texts, List<String> names, BatchResultTableModel.Chunk chunk) {
+        List<Map<String, Double>> probabilities = classifier.classifyBatch(texts);
+        for (int i = 0; i < texts.size(); i++) {
+            Map<String, Double> result = probabilities.get(i);
+            double spam = result.getOrDefault("spam", 0.0);
+            double ham = result.getOrDefault("ham", 0.0);
+            chunk.add(names.get(i), spam > ham, spam, texts.get(i).length());
+        }
+        classified += texts.size();
+        texts.clear();
+        names.clear();
+        if (!isCancelled()) {
+            publish(chunk);
+        }
+    }
+
+    @Override
+    protected void process(List<BatchResultTableModel.Chunk> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        results.append(chunks);
+        statusListener.accept(status());
+    }
+
+    int getClassified() {
+        return classified;
+    }
+
+    int getUnreadable() {
+        return unreadable;
+    }
+
+    /**
+     * @return Messages classified per second since the start
+     */
+    double getThroughput() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? classified / seconds : 0;
+    }
+
+    String status() {
+        String line = String.format("%,d messages classified, %,.0f msg/s", classified, getThroughput());
+        return unreadable == 0 ? line : line + String.format(", %,d unreadable", unreadable);
+    }
+}
@@ -0,0 +1,166 @@
+package com.emailclassifier.gui;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results of a batch classification, one row per message.
+ *
+ * Rows are kept in parallel primitive arrays holding only what the table
+ * shows: the file path relative to the batch folder, the verdict, the spam
+ * probability and the message length. Message texts are never kept, so a
+ * folder of hundreds of thousands of messages costs a few tens of bytes per
+ * row. JTable only asks for the visible cells, and rows arrive by chunks so
+ * that listeners hear of one insertion per chunk rather than per message.
+ */
+class BatchResultTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    static final int FILE_COLUMN = 0;
+    static final int VERDICT_COLUMN = 1;
+    static final int SPAM_COLUMN = 2;
+    static final int LENGTH_COLUMN = 3;
+    private static final String[] COLUMN_NAMES = {"File", "Verdict", "Spam probability", "Length"};
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] files;
+    private boolean[] spam;
+    private float[] spamProbabilities;
+    private int[] lengths;
+    private int size;
+
+    BatchResultTableModel() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Rows classified together, filled off the event dispatch thread and then appended at once.
+     */
+    static class Chunk {
+        private final String[] files;
+        private final boolean[] spam;
+        private final float[] spamProbabilities;
+        private final int[] lengths;
+        private int size;
+
+        Chunk(int capacity) {
+            files = new String[capacity];
+            spam = new boolean[capacity];
+            spamProbabilities = new float[capacity];
+            lengths = new int[capacity];
+        }
+
+        void add(String file, boolean isSpam, double spamProbability, int length) {
+            files[size] = file;
+            spam[size] = isSpam;
+            spamProbabilities[size] = (float) spamProbability;
+            lengths[size] = length;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Appends the rows of several chunks and fires a single insertion event.
+     * Must be called on the event dispatch thread.
+     */
+    void append(List<Chunk> chunks) {
+        int first = size;
+        for (Chunk chunk : chunks) {
+            if (size + chunk.size > files.length) {
+                grow(size + chunk.size);
+            }
+            System.arraycopy(chunk.files, 0, files, size, chunk.size);
+            System.arraycopy(chunk.spam, 0, spam, size, chunk.size);
+            System.arraycopy(chunk.spamProbabilities, 0, spamProbabilities, size, chunk.size);
+            System.arraycopy(chunk.lengths, 0, lengths, size, chunk.size);
+            size += chunk.size;
+        }
+        if (size > first) {
+            fireTableRowsInserted(first, size - 1);
+        }
+    }
+
+    void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return Path of the message relative to the batch folder
+     */
+    String getFile(int row) {
+        return files[row];
+    }
+
+    int getSpamCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (spam[i]) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case SPAM_COLUMN:
+                return Float.class;
+            case LENGTH_COLUMN:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case FILE_COLUMN:
+                return files[row];
+            case VERDICT_COLUMN:
+                return spam[row] ? "SPAM" : "HAM";
+            case SPAM_COLUMN:
+                return spamProbabilities[row];
+            case LENGTH_COLUMN:
+                return lengths[row];
+            default:
+                throw new IndexOutOfBoundsException("Unknown column: " + column);
+        }
+    }
+
+    private void allocate(int capacity) {
+        files = new String[capacity];
+        spam = new boolean[capacity];
+        spamProbabilities = new float[capacity];
+        lengths = new int[capacity];
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, files.length * 2);
+        files = Arrays.copyOf(files, capacity);
+        spam = Arrays.copyOf(spam, capacity);
+        spamProbabilities = Arrays.copyOf(spamProbabilities, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+}
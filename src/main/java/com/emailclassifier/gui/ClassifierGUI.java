@@ -1,6 +1,7 @@
 package com.emailclassifier.gui;
 
 import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.model.TrainingCancelledException;
 import com.emailclassifier.utils.DatasetLoader;
 import com.emailclassifier.utils.ModelIO;
 import org.apache.logging.log4j.LogManager;
@@ -10,13 +11,18 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,12 +44,24 @@ public class ClassifierGUI extends JFrame {
     private JTextField modelSaveField;
     private JTextField modelLoadField;
     private JButton trainButton;
+    private JButton cancelTrainingButton;
     private JButton classifyButton;
     private JButton clearButton;
     private JButton loadModelButton;
     private JButton saveModelButton;
     private JLabel accuracyLabel;
+    private JCheckBox resumableTrainingCheckBox;
     private JLabel statusLabel;
+    private volatile boolean trainingCancelled;
+    private JTextField batchFolderField;
+    private JCheckBox batchRecursiveCheckBox;
+    private JButton batchStartButton;
+    private JButton batchCancelButton;
+    private JLabel batchStatusLabel;
+    private BatchResultTableModel batchResults;
+    private JTable batchTable;
+    private BatchClassificationWorker batchWorker;
+    private Path batchFolder;
     
     public ClassifierGUI() {
         classifier = new EmailClassifier();
@@ -77,11 +95,42 @@ public class ClassifierGUI extends JFrame {
         modelSaveField = new JTextField(30);
         modelLoadField = new JTextField(30);
         trainButton = new JButton("Train Model");
+        cancelTrainingButton = new JButton("Cancel");
+        cancelTrainingButton.setEnabled(false);
         loadModelButton = new JButton("Load Model");
         saveModelButton = new JButton("Save Model");
         trainingProgressBar = new JProgressBar(0, 100);
         trainingProgressBar.setStringPainted(true);
         accuracyLabel = new JLabel("Accuracy: N/A");
+        // Off by default: checkpoints write the tokenized corpus and model snapshots to disk
+        resumableTrainingCheckBox = new JCheckBox("Resumable training");
+        resumableTrainingCheckBox.setToolTipText("Save checkpoints to " + checkpointDirectory()
+                + " so that a cancelled or crashed training resumes on the next Train Model");
+        
+        // Batch panel components
+        batchFolderField = new JTextField(30);
+        batchRecursiveCheckBox = new JCheckBox("Include subfolders");
+        batchStartButton = new JButton("Classify Folder");
+        batchCancelButton = new JButton("Cancel");
+        batchCancelButton.setEnabled(false);
+        batchStatusLabel = new JLabel("Status: Ready");
+        batchResults = new BatchResultTableModel();
+        batchTable = new JTable(batchResults);
+        batchTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Plain string order: the default collator is too slow for hundreds of thousands of rows
+        TableRowSorter<BatchResultTableModel> sorter = new TableRowSorter<>(batchResults);
+        sorter.setComparator(BatchResultTableModel.FILE_COLUMN, Comparator.naturalOrder());
+        sorter.setComparator(BatchResultTableModel.VERDICT_COLUMN, Comparator.naturalOrder());
+        batchTable.setRowSorter(sorter);
+        DefaultTableCellRenderer percentRenderer = new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value == null ? "" : String.format("%.2f%%", (Float) value * 100));
+            }
+        };
+        percentRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        batchTable.getColumnModel().getColumn(BatchResultTableModel.SPAM_COLUMN).setCellRenderer(percentRenderer);
+        batchTable.getColumnModel().getColumn(BatchResultTableModel.FILE_COLUMN).setPreferredWidth(400);
     }
     
     private void setupLayout() {
@@ -184,8 +233,10 @@ public class ClassifierGUI extends JFrame {
         
         JPanel trainingControlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         trainingControlPanel.add(trainButton);
+        trainingControlPanel.add(cancelTrainingButton);
         trainingControlPanel.add(saveModelButton);
         trainingControlPanel.add(loadModelButton);
+        trainingControlPanel.add(resumableTrainingCheckBox);
         
         JPanel progressPanel = new JPanel(new BorderLayout(5, 5));
         progressPanel.add(trainingProgressBar, BorderLayout.CENTER);
@@ -203,7 +254,29 @@ public class ClassifierGUI extends JFrame {
         
         trainingPanel.add(trainingContentPanel, BorderLayout.NORTH);
         
+        // Batch panel
+        JPanel batchPanel = new JPanel(new BorderLayout(10, 10));
+        batchPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        
+        JPanel batchControlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        batchControlPanel.add(new JLabel("Folder:"));
+        batchControlPanel.add(batchFolderField);
+        JButton batchBrowseButton = new JButton("Browse");
+        batchControlPanel.add(batchBrowseButton);
+        batchControlPanel.add(batchRecursiveCheckBox);
+        batchControlPanel.add(batchStartButton);
+        batchControlPanel.add(batchCancelButton);
+        
+        JPanel batchResultPanel = new JPanel(new BorderLayout());
+        batchResultPanel.setBorder(new TitledBorder("Results (double-click a row to open the message)"));
+        batchResultPanel.add(new JScrollPane(batchTable), BorderLayout.CENTER);
+        
+        batchPanel.add(batchControlPanel, BorderLayout.NORTH);
+        batchPanel.add(batchResultPanel, BorderLayout.CENTER);
+        batchPanel.add(batchStatusLabel, BorderLayout.SOUTH);
+        
         // Add action listeners for browse buttons
+        batchBrowseButton.addActionListener(e -> browseFolder(batchFolderField));
         spamBrowseButton.addActionListener(e -> browseFolder(spamFolderField));
         hamBrowseButton.addActionListener(e -> browseFolder(hamFolderField));
         modelSaveBrowseButton.addActionListener(e -> browseSaveFile(modelSaveField));
@@ -212,6 +285,7 @@ public class ClassifierGUI extends JFrame {
         // Add panels to tabbed pane
         tabbedPane.addTab("Classify Email", classificationPanel);
         tabbedPane.addTab("Train Model", trainingPanel);
+        tabbedPane.addTab("Batch Classify", batchPanel);
         
         // Add to main frame
         getContentPane().add(tabbedPane);
@@ -225,8 +299,32 @@ public class ClassifierGUI extends JFrame {
         });
         
         trainButton.addActionListener(e -> trainModel());
+        cancelTrainingButton.addActionListener(e -> {
+            trainingCancelled = true;
+            cancelTrainingButton.setEnabled(false);
+            classifier.cancelTraining();
+        });
         loadModelButton.addActionListener(e -> loadModel());
         saveModelButton.addActionListener(e -> saveModel());
+        
+        batchStartButton.addActionListener(e -> classifyFolder());
+        batchCancelButton.addActionListener(e -> {
+            if (batchWorker != null) {
+                // The controls come back once the background loop has stopped
+                batchCancelButton.setEnabled(false);
+                batchStatusLabel.setText("Status: Cancelling...");
+                batchWorker.cancel(false);
+            }
+        });
+        batchTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = batchTable.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    openBatchMessage(batchTable.convertRowIndexToModel(row));
+                }
+            }
+        });
     }
     
     private void browseFolder(JTextField textField) {
@@ -320,6 +418,88 @@ public class ClassifierGUI extends JFrame {
         worker.execute();
     }
     
+    private void classifyFolder() {
+        String folder = batchFolderField.getText().trim();
+        File batchDir = new File(folder);
+        
+        if (folder.isEmpty() || !batchDir.isDirectory()) {
+            JOptionPane.showMessageDialog(this, 
+                "Please select an existing folder of emails.",
+                "Invalid Folder", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        if (!classifier.isModelTrained()) {
+            JOptionPane.showMessageDialog(this, 
+                "Please train or load a model first.",
+                "No Model", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        DatasetLoader loader = new DatasetLoader();
+        loader.setRecursive(batchRecursiveCheckBox.isSelected());
+        batchResults.clear();
+        batchFolder = batchDir.toPath();
+        setBatchControlsEnabled(false);
+        batchStatusLabel.setText("Status: Classifying...");
+        
+        BatchClassificationWorker worker = new BatchClassificationWorker(classifier, loader, batchFolder,
+                batchResults, status -> batchStatusLabel.setText("Status: " + status), this::batchFinished);
+        batchWorker = worker;
+        worker.execute();
+    }
+    
+    private void batchFinished(BatchClassificationWorker worker) {
+        if (batchWorker == worker) {
+            batchWorker = null;
+        }
+        setBatchControlsEnabled(true);
+        if (worker.isCancelled()) {
+            batchStatusLabel.setText(String.format("Status: Cancelled after %,d messages", batchResults.getRowCount()));
+            return;
+        }
+        try {
+            String status = worker.get();
+            batchStatusLabel.setText(String.format("Status: Done, %s, %,d spam",
+                    status, batchResults.getSpamCount()));
+        } catch (Exception e) {
+            logger.error("Batch classification failed", e);
+            batchStatusLabel.setText("Status: Error");
+            JOptionPane.showMessageDialog(this, 
+                "Batch classification failed: " + e.getCause().getMessage(),
+                "Batch Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Reads a message of the batch back from disk into the Classify Email tab.
+     */
+    private void openBatchMessage(int row) {
+        Path file = batchFolder.resolve(batchResults.getFile(row));
+        try {
+            inputTextArea.setText(new DatasetLoader().readMessage(file));
+            inputTextArea.setCaretPosition(0);
+            tabbedPane.setSelectedIndex(0);
+            classifyEmail();
+        } catch (IOException e) {
+            logger.error("Failed to read {}", file, e);
+            JOptionPane.showMessageDialog(this, 
+                "Failed to read message: " + e.getMessage(),
+                "Read Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void setBatchControlsEnabled(boolean enabled) {
+        batchStartButton.setEnabled(enabled);
+        batchFolderField.setEnabled(enabled);
+        batchRecursiveCheckBox.setEnabled(enabled);
+        batchCancelButton.setEnabled(!enabled);
+    }
+    
     private void trainModel() {
         String spamFolder = spamFolderField.getText().trim();
         String hamFolder = hamFolderField.getText().trim();
@@ -351,8 +531,16 @@ public class ClassifierGUI extends JFrame {
             return;
         }
         
+        if (resumableTrainingCheckBox.isSelected()) {
+            classifier.setCheckpointDirectory(checkpointDirectory());
+        } else {
+            classifier.disableCheckpoints();
+        }
+        
         // Disable controls during training
         setTrainingControlsEnabled(false);
+        trainingCancelled = false;
+        cancelTrainingButton.setEnabled(true);
         trainingProgressBar.setValue(0);
         accuracyLabel.setText("Accuracy: N/A");
         
@@ -365,6 +553,9 @@ public class ClassifierGUI extends JFrame {
                     publish(10);
                     DatasetLoader loader = new DatasetLoader();
                     Map<String, String[]> dataset = loader.loadFromDirectories(spamDir, hamDir);
+                    if (trainingCancelled) {
+                        throw new TrainingCancelledException("Training cancelled");
+                    }
                     
                     // Train model with progress updates
                     publish(20);
@@ -375,6 +566,8 @@ public class ClassifierGUI extends JFrame {
                     
                     publish(100);
                     return accuracy;
+                } catch (TrainingCancelledException e) {
+                    throw new RuntimeException(e.getMessage(), e);
                 } catch (Exception e) {
                     logger.error("Training failed", e);
                     throw new RuntimeException("Training failed: " + e.getMessage(), e);
@@ -397,13 +590,22 @@ public class ClassifierGUI extends JFrame {
                         "Training Complete", 
                         JOptionPane.INFORMATION_MESSAGE);
                 } catch (Exception e) {
-                    logger.error("Training failed", e);
-                    JOptionPane.showMessageDialog(ClassifierGUI.this, 
-                        "Training failed: " + e.getCause().getMessage(),
-                        "Training Error", 
-                        JOptionPane.ERROR_MESSAGE);
+                    if (e.getCause() != null && e.getCause().getCause() instanceof TrainingCancelledException) {
+                        logger.info("Training cancelled");
+                        JOptionPane.showMessageDialog(ClassifierGUI.this, 
+                            "Training cancelled.\nTrain again with the same folders to resume where it stopped.",
+                            "Training Cancelled", 
+                            JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        logger.error("Training failed", e);
+                        JOptionPane.showMessageDialog(ClassifierGUI.this, 
+                            "Training failed: " + e.getCause().getMessage(),
+                            "Training Error", 
+                            JOptionPane.ERROR_MESSAGE);
+                    }
                     trainingProgressBar.setValue(0);
                 } finally {
+                    cancelTrainingButton.setEnabled(false);
                     setTrainingControlsEnabled(true);
                 }
             }
@@ -431,24 +633,24 @@ public class ClassifierGUI extends JFrame {
             return;
         }
         
-        try {
-            // Create directories if they don't exist
-            Files.createDirectories(Paths.get(modelPath).getParent());
-            
-            // Save the model
-            ModelIO.saveModel(classifier.getModel(), modelPath);
-            
-            JOptionPane.showMessageDialog(this, 
-                "Model saved successfully!",
-                "Model Saved", 
-                JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
-            logger.error("Failed to save model", e);
-            JOptionPane.showMessageDialog(this, 
-                "Failed to save model: " + e.getMessage(),
-                "Save Error", 
-                JOptionPane.ERROR_MESSAGE);
-        }
+        // Saved in the background, ModelIO creates the missing directories
+        saveModelButton.setEnabled(false);
+        ModelIO.saveModelAsync(classifier.getModel(), modelPath).whenComplete((path, error) ->
+            SwingUtilities.invokeLater(() -> {
+                saveModelButton.setEnabled(trainButton.isEnabled());
+                if (error == null) {
+                    JOptionPane.showMessageDialog(this,
+                        "Model saved successfully to " + path,
+                        "Model Saved",
+                        JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    logger.error("Failed to save model", error);
+                    JOptionPane.showMessageDialog(this,
+                        "Failed to save model: " + error.getMessage(),
+                        "Save Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }));
     }
     
     private void loadModel() {
@@ -499,5 +701,22 @@ public class ClassifierGUI extends JFrame {
         hamFolderField.setEnabled(enabled);
         modelSaveField.setEnabled(enabled);
         modelLoadField.setEnabled(enabled);
+        resumableTrainingCheckBox.setEnabled(enabled);
+    }
+    
+    /**
+     * @return The per-user directory for training checkpoints: under
+     *         %LOCALAPPDATA% on Windows, $XDG_DATA_HOME or ~/.local/share elsewhere
+     */
+    static Path checkpointDirectory() {
+        String localAppData = System.getenv("LOCALAPPDATA");
+        if (localAppData != null && !localAppData.isEmpty()) {
+            return Paths.get(localAppData, "EmailClassifier", "checkpoints");
+        }
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        Path base = dataHome != null && !dataHome.isEmpty()
+                ? Paths.get(dataHome)
+                : Paths.get(System.getProperty("user.home"), ".local", "share");
+        return base.resolve("emailclassifier").resolve("checkpoints");
     }
 }
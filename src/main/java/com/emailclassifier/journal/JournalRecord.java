@@ -0,0 +1,176 @@
+package com.emailclassifier.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One verdict in the journal: the message (hash and raw body), the model that
+ * judged it, the winning category and the probabilities of all categories.
+ *
+ * Binary layout, big-endian:
+ * <pre>
+ * int    length of everything after the checksum
+ * int    CRC32 of everything after the checksum
+ * long   message hash
+ * long   timestamp (epoch millis)
+ * short  model id length, then UTF-8 bytes
+ * short  verdict length, then UTF-8 bytes
+ * byte   number of categories, then for each: short name length, UTF-8 bytes, double probability
+ * int    body length, then UTF-8 bytes
+ * </pre>
+ */
+public class JournalRecord {
+    static final int HEADER_BYTES = 8;
+
+    private final long messageHash;
+    private final long timestamp;
+    private final String modelId;
+    private final String verdict;
+    private final Map<String, Double> probabilities;
+    private final String body;
+
+    public JournalRecord(long timestamp, String modelId, Map<String, Double> probabilities, String body) {
+        this(hash(body), timestamp, modelId, bestCategory(probabilities), probabilities, body);
+    }
+
+    private JournalRecord(long messageHash, long timestamp, String modelId, String verdict,
+                          Map<String, Double> probabilities, String body) {
+        this.messageHash = messageHash;
+        this.timestamp = timestamp;
+        this.modelId = modelId;
+        this.verdict = verdict;
+        this.probabilities = Collections.unmodifiableMap(new LinkedHashMap<>(probabilities));
+        this.body = body;
+    }
+
+    public long getMessageHash() {
+        return messageHash;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public String getVerdict() {
+        return verdict;
+    }
+
+    public Map<String, Double> getProbabilities() {
+        return probabilities;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Serializes the record, checksum included.
+     */
+    byte[] encode() {
+        byte[] model = modelId.getBytes(StandardCharsets.UTF_8);
+        byte[] verdictBytes = verdict.getBytes(StandardCharsets.UTF_8);
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        byte[][] names = new byte[probabilities.size()][];
+        int size = 8 + 8 + 2 + model.length + 2 + verdictBytes.length + 1 + 4 + bodyBytes.length;
+        int i = 0;
+        for (String name : probabilities.keySet()) {
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[i].length + 8;
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + size);
+        buffer.position(HEADER_BYTES);
+        buffer.putLong(messageHash);
+        buffer.putLong(timestamp);
+        buffer.putShort((short) model.length).put(model);
+        buffer.putShort((short) verdictBytes.length).put(verdictBytes);
+        buffer.put((byte) probabilities.size());
+        i = 0;
+        for (double probability : probabilities.values()) {
+            buffer.putShort((short) names[i].length).put(names[i]).putDouble(probability);
+            i++;
+        }
+        buffer.putInt(bodyBytes.length).put(bodyBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, size);
+        buffer.putInt(0, size);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Reads the record at the buffer's position and advances past it.
+     *
+     * @return The record, or null at the end of the written data or at a torn write
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int size = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (size <= 0 || size > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+
+        byte[] payload = new byte[size];
+        buffer.position(start + HEADER_BYTES);
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        long messageHash = in.getLong();
+        long timestamp = in.getLong();
+        String modelId = readString(in, in.getShort());
+        String verdict = readString(in, in.getShort());
+        int categories = in.get() & 0xFF;
+        Map<String, Double> probabilities = new LinkedHashMap<>();
+        for (int i = 0; i < categories; i++) {
+            String name = readString(in, in.getShort());
+            probabilities.put(name, in.getDouble());
+        }
+        String body = readString(in, in.getInt());
+        return new JournalRecord(messageHash, timestamp, modelId, verdict, probabilities, body);
+    }
+
+    private static String readString(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static String bestCategory(Map<String, Double> probabilities) {
+        return probabilities.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElseThrow(() -> new IllegalArgumentException("No category probabilities"));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the message body, to find repeated messages.
+     */
+    static long hash(String body) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < body.length(); i++) {
+            h ^= body.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,131 @@
+package com.emailclassifier.journal;
+
+import com.emailclassifier.model.EmailClassifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Re-scores journaled messages with another model and compares the new
+ * verdicts with the recorded ones. Messages are classified in batches
+ * through {@link EmailClassifier#classifyBatch}.
+ */
+public class JournalReplay {
+    private static final Logger logger = LogManager.getLogger(JournalReplay.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final EmailClassifier candidate;
+    private final int batchSize;
+
+    public JournalReplay(EmailClassifier candidate) {
+        this(candidate, DEFAULT_BATCH_SIZE);
+    }
+
+    public JournalReplay(EmailClassifier candidate, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.candidate = candidate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Replays every record of a journal through the candidate model.
+     *
+     * @param journalDirectory Journal directory
+     * @return Number of replayed records, flipped verdicts and replay speed
+     * @throws IOException If the journal cannot be read
+     */
+    public Report replay(Path journalDirectory) throws IOException {
+        logger.info("Replaying journal {}", journalDirectory);
+        Report report = new Report();
+        long start = System.nanoTime();
+
+        List<JournalRecord> batch = new ArrayList<>(batchSize);
+        try {
+            for (JournalRecord record : VerdictJournal.read(journalDirectory)) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    replayBatch(batch, report);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        replayBatch(batch, report);
+
+        report.elapsedNanos = System.nanoTime() - start;
+        logger.info("Replay finished: {}", report);
+        return report;
+    }
+
+    private void replayBatch(List<JournalRecord> batch, Report report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> bodies = new ArrayList<>(batch.size());
+        for (JournalRecord record : batch) {
+            bodies.add(record.getBody());
+        }
+        List<Map<String, Double>> results = candidate.classifyBatch(bodies);
+        for (int i = 0; i < batch.size(); i++) {
+            report.record(batch.get(i).getVerdict(), JournalRecord.bestCategory(results.get(i)));
+        }
+        batch.clear();
+    }
+
+    /**
+     * Outcome of a replay.
+     */
+    public static class Report {
+        private long records;
+        private long flips;
+        private final Map<String, Long> transitions = new TreeMap<>();
+        private long elapsedNanos;
+
+        void record(String recorded, String replayed) {
+            records++;
+            if (!recorded.equals(replayed)) {
+                flips++;
+                transitions.merge(recorded + "->" + replayed, 1L, Long::sum);
+            }
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getFlips() {
+            return flips;
+        }
+
+        /**
+         * @return Flip counts keyed by "recorded->replayed", e.g. "spam->ham"
+         */
+        public Map<String, Long> getTransitions() {
+            return transitions;
+        }
+
+        public double getFlipRate() {
+            return records == 0 ? 0.0 : flips / (double) records;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : records * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d records, %d flipped (%.2f%%) %s, %.0f records/s",
+                    records, flips, getFlipRate() * 100, transitions, getRecordsPerSecond());
+        }
+    }
+}
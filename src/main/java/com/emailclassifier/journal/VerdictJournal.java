@@ -0,0 +1,313 @@
+package com.emailclassifier.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Durable, append-only record of classification verdicts.
+ *
+ * The journal is a directory of fixed-size segment files written through
+ * memory mappings. Appends are queued and a single writer thread commits them
+ * in groups: it copies every queued record into the mapped segment and forces
+ * the segment to disk once per group, then completes the appenders' futures.
+ * Under load many verdicts share one force, which is what keeps appends cheap.
+ *
+ * Every record carries a CRC32. When an existing journal is reopened, the last
+ * segment is scanned up to the first missing or damaged record, and anything
+ * after it (a write torn by a crash) is zeroed before appending resumes.
+ */
+public class VerdictJournal implements Closeable {
+    private static final Logger logger = LogManager.getLogger(VerdictJournal.class);
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_BATCH = 512;
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxBatch;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private volatile boolean open = true;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private VerdictJournal(Path directory, int segmentBytes, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = maxBatch;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0, segmentBytes);
+        } else {
+            recover(segments.get(segments.size() - 1), segments.size() - 1);
+        }
+
+        this.writer = new Thread(this::writeLoop, "verdict-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens the journal in a directory, creating it or resuming after its last intact record.
+     *
+     * @param directory Journal directory
+     * @return The open journal
+     * @throws IOException If the segments cannot be mapped
+     */
+    public static VerdictJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param segmentBytes Size of each segment file; larger records get a segment of their own
+     * @param maxBatch     Maximum number of records committed by one force
+     */
+    public static VerdictJournal open(Path directory, int segmentBytes, int maxBatch) throws IOException {
+        if (segmentBytes < 1024 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid journal settings: segmentBytes=" + segmentBytes
+                    + ", maxBatch=" + maxBatch);
+        }
+        return new VerdictJournal(directory, segmentBytes, maxBatch);
+    }
+
+    /**
+     * Queues a verdict for the next group commit, blocking while the queue is full.
+     *
+     * @param modelId       Identifier of the model that produced the verdict
+     * @param probabilities Category probabilities returned by the classifier
+     * @param body          Raw message, kept so the verdict can be replayed
+     * @return A future completed once the record is on disk
+     */
+    public CompletableFuture<Void> append(String modelId, Map<String, Double> probabilities, String body) {
+        return append(new JournalRecord(System.currentTimeMillis(), modelId, probabilities, body));
+    }
+
+    public CompletableFuture<Void> append(JournalRecord record) {
+        if (!open) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        PendingAppend pending = new PendingAppend(record.encode());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    /**
+     * @return Mean number of records made durable by one force
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0.0 : records.sum() / (double) count;
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        while (open || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                for (PendingAppend pending : batch) {
+                    write(pending.bytes);
+                }
+                segment.force();
+                records.add(batch.size());
+                batches.increment();
+                for (PendingAppend pending : batch) {
+                    pending.future.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to commit {} journal records", batch.size(), e);
+                for (PendingAppend pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (segment.remaining() < bytes.length) {
+            segment.force();
+            channel.close();
+            openSegment(segmentIndex + 1, Math.max(segmentBytes, bytes.length));
+        }
+        segment.put(bytes);
+    }
+
+    private void openSegment(int index, int size) throws IOException {
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        logger.debug("Opened journal segment {}", segmentPath(directory, index));
+    }
+
+    /**
+     * Positions the writer after the last intact record of a segment and
+     * clears whatever follows it.
+     */
+    private void recover(Path last, int index) throws IOException {
+        openSegment(index, segmentBytes);
+        int intact = 0;
+        while (JournalRecord.decode(segment) != null) {
+            intact++;
+        }
+        int end = segment.position();
+        while (segment.hasRemaining()) {
+            segment.put((byte) 0);
+        }
+        segment.force();
+        segment.position(end);
+        logger.info("Resumed journal {} at segment {} after {} records", directory, last.getFileName(), intact);
+    }
+
+    /**
+     * Stops accepting appends, commits everything queued and closes the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+        channel.close();
+        logger.info("Closed verdict journal {}: {} records in {} commits", directory, records.sum(), batches.sum());
+    }
+
+    /**
+     * Streams the records of a journal in append order. Segments are mapped
+     * read-only one at a time.
+     *
+     * @param directory Journal directory
+     * @return The records; iteration throws UncheckedIOException if a segment cannot be read
+     * @throws IOException If the directory cannot be listed
+     */
+    public static Iterable<JournalRecord> read(Path directory) throws IOException {
+        List<Path> segments = listSegments(directory);
+        return () -> new RecordIterator(segments);
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> {
+                        String name = f.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static class PendingAppend {
+        final byte[] bytes;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingAppend(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static class RecordIterator implements Iterator<JournalRecord> {
+        private final Iterator<Path> segments;
+        private MappedByteBuffer current;
+        private JournalRecord next;
+
+        RecordIterator(List<Path> segments) {
+            this.segments = segments.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (current != null) {
+                    next = JournalRecord.decode(current);
+                    if (next != null) {
+                        break;
+                    }
+                }
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                try (FileChannel channel = FileChannel.open(segments.next(), StandardOpenOption.READ)) {
+                    current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public JournalRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JournalRecord record = next;
+            next = null;
+            return record;
+        }
+    }
+}
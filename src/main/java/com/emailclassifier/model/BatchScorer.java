@@ -0,0 +1,193 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.BagOfWordsFeatureGenerator;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.FeatureGenerator;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores batches of documents against a maxent model copied into dense
+ * per-outcome weight arrays. Documents are first encoded to feature-id arrays,
+ * then the batch is summed and normalized by a {@link ScoringKernel}: the
+ * Vector API kernel when it was compiled (src/vector/java) and
+ * jdk.incubator.vector is resolved at runtime (--add-modules
+ * jdk.incubator.vector), scalar loops otherwise.
+ *
+ * Probabilities match DocumentCategorizerME up to floating point rounding.
+ */
+public class BatchScorer {
+    private static final Logger logger = LogManager.getLogger(BatchScorer.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "com.emailclassifier.model.VectorScoringKernel";
+
+    private final Map<String, Integer> featureIds;
+    private final double[][] weights;
+    private final FeatureGenerator[] featureGenerators;
+    private final ScoringKernel kernel;
+
+    private BatchScorer(Map<String, Integer> featureIds, double[][] weights,
+                        FeatureGenerator[] featureGenerators, ScoringKernel kernel) {
+        this.featureIds = featureIds;
+        this.weights = weights;
+        this.featureGenerators = featureGenerators;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Creates a batch scorer for the given model, or returns null when the
+     * model is not a GIS maxent model with bag-of-words or hashed n-gram features.
+     *
+     * @param model Trained doccat model
+     * @return A scorer, or null if the model type is not supported
+     */
+    public static BatchScorer forModel(DoccatModel model) {
+        return forModel(model, defaultKernel());
+    }
+
+    @SuppressWarnings("unchecked")
+    static BatchScorer forModel(DoccatModel model, ScoringKernel kernel) {
+        MaxentModel maxent = model.getMaxentModel();
+        if (!(maxent instanceof GISModel)) {
+            logger.warn("Batch scoring not supported for model type {}", maxent.getClass().getSimpleName());
+            return null;
+        }
+
+        FeatureGenerator[] generators = model.getFactory().getFeatureGenerators();
+        for (FeatureGenerator generator : generators) {
+            if (!(generator instanceof BagOfWordsFeatureGenerator)
+                    && !(generator instanceof HashedNGramFeatureGenerator)) {
+                logger.warn("Batch scoring not supported for feature generator {}",
+                        generator.getClass().getSimpleName());
+                return null;
+            }
+        }
+
+        Object[] structures = ((GISModel) maxent).getDataStructures();
+        Map<String, Context> pmap = (Map<String, Context>) structures[1];
+        Map<String, Integer> ids = new HashMap<>(pmap.size() * 2);
+        double[][] weights = new double[maxent.getNumOutcomes()][pmap.size()];
+        for (Map.Entry<String, Context> entry : pmap.entrySet()) {
+            int id = ids.size();
+            ids.put(entry.getKey(), id);
+            Context context = entry.getValue();
+            int[] outcomes = context.getOutcomes();
+            double[] parameters = context.getParameters();
+            for (int i = 0; i < outcomes.length; i++) {
+                weights[outcomes[i]][id] = parameters[i];
+            }
+        }
+
+        logger.info("Batch scorer ready: {} features, {} outcomes, {} kernel",
+                ids.size(), weights.length, kernel.getClass().getSimpleName());
+        return new BatchScorer(ids, weights, generators, kernel);
+    }
+
+    /**
+     * Loads the Vector API kernel when the incubator module is part of the boot
+     * layer and the kernel was compiled.
+     */
+    private static ScoringKernel defaultKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (ScoringKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException e) {
+                logger.info("Vector API kernel not compiled, using scalar scoring");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Vector API kernel unavailable, using scalar scoring", e);
+            }
+        } else {
+            logger.debug("Module {} not present, using scalar scoring", VECTOR_MODULE);
+        }
+        return new ScalarScoringKernel();
+    }
+
+    public boolean isVectorized() {
+        return !(kernel instanceof ScalarScoringKernel);
+    }
+
+    /**
+     * Converts preprocessed tokens into the ids of the model features they produce.
+     * Features the model has no weights for are dropped.
+     *
+     * @param tokens Tokens of one document
+     * @return Feature ids, one per feature occurrence
+     */
+    public int[] encode(String[] tokens) {
+        IdBuffer ids = new IdBuffer(tokens.length);
+        for (FeatureGenerator generator : featureGenerators) {
+            if (generator instanceof HashedNGramFeatureGenerator) {
+                ((HashedNGramFeatureGenerator) generator).forEachFeature(tokens, 0, tokens.length,
+                        feature -> ids.add(featureIds.get(feature)));
+                continue;
+            }
+            for (String feature : generator.extractFeatures(tokens, Collections.emptyMap())) {
+                ids.add(featureIds.get(feature));
+            }
+        }
+        return ids.toArray();
+    }
+
+    /**
+     * Scores a batch of encoded documents.
+     *
+     * @param documents Feature ids of each document, as returned by {@link #encode}
+     * @return Outcome probabilities indexed [document][outcome], in model outcome order
+     */
+    public double[][] score(List<int[]> documents) {
+        int outcomes = weights.length;
+        double[][] sums = new double[outcomes][documents.size()];
+        double[] documentSums = new double[outcomes];
+        for (int d = 0; d < documents.size(); d++) {
+            kernel.sum(weights, documents.get(d), documentSums);
+            for (int o = 0; o < outcomes; o++) {
+                sums[o][d] = documentSums[o];
+            }
+        }
+
+        kernel.softmax(sums, documents.size());
+
+        double[][] probabilities = new double[documents.size()][outcomes];
+        for (int d = 0; d < documents.size(); d++) {
+            for (int o = 0; o < outcomes; o++) {
+                probabilities[d][o] = sums[o][d];
+            }
+        }
+        return probabilities;
+    }
+
+    /**
+     * Growable int array collecting the ids of known features.
+     */
+    private static class IdBuffer {
+        private int[] ids;
+        private int size;
+
+        IdBuffer(int expected) {
+            ids = new int[Math.max(16, expected)];
+        }
+
+        void add(Integer id) {
+            if (id == null) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
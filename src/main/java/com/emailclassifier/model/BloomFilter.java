@@ -0,0 +1,155 @@
+package com.emailclassifier.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compact Bloom filter over strings, used to hold large domain lists in a few
+ * bits per entry. Lookups can probe a range of a CharSequence so that parent
+ * domains are checked without building substrings.
+ *
+ * The k bit positions are derived from two 64-bit hashes (Kirsch-Mitzenmacher).
+ */
+public class BloomFilter {
+    private static final int MAGIC = 0x424C4F4D; // "BLOM"
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private long insertions;
+
+    private BloomFilter(long[] bits, int numHashes, long insertions) {
+        this.bits = bits;
+        this.numBits = (long) bits.length * Long.SIZE;
+        this.numHashes = numHashes;
+        this.insertions = insertions;
+    }
+
+    /**
+     * Creates an empty filter sized for the expected number of entries.
+     *
+     * @param expectedInsertions Number of entries the filter will hold
+     * @param falsePositiveRate  Target probability that an absent entry is reported present
+     * @return An empty filter
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + Long.SIZE - 1) / Long.SIZE);
+        return new BloomFilter(new long[Math.max(1, words)], k, 0);
+    }
+
+    /**
+     * Reads a filter written by {@link #write(Path)}.
+     *
+     * @param file Filter file
+     * @return The filter
+     * @throws IOException If the file cannot be read or is not a filter file
+     */
+    public static BloomFilter read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a Bloom filter file: " + file);
+            }
+            int numHashes = in.readInt();
+            long insertions = in.readLong();
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            return new BloomFilter(bits, numHashes, insertions);
+        }
+    }
+
+    /**
+     * Writes the filter in a compact binary form that loads without rehashing.
+     *
+     * @param file Destination file
+     * @throws IOException If writing fails
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(numHashes);
+            out.writeLong(insertions);
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    public void add(CharSequence value) {
+        long h1 = hash(value, 0, value.length());
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        insertions++;
+    }
+
+    public boolean mightContain(CharSequence value) {
+        return mightContain(value, 0, value.length());
+    }
+
+    /**
+     * Checks whether chars [start, end) of the text may have been added.
+     */
+    public boolean mightContain(CharSequence text, int start, int end) {
+        long h1 = hash(text, start, end);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getInsertions() {
+        return insertions;
+    }
+
+    public long getSizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * Expected false positive rate at the current fill.
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-numHashes * (double) insertions / numBits), numHashes);
+    }
+
+    private static long hash(CharSequence text, int start, int end) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer, spreads FNV's weak low bits.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,58 @@
+package com.emailclassifier.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters for the domain reputation pre-filter: how many messages
+ * it saw, how many it decided without the categorizer, and the time it took.
+ */
+public class CascadeStats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder resolvedSpam = new LongAdder();
+    private final LongAdder resolvedHam = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    void record(String verdict, long elapsedNanos) {
+        calls.increment();
+        nanos.add(elapsedNanos);
+        if (DomainReputation.SPAM.equals(verdict)) {
+            resolvedSpam.increment();
+        } else if (DomainReputation.HAM.equals(verdict)) {
+            resolvedHam.increment();
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getResolvedSpam() {
+        return resolvedSpam.sum();
+    }
+
+    public long getResolvedHam() {
+        return resolvedHam.sum();
+    }
+
+    /**
+     * @return Fraction of messages decided by the pre-filter alone
+     */
+    public double getResolvedRate() {
+        long total = getCalls();
+        return total == 0 ? 0.0 : (getResolvedSpam() + getResolvedHam()) / (double) total;
+    }
+
+    /**
+     * @return Mean time spent extracting and checking domains, in microseconds
+     */
+    public double getAverageMicros() {
+        long total = getCalls();
+        return total == 0 ? 0.0 : nanos.sum() / 1000.0 / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls=%d, resolved=%.1f%% (spam=%d, ham=%d), avg=%.1fus",
+                getCalls(), getResolvedRate() * 100, getResolvedSpam(), getResolvedHam(), getAverageMicros());
+    }
+}
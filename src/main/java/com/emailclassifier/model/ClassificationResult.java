@@ -0,0 +1,69 @@
+package com.emailclassifier.model;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Outcome of a deadline-aware classification, with the probabilities and
+ * whether they were computed on the whole email.
+ */
+public class ClassificationResult {
+
+    /**
+     * Pipeline stages checked against the time budget.
+     */
+    public enum Stage { PREPROCESS, TOKENIZE, SCORE }
+
+    public enum Status {
+        /** The whole email was scored within the budget. */
+        COMPLETE,
+        /** Only a prefix of the email was scored to stay within the budget. */
+        PARTIAL,
+        /** The budget could not cover scoring anything; probabilities are uniform. */
+        FALLBACK,
+        /** Scoring finished after the budget ran out; the probabilities are still valid. */
+        LATE
+    }
+
+    private final Map<String, Double> probabilities;
+    private final Status status;
+    private final Stage exhaustedStage;
+    private final long elapsedNanos;
+
+    public ClassificationResult(Map<String, Double> probabilities, Status status,
+                                Stage exhaustedStage, long elapsedNanos) {
+        this.probabilities = probabilities;
+        this.status = status;
+        this.exhaustedStage = exhaustedStage;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Map<String, Double> getProbabilities() {
+        return probabilities;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isComplete() {
+        return status == Status.COMPLETE;
+    }
+
+    /**
+     * @return The stage at which the budget ran short, SCORE for a late result, or null if it never did
+     */
+    public Stage getExhaustedStage() {
+        return exhaustedStage;
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return status + (exhaustedStage != null ? "@" + exhaustedStage : "")
+                + " " + probabilities + " in " + elapsedNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,67 @@
+package com.emailclassifier.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters for deadline-aware classification: how many calls ran,
+ * and at which stage the budget was missed or forced a partial result.
+ */
+public class DeadlineStats {
+    private final LongAdder calls = new LongAdder();
+    private final AtomicLongArray misses = new AtomicLongArray(ClassificationResult.Stage.values().length);
+    private final AtomicLongArray partials = new AtomicLongArray(ClassificationResult.Stage.values().length);
+
+    void recordCall() {
+        calls.increment();
+    }
+
+    void recordMiss(ClassificationResult.Stage stage) {
+        misses.incrementAndGet(stage.ordinal());
+    }
+
+    void recordPartial(ClassificationResult.Stage stage) {
+        partials.incrementAndGet(stage.ordinal());
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return Number of calls that fell back at the given stage, or finished late for SCORE
+     */
+    public long getMisses(ClassificationResult.Stage stage) {
+        return misses.get(stage.ordinal());
+    }
+
+    public long getTotalMisses() {
+        long total = 0;
+        for (int i = 0; i < misses.length(); i++) {
+            total += misses.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return Number of calls truncated before the given stage to fit the budget
+     */
+    public long getPartials(ClassificationResult.Stage stage) {
+        return partials.get(stage.ordinal());
+    }
+
+    public double getMissRate() {
+        long total = getCalls();
+        return total == 0 ? 0.0 : getTotalMisses() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("calls=").append(getCalls());
+        for (ClassificationResult.Stage stage : ClassificationResult.Stage.values()) {
+            sb.append(", ").append(stage).append("[missed=").append(getMisses(stage))
+              .append(", partial=").append(getPartials(stage)).append(']');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.emailclassifier.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a deduplication pass: which samples were kept, how many exact
+ * and near duplicates were dropped, and the training time they cost when measured.
+ */
+public class DeduplicationReport {
+    private final int total;
+    private int exactDuplicates;
+    private int nearDuplicates;
+    private int conflictingLabels;
+    private final Map<String, Integer> removedPerCategory = new TreeMap<>();
+    private List<EncodedSample> kept;
+    private long elapsedNanos;
+    private long trainingMillis = -1;
+    private long baselineTrainingMillis = -1;
+
+    DeduplicationReport(int total) {
+        this.total = total;
+    }
+
+    void recordExact(String category, String originalCategory) {
+        exactDuplicates++;
+        removedPerCategory.merge(category, 1, Integer::sum);
+        if (!category.equals(originalCategory)) {
+            conflictingLabels++;
+        }
+    }
+
+    void recordNear(String category) {
+        nearDuplicates++;
+        removedPerCategory.merge(category, 1, Integer::sum);
+    }
+
+    void finish(List<EncodedSample> kept, long elapsedNanos) {
+        this.kept = kept;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void setTrainingMillis(long trainingMillis) {
+        this.trainingMillis = trainingMillis;
+    }
+
+    void setBaselineTrainingMillis(long baselineTrainingMillis) {
+        this.baselineTrainingMillis = baselineTrainingMillis;
+    }
+
+    List<EncodedSample> getKept() {
+        return kept;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getExactDuplicates() {
+        return exactDuplicates;
+    }
+
+    public int getNearDuplicates() {
+        return nearDuplicates;
+    }
+
+    public int getRemoved() {
+        return exactDuplicates + nearDuplicates;
+    }
+
+    /**
+     * @return Number of exact duplicates whose category differs from the kept sample's
+     */
+    public int getConflictingLabels() {
+        return conflictingLabels;
+    }
+
+    public Map<String, Integer> getRemovedPerCategory() {
+        return removedPerCategory;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return Milliseconds spent training on the kept samples, or -1 before training has run
+     */
+    public long getTrainingMillis() {
+        return trainingMillis;
+    }
+
+    /**
+     * @return Milliseconds spent training on the same split without deduplication,
+     *         or -1 when it was not measured
+     */
+    public long getBaselineTrainingMillis() {
+        return baselineTrainingMillis;
+    }
+
+    /**
+     * Training time saved, measured by also training on the undeduplicated
+     * split. The baseline runs second, on a warmer JVM, so the saving is
+     * if anything understated.
+     *
+     * @return Milliseconds saved, or -1 when the baseline was not measured
+     */
+    public long getTrainingMillisSaved() {
+        if (trainingMillis < 0 || baselineTrainingMillis < 0) {
+            return -1;
+        }
+        return baselineTrainingMillis - trainingMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d samples removed (exact=%d, near=%d, conflicting labels=%d, per category=%s) "
+                        + "in %.1f ms, training=%d ms, without deduplication=%d ms",
+                getRemoved(), total, exactDuplicates, nearDuplicates, conflictingLabels, removedPerCategory,
+                getElapsedMillis(), trainingMillis, baselineTrainingMillis);
+    }
+}
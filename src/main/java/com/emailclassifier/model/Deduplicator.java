@@ -0,0 +1,290 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Removes exact and near-duplicate training samples before the train/eval
+ * split, so repeated spam neither slows training nor leaks into evaluation.
+ *
+ * Exact duplicates share a 64-bit hash of their token ids. Near duplicates are
+ * found with MinHash over token shingles and locality-sensitive hashing: the
+ * signature is cut into bands, samples sharing a band are candidates, and a
+ * candidate is a duplicate when its estimated Jaccard similarity reaches the
+ * threshold. The first occurrence of each group is kept.
+ *
+ * Hashes and signatures are computed in parallel, one block of samples at a
+ * time. Memory is bounded by the number of tracked samples rather than the
+ * corpus: exact hashes live in a fixed-size set-associative table and kept
+ * signatures in a ring, indexed by one fixed-size slot table per band. Once
+ * full, older entries are overwritten, so later copies of old samples may be
+ * missed; recall degrades while memory stays put.
+ */
+public class Deduplicator {
+    private static final Logger logger = LogManager.getLogger(Deduplicator.class);
+
+    public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.8;
+    public static final int DEFAULT_SHINGLE_SIZE = 3;
+    /** Default number of samples remembered for matching, about 50 MB of tables at most. */
+    public static final int DEFAULT_MAX_TRACKED_SAMPLES = 1 << 16;
+
+    private static final int BANDS = 32;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS;
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int EXACT_WAYS = 4;
+
+    private final double similarityThreshold;
+    private final int shingleSize;
+    private final int maxTrackedSamples;
+    private final long[] seeds;
+
+    public Deduplicator() {
+        this(DEFAULT_SIMILARITY_THRESHOLD, DEFAULT_SHINGLE_SIZE, DEFAULT_MAX_TRACKED_SAMPLES);
+    }
+
+    /**
+     * @param similarityThreshold Estimated Jaccard similarity from which samples are near duplicates
+     * @param shingleSize         Number of consecutive tokens per shingle
+     * @param maxTrackedSamples   Number of samples remembered for matching, which bounds memory
+     */
+    public Deduplicator(double similarityThreshold, int shingleSize, int maxTrackedSamples) {
+        if (similarityThreshold <= 0 || similarityThreshold > 1) {
+            throw new IllegalArgumentException("Similarity threshold must be in (0, 1]: " + similarityThreshold);
+        }
+        if (shingleSize < 1) {
+            throw new IllegalArgumentException("Shingle size must be positive: " + shingleSize);
+        }
+        if (maxTrackedSamples < 1) {
+            throw new IllegalArgumentException("Number of tracked samples must be positive: " + maxTrackedSamples);
+        }
+        this.similarityThreshold = similarityThreshold;
+        this.shingleSize = shingleSize;
+        this.maxTrackedSamples = maxTrackedSamples;
+        this.seeds = new long[SIGNATURE_LENGTH];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public int getMaxTrackedSamples() {
+        return maxTrackedSamples;
+    }
+
+    /**
+     * Removes duplicates, keeping the first sample of each group in input order.
+     *
+     * @param samples Encoded samples, in loading order
+     * @return The kept samples and duplicate counts
+     */
+    DeduplicationReport deduplicate(List<EncodedSample> samples) {
+        long start = System.nanoTime();
+        // Small corpora do not pay for the full tables
+        int capacity = Math.min(maxTrackedSamples, Math.max(1, samples.size()));
+        ExactHashes exact = new ExactHashes(capacity);
+        BandIndex bands = new BandIndex(capacity);
+        List<EncodedSample> kept = new ArrayList<>();
+        DeduplicationReport report = new DeduplicationReport(samples.size());
+
+        for (int from = 0; from < samples.size(); from += BLOCK_SIZE) {
+            int to = Math.min(samples.size(), from + BLOCK_SIZE);
+            int offset = from;
+            long[] hashes = new long[to - from];
+            int[][] signatures = new int[to - from][];
+            IntStream.range(from, to).parallel().forEach(i -> {
+                int[] ids = samples.get(i).getTokenIds();
+                hashes[i - offset] = exactHash(ids);
+                signatures[i - offset] = signature(ids);
+            });
+
+            // Sequential pass so the kept sample of each group is always the first one
+            for (int i = from; i < to; i++) {
+                EncodedSample sample = samples.get(i);
+                String original = exact.putIfAbsent(hashes[i - offset], sample.getCategory());
+                if (original != null) {
+                    report.recordExact(sample.getCategory(), original);
+                    continue;
+                }
+
+                int[] signature = signatures[i - offset];
+                if (bands.hasNearDuplicate(signature)) {
+                    report.recordNear(sample.getCategory());
+                    continue;
+                }
+
+                bands.add(signature);
+                kept.add(sample);
+            }
+        }
+
+        if (kept.size() > capacity || exact.evictions > 0) {
+            logger.info("Deduplication tracked at most {} samples, {} exact hashes were evicted",
+                    capacity, exact.evictions);
+        }
+        report.finish(kept, System.nanoTime() - start);
+        logger.info("Deduplication: {}", report);
+        return report;
+    }
+
+    /**
+     * MinHash signature over the shingles of the token ids.
+     */
+    private int[] signature(int[] ids) {
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, ids.length - shingleSize + 1);
+        for (int s = 0; s < shingles; s++) {
+            long shingle = 0x84222325L;
+            for (int i = s; i < Math.min(ids.length, s + shingleSize); i++) {
+                shingle = (shingle ^ ids[i]) * 0x100000001B3L;
+            }
+            for (int h = 0; h < SIGNATURE_LENGTH; h++) {
+                int value = (int) (mix(shingle ^ seeds[h]) >>> 33);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Fraction of equal signature positions, an estimate of Jaccard similarity.
+     */
+    private static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return equal / (double) a.length;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            key = mix(key * 31 + signature[i]);
+        }
+        return key;
+    }
+
+    private static long exactHash(int[] ids) {
+        long h = ids.length;
+        for (int id : ids) {
+            h = mix(h ^ id) + 0x9E3779B97F4A7C15L;
+        }
+        return h;
+    }
+
+    private static int tableSize(int capacity) {
+        return Math.max(EXACT_WAYS, Integer.highestOneBit(Math.max(1, capacity - 1)) << 2);
+    }
+
+    /**
+     * Fixed-size set of exact hashes with the category of the sample that
+     * added each. A full bucket evicts one of its entries.
+     */
+    private static final class ExactHashes {
+        private final long[] hashes;
+        private final String[] categories;
+        private final int bucketMask;
+        private int evictions;
+
+        ExactHashes(int capacity) {
+            int size = tableSize(capacity);
+            hashes = new long[size];
+            categories = new String[size];
+            bucketMask = size / EXACT_WAYS - 1;
+        }
+
+        /**
+         * @return The category recorded for the hash, or null if it was added now
+         */
+        String putIfAbsent(long hash, String category) {
+            int base = (int) (hash >>> 32 & bucketMask) * EXACT_WAYS;
+            for (int i = base; i < base + EXACT_WAYS; i++) {
+                if (categories[i] == null) {
+                    hashes[i] = hash;
+                    categories[i] = category;
+                    return null;
+                }
+                if (hashes[i] == hash) {
+                    return categories[i];
+                }
+            }
+            int victim = base + (int) (hash & (EXACT_WAYS - 1));
+            hashes[victim] = hash;
+            categories[victim] = category;
+            evictions++;
+            return null;
+        }
+    }
+
+    /**
+     * Signatures of the most recently kept samples, reachable through one
+     * direct-mapped slot table per band. A slot keeps the last signature
+     * whose band hashed there; stale slots are harmless since every
+     * candidate is confirmed by its similarity.
+     */
+    private final class BandIndex {
+        private final int[][] signatures;
+        private final int[] slots;
+        private final int slotMask;
+        private int next;
+
+        BandIndex(int capacity) {
+            signatures = new int[capacity][];
+            int size = tableSize(capacity);
+            slots = new int[BANDS * size];
+            Arrays.fill(slots, -1);
+            slotMask = size - 1;
+        }
+
+        boolean hasNearDuplicate(int[] signature) {
+            for (int band = 0; band < BANDS; band++) {
+                int candidate = slots[slot(signature, band)];
+                if (candidate >= 0 && similarity(signature, signatures[candidate]) >= similarityThreshold) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(int[] signature) {
+            int index = next;
+            next = (next + 1) % signatures.length;
+            signatures[index] = signature;
+            for (int band = 0; band < BANDS; band++) {
+                slots[slot(signature, band)] = index;
+            }
+        }
+
+        private int slot(int[] signature, int band) {
+            return band * (slotMask + 1) + (int) (bandKey(signature, band) & slotMask);
+        }
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,200 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * First stage of the classification cascade: decides a message from the
+ * reputation of its URL hosts and sender domains, before the categorizer runs.
+ *
+ * A domain matches when it or one of its parent domains (down to two labels)
+ * is listed. Any blocklisted sender domain or URL host makes the message spam.
+ * Only the sender domains can make it ham: anyone can link to a trusted site,
+ * so an allowlisted URL host decides nothing. The message is ham when every
+ * sender domain is allowlisted and nothing is blocklisted; a message hitting
+ * both lists, or neither, is left to the model.
+ *
+ * The blocklist is a Bloom filter, so a very large list costs a few bits per
+ * domain and a false positive at worst sends a message to the spam folder. The
+ * allowlist is an exact set, since a false positive there would deliver spam.
+ */
+public class DomainReputation {
+    private static final Logger logger = LogManager.getLogger(DomainReputation.class);
+
+    /** Default false positive rate of filters built from text lists. */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 1e-6;
+
+    public static final String SPAM = "spam";
+    public static final String HAM = "ham";
+
+    private final BloomFilter blocklist;
+    private final Set<String> allowlist;
+
+    /**
+     * @param blocklist Spam domains, or null for none
+     * @param allowlist Trusted sender domains, lowercase, or null for none
+     */
+    public DomainReputation(BloomFilter blocklist, Set<String> allowlist) {
+        this.blocklist = blocklist;
+        this.allowlist = allowlist == null ? Collections.emptySet() : allowlist;
+    }
+
+    /**
+     * Loads blocklist and allowlist files. A blocklist ending in ".bloom" is
+     * read as a saved filter; other files are text lists with one domain per
+     * line ('#' starts a comment). The allowlist must be a text list. Either
+     * path may be null.
+     *
+     * @param blocklistFile Spam domains
+     * @param allowlistFile Trusted domains
+     * @return The reputation stage
+     * @throws IOException If a list cannot be read
+     */
+    public static DomainReputation load(Path blocklistFile, Path allowlistFile) throws IOException {
+        return new DomainReputation(loadList(blocklistFile), loadExactList(allowlistFile));
+    }
+
+    private static Set<String> loadExactList(Path file) throws IOException {
+        if (file == null) {
+            return null;
+        }
+        if (file.getFileName().toString().endsWith(".bloom")) {
+            throw new IOException("The allowlist must be a text list, a Bloom filter could let spam through: " + file);
+        }
+        Set<String> domains;
+        try (Stream<String> lines = domains(file)) {
+            domains = lines.collect(Collectors.toCollection(HashSet::new));
+        }
+        logger.info("Loaded allowlist {} ({} domains)", file, domains.size());
+        return domains;
+    }
+
+    private static BloomFilter loadList(Path file) throws IOException {
+        if (file == null) {
+            return null;
+        }
+        if (file.getFileName().toString().endsWith(".bloom")) {
+            BloomFilter filter = BloomFilter.read(file);
+            logger.info("Loaded domain filter {} ({} domains, {} bytes)",
+                    file, filter.getInsertions(), filter.getSizeInBytes());
+            return filter;
+        }
+        return fromDomainList(file, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Builds a filter from a text domain list. The file is read twice, once to
+     * size the filter and once to fill it, so the list is never held in memory.
+     *
+     * @param file              Text list, one domain per line
+     * @param falsePositiveRate Target false positive rate
+     * @return The filled filter
+     * @throws IOException If the list cannot be read
+     */
+    public static BloomFilter fromDomainList(Path file, double falsePositiveRate) throws IOException {
+        long count;
+        try (Stream<String> lines = domains(file)) {
+            count = lines.count();
+        }
+
+        BloomFilter filter = BloomFilter.create(count, falsePositiveRate);
+        try (Stream<String> lines = domains(file)) {
+            lines.forEach(filter::add);
+        }
+
+        logger.info("Built domain filter from {}: {} domains in {} bytes", file, count, filter.getSizeInBytes());
+        return filter;
+    }
+
+    private static Stream<String> domains(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        return reader.lines()
+                .map(line -> line.trim().toLowerCase(Locale.ROOT))
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Decides the category of a message from its domains.
+     *
+     * @param senderDomains Lowercase domains of the sender header fields
+     * @param urlHosts      Lowercase host names of the URLs in the message
+     * @return "spam" when something is blocklisted and no sender domain is allowed,
+     *         "ham" when every sender domain is allowed and nothing is blocklisted, null otherwise
+     */
+    public String decide(Collection<String> senderDomains, Collection<String> urlHosts) {
+        boolean blocked = false;
+        for (String host : urlHosts) {
+            blocked |= listed(blocklist, host);
+        }
+        boolean anyAllowed = false;
+        boolean allAllowed = !senderDomains.isEmpty();
+        for (String domain : senderDomains) {
+            blocked |= listed(blocklist, domain);
+            boolean allowed = allowed(domain);
+            anyAllowed |= allowed;
+            allAllowed &= allowed;
+        }
+        if (blocked) {
+            return anyAllowed ? null : SPAM;
+        }
+        return allAllowed ? HAM : null;
+    }
+
+    /**
+     * Exact lookup of the domain and its parents in the allowlist.
+     */
+    private boolean allowed(String domain) {
+        if (allowlist.isEmpty()) {
+            return false;
+        }
+        int start = 0;
+        int dot;
+        while ((dot = domain.indexOf('.', start)) >= 0) {
+            if (allowlist.contains(domain.substring(start))) {
+                return true;
+            }
+            start = dot + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Checks the domain and its parents, e.g. a.b.example.com, b.example.com, example.com.
+     */
+    private static boolean listed(BloomFilter filter, String domain) {
+        if (filter == null) {
+            return false;
+        }
+        int start = 0;
+        int dot;
+        // Stops before probing a bare top-level domain
+        while ((dot = domain.indexOf('.', start)) >= 0) {
+            if (filter.mightContain(domain, start, domain.length())) {
+                return true;
+            }
+            start = dot + 1;
+        }
+        return false;
+    }
+}
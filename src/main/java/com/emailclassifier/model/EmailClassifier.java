@@ -1,15 +1,27 @@
 package com.emailclassifier.model;
 
+import com.emailclassifier.utils.ModelIO;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import opennlp.tools.doccat.*;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.DataIndexer;
 import opennlp.tools.util.*;
 import opennlp.tools.util.model.ModelUtil;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -18,12 +30,100 @@ import java.util.function.Consumer;
 public class EmailClassifier {
     private static final Logger logger = LogManager.getLogger(EmailClassifier.class);
 
+    /** Fraction of the samples held out for evaluation. */
+    private static final double EVAL_FRACTION = 0.2;
+
+    /** Default number of bucket files used by out-of-core training. */
+    public static final int DEFAULT_SPILL_BUCKETS = 256;
+
+    /** Token count above which a message is scored in parallel segments. */
+    public static final int DEFAULT_PARALLEL_SCORING_THRESHOLD = 50_000;
+
     private DoccatModel model;
     private DocumentCategorizerME categorizer;
+    private SegmentedScorer segmentedScorer;
+    private BatchScorer batchScorer;
+    private int segmentSize = SegmentedScorer.DEFAULT_SEGMENT_SIZE;
+    private int parallelScoringThreshold = DEFAULT_PARALLEL_SCORING_THRESHOLD;
+    // Trains new models with the current preprocessing version
     private final EmailPreprocessor preprocessor;
+    // Same language, with the preprocessing version of the model being served
+    private volatile EmailPreprocessor servingPreprocessor;
+
+    // 0 trains with OpenNLP's bag-of-words features, otherwise hashed 1..n-grams
+    private int nGramOrder;
+    private int nGramBuckets = HashedNGramFeatureGenerator.DEFAULT_BUCKETS;
+    private FeatureSelector featureSelector;
+    // Tokens kept by feature selection for the current model, null when all are kept
+    private FeatureVocabulary featureVocabulary;
+    // Removes duplicate samples before the split when set
+    private Deduplicator deduplicator;
+    private boolean measureDeduplicationSavings;
+    private DeduplicationReport lastDeduplicationReport;
+    // Directory receiving spilled samples for out-of-core training, null to train in memory
+    private Path spillDirectory;
+    private int spillBuckets = DEFAULT_SPILL_BUCKETS;
+    private long shuffleSeed;
+    // Seed of the in-memory train/evaluation split, null for a new split on every run
+    private Long splitSeed;
+
+    private static final int TRAINING_ITERATIONS = 100;
+    private static final int TRAINING_CUTOFF = 3;
+    /** Progress reported once the training events are indexed, iterations fill the rest up to 0.9. */
+    private static final double INDEXED_PROGRESS = 0.55;
+
+    /** Default number of GIS iterations between two model checkpoints. */
+    public static final int DEFAULT_CHECKPOINT_ITERATIONS = 25;
+    // Directory keeping the stages of an unfinished training run, null to keep none
+    private Path checkpointDirectory;
+    private int checkpointIterations = DEFAULT_CHECKPOINT_ITERATIONS;
+    private volatile boolean cancelRequested;
+
+    /** Fraction of the remaining budget that the stages still to run may plan to use. */
+    private static final double DEADLINE_SAFETY_FACTOR = 0.8;
+
+    private final DeadlineStats deadlineStats = new DeadlineStats();
+
+    // Optional first stage deciding messages from their domains, null when disabled
+    private volatile DomainReputation domainReputation;
+    private final CascadeStats cascadeStats = new CascadeStats();
+    private final StageCosts stageCosts = new StageCosts();
+
+    /** Default upper bound on the time spent warming up a model. */
+    public static final Duration DEFAULT_MAX_WARM_UP = Duration.ofSeconds(10);
+    private static final int MIN_WARM_UP_ROUNDS = 3;
+    private static final String WARM_UP_SAMPLE_RESOURCE = "/warmup/messages.txt";
+
+    // Starts a background warm-up on each model change, readiness waits for it
+    private boolean warmUpOnLoad;
+    private List<String> warmUpSample;
+    private Duration maxWarmUp = DEFAULT_MAX_WARM_UP;
+    private volatile WarmUpReport lastWarmUpReport;
+    private final Object readinessLock = new Object();
+    private boolean ready;
+
+    /** Default number of messages waiting for the shadow model before new ones are dropped. */
+    public static final int DEFAULT_SHADOW_QUEUE = 256;
+    // Candidate model scoring sampled traffic on the side, null when disabled
+    private volatile ShadowScorer shadowScorer;
 
     public EmailClassifier() {
         this.preprocessor = new EmailPreprocessor();
+        this.servingPreprocessor = preprocessor;
+    }
+
+    /**
+     * Creates a classifier whose preprocessing removes the stop words of the given language.
+     *
+     * @param language Language of the messages this model handles, e.g. "en" or "fr"
+     */
+    public EmailClassifier(String language) {
+        this.preprocessor = new EmailPreprocessor(language);
+        this.servingPreprocessor = preprocessor;
+    }
+
+    public String getLanguage() {
+        return preprocessor.getLanguage();
     }
 
     public boolean isModelTrained() {
@@ -34,70 +134,714 @@ public class EmailClassifier {
         return model;
     }
 
+    public DeadlineStats getDeadlineStats() {
+        return deadlineStats;
+    }
+
+    public CascadeStats getCascadeStats() {
+        return cascadeStats;
+    }
+
+    /**
+     * Enables the domain reputation pre-filter: messages with a blocklisted
+     * domain, or sent only from allowlisted domains, are decided without the
+     * categorizer (see {@link DomainReputation#decide}).
+     *
+     * @param domainReputation The reputation lists, or null to disable the pre-filter
+     */
+    public void setDomainReputation(DomainReputation domainReputation) {
+        this.domainReputation = domainReputation;
+    }
+
+    /**
+     * Makes every model change (load, train or setModel) start a warm-up in
+     * the background. The classifier reports itself ready once it is done.
+     * When disabled, the classifier is ready as soon as a model is set.
+     */
+    public void setWarmUpOnLoad(boolean warmUpOnLoad) {
+        this.warmUpOnLoad = warmUpOnLoad;
+    }
+
+    /**
+     * Sets the messages run through the classifier while warming up.
+     *
+     * @param warmUpSample Representative messages, or null for the synthetic sample shipped as a resource
+     */
+    public void setWarmUpSample(List<String> warmUpSample) {
+        this.warmUpSample = warmUpSample == null ? null : new ArrayList<>(warmUpSample);
+    }
+
+    public void setMaxWarmUp(Duration maxWarmUp) {
+        if (maxWarmUp.isNegative() || maxWarmUp.isZero()) {
+            throw new IllegalArgumentException("Warm-up limit must be positive: " + maxWarmUp);
+        }
+        this.maxWarmUp = maxWarmUp;
+    }
+
+    public WarmUpReport getLastWarmUpReport() {
+        return lastWarmUpReport;
+    }
+
+    /**
+     * Also scores a sampled fraction of the classified messages with a
+     * candidate model, on a low-priority background thread. The primary
+     * verdict never waits for it; the comparison is in getShadowStats().
+     *
+     * @param candidate  Model to evaluate on live traffic, or null to stop shadow scoring
+     * @param sampleRate Fraction of messages also scored by the candidate
+     */
+    public void setShadowModel(DoccatModel candidate, double sampleRate) {
+        if (candidate != null && (sampleRate <= 0 || sampleRate > 1)) {
+            throw new IllegalArgumentException("Sample rate must be in (0, 1]: " + sampleRate);
+        }
+        ShadowScorer previous = shadowScorer;
+        if (candidate == null) {
+            shadowScorer = null;
+        } else {
+            EmailClassifier shadow = new EmailClassifier(getLanguage());
+            shadow.setModel(candidate);
+            shadowScorer = new ShadowScorer(shadow, sampleRate, DEFAULT_SHADOW_QUEUE);
+            logger.info("Shadow scoring {}% of messages with a candidate model", sampleRate * 100);
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * @return The comparison with the current shadow model, or null if there is none
+     */
+    public ShadowStats getShadowStats() {
+        ShadowScorer shadow = shadowScorer;
+        return shadow == null ? null : shadow.getStats();
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the number of tokens per segment in parallel scoring.
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        if (model != null) {
+            segmentedScorer = SegmentedScorer.forModel(ModelCompressor.expand(model), segmentSize,
+                    ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Makes the next training use hashed n-gram features instead of plain unigrams.
+     *
+     * @param order   Longest n-gram (1 = unigrams, 2 = unigrams and bigrams, ...)
+     * @param buckets Number of hash buckets, which bounds the model's feature count
+     */
+    public void setHashedNGramFeatures(int order, int buckets) {
+        if (order < 1) {
+            throw new IllegalArgumentException("N-gram order must be positive: " + order);
+        }
+        this.nGramOrder = order;
+        this.nGramBuckets = buckets;
+    }
+
+    /**
+     * Makes the next training use OpenNLP's default bag-of-words features.
+     */
+    public void useBagOfWordsFeatures() {
+        this.nGramOrder = 0;
+    }
+
+    /**
+     * Makes the next training keep only the top-K tokens ranked by the given
+     * statistic. The selected vocabulary is stored in the model.
+     *
+     * @param method Ranking statistic
+     * @param topK   Number of tokens to keep
+     */
+    public void setFeatureSelection(FeatureSelector.Method method, int topK) {
+        this.featureSelector = new FeatureSelector(method, topK);
+    }
+
+    /**
+     * Makes the next training keep every token that passes the cutoff.
+     */
+    public void disableFeatureSelection() {
+        this.featureSelector = null;
+    }
+
+    /**
+     * Removes exact and near-duplicate samples before training and evaluation.
+     *
+     * @param similarityThreshold Estimated Jaccard similarity from which two messages are duplicates
+     */
+    public void setDeduplication(double similarityThreshold) {
+        setDeduplication(similarityThreshold, Deduplicator.DEFAULT_MAX_TRACKED_SAMPLES);
+    }
+
+    /**
+     * Removes exact and near-duplicate samples before training and evaluation,
+     * remembering a bounded number of samples to match against.
+     *
+     * @param similarityThreshold Estimated Jaccard similarity from which two messages are duplicates
+     * @param maxTrackedSamples   Number of samples remembered; duplicates of older ones may be missed
+     */
+    public void setDeduplication(double similarityThreshold, int maxTrackedSamples) {
+        this.deduplicator = new Deduplicator(similarityThreshold, Deduplicator.DEFAULT_SHINGLE_SIZE,
+                maxTrackedSamples);
+    }
+
+    /**
+     * Makes deduplicated training also train a throwaway model on the split
+     * without deduplication, so the report holds the measured time saved.
+     * This roughly doubles training time.
+     */
+    public void setMeasureDeduplicationSavings(boolean measureDeduplicationSavings) {
+        this.measureDeduplicationSavings = measureDeduplicationSavings;
+    }
+
+    public void disableDeduplication() {
+        this.deduplicator = null;
+    }
+
+    /**
+     * @return The report of the last training run's deduplication, or null if it was disabled
+     */
+    public DeduplicationReport getLastDeduplicationReport() {
+        return lastDeduplicationReport;
+    }
+
+    /**
+     * Makes training spill tokenized samples to temporary files under the given
+     * directory instead of keeping them in the heap. Samples are shuffled
+     * externally with the seed and split by category, and both sides are
+     * streamed back from disk; the files are deleted once training ends.
+     *
+     * @param spillDirectory Directory for the temporary sample files
+     * @param buckets        Number of bucket files; about 1/buckets of the corpus is in memory at once
+     * @param seed           Seed of the shuffle
+     */
+    public void setOutOfCoreTraining(Path spillDirectory, int buckets, long seed) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Number of buckets must be positive: " + buckets);
+        }
+        this.spillDirectory = spillDirectory;
+        this.spillBuckets = buckets;
+        this.shuffleSeed = seed;
+    }
+
+    /**
+     * Fixes the shuffle that splits in-memory samples into the training and
+     * evaluation sets, so that runs with different settings on the same data
+     * are trained and evaluated on the same messages.
+     *
+     * @param seed Seed of the shuffle, or null for a different split on every run
+     */
+    public void setSplitSeed(Long seed) {
+        this.splitSeed = seed;
+    }
+
+    public void useInMemoryTraining() {
+        this.spillDirectory = null;
+    }
+
+    /**
+     * Makes in-memory training save its stages to the given directory: the
+     * tokenized corpus, the shuffled split and the model every few iterations.
+     * If training fails or is cancelled, training again with the same data and
+     * settings resumes from the latest stage. The directory is cleared once a
+     * run completes. Out-of-core training does not use checkpoints.
+     *
+     * @param checkpointDirectory Directory for the checkpoint files
+     * @param iterations          GIS iterations between two model checkpoints
+     */
+    public void setCheckpointDirectory(Path checkpointDirectory, int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations between checkpoints must be positive: " + iterations);
+        }
+        this.checkpointDirectory = checkpointDirectory;
+        this.checkpointIterations = iterations;
+    }
+
+    public void setCheckpointDirectory(Path checkpointDirectory) {
+        setCheckpointDirectory(checkpointDirectory, DEFAULT_CHECKPOINT_ITERATIONS);
+    }
+
+    public void disableCheckpoints() {
+        this.checkpointDirectory = null;
+    }
+
+    /**
+     * Asks the running training to stop. It does so at its next check, between
+     * two messages or two GIS iterations, and throws TrainingCancelledException.
+     * Every train call clears the request when it starts.
+     */
+    public void cancelTraining() {
+        cancelRequested = true;
+    }
+
+    private void checkCancelled() throws TrainingCancelledException {
+        if (cancelRequested) {
+            throw new TrainingCancelledException("Training cancelled");
+        }
+    }
+
+    public int getParallelScoringThreshold() {
+        return parallelScoringThreshold;
+    }
+
+    /**
+     * Sets the token count above which classify scores segments in parallel.
+     *
+     * @param parallelScoringThreshold Minimum number of tokens, or Integer.MAX_VALUE to disable
+     */
+    public void setParallelScoringThreshold(int parallelScoringThreshold) {
+        if (parallelScoringThreshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + parallelScoringThreshold);
+        }
+        this.parallelScoringThreshold = parallelScoringThreshold;
+    }
+
     public double train(Map<String, String[]> dataset, Consumer<Double> progressCallback) throws IOException {
         logger.info("Starting model training...");
+        cancelRequested = false;
+
+        if (spillDirectory != null) {
+            Map<String, Iterator<String>> sources = new LinkedHashMap<>();
+            for (Map.Entry<String, String[]> entry : dataset.entrySet()) {
+                sources.put(entry.getKey(), Arrays.asList(entry.getValue()).iterator());
+            }
+            return trainOutOfCore(sources, progressCallback);
+        }
+
+        TrainingCheckpoint checkpoint = openCheckpoint(datasetFingerprint(dataset));
+        Vocabulary vocabulary = new Vocabulary();
+        List<EncodedSample> samples;
+        if (checkpoint != null && checkpoint.hasCorpus()) {
+            samples = checkpoint.loadCorpus(vocabulary);
+        } else {
+            samples = new ArrayList<>();
+            int totalDocs = dataset.values().stream().mapToInt(arr -> arr.length).sum();
+            int processed = 0;
+            double lastProgress = 0;
+
+            for (Map.Entry<String, String[]> entry : dataset.entrySet()) {
+                for (String text : entry.getValue()) {
+                    checkCancelled();
+                    samples.add(toSample(vocabulary, entry.getKey(), text));
+                    processed++;
+
+                    double currentProgress = processed / (double) totalDocs * 0.5;
+                    if (currentProgress - lastProgress >= 0.05) {
+                        lastProgress = currentProgress;
+                        progressCallback.accept(currentProgress);
+                    }
+                }
+            }
+            if (checkpoint != null) {
+                checkpoint.saveCorpus(vocabulary, samples);
+            }
+        }
+
+        progressCallback.accept(0.5);
+        return fitAndEvaluate(samples, vocabulary, checkpoint, progressCallback);
+    }
+
+    /**
+     * Trains from message streams, such as mailbox readers, tokenizing each
+     * message as it arrives so raw texts are never held together in memory.
+     *
+     * @param sources          Messages per category
+     * @param progressCallback Receives progress between 0 and 1
+     * @return Accuracy on the held-out evaluation split
+     * @throws IOException If training fails
+     */
+    public double trainFromSources(Map<String, ? extends Iterator<String>> sources,
+                                   Consumer<Double> progressCallback) throws IOException {
+        logger.info("Starting model training from streamed sources...");
+        cancelRequested = false;
 
-        List<DocumentSample> samples = new ArrayList<>();
-        int totalDocs = dataset.values().stream().mapToInt(arr -> arr.length).sum();
-        int processed = 0;
-        double lastProgress = 0;
+        if (spillDirectory != null) {
+            return trainOutOfCore(sources, progressCallback);
+        }
+
+        Vocabulary vocabulary = new Vocabulary();
+        List<EncodedSample> samples = new ArrayList<>();
+        for (Map.Entry<String, ? extends Iterator<String>> entry : sources.entrySet()) {
+            Iterator<String> messages = entry.getValue();
+            int count = 0;
+            while (messages.hasNext()) {
+                checkCancelled();
+                samples.add(toSample(vocabulary, entry.getKey(), messages.next()));
+                count++;
+            }
+            logger.info("Tokenized {} {} messages", count, entry.getKey());
+        }
+
+        progressCallback.accept(0.5);
+        return fitAndEvaluate(samples, vocabulary, openCheckpoint(samplesFingerprint(samples, vocabulary)),
+                progressCallback);
+    }
+
+    /**
+     * Creates a thread-safe collector that tokenizes messages for {@link #train(SampleCollector, Consumer)}.
+     */
+    public SampleCollector newSampleCollector() {
+        return new SampleCollector(preprocessor, new Vocabulary());
+    }
+
+    /**
+     * Trains on the samples gathered by a collector.
+     *
+     * @param collector        Collector filled with tokenized messages
+     * @param progressCallback Receives progress between 0 and 1
+     * @return Accuracy on the held-out evaluation split
+     * @throws IOException If training fails
+     */
+    public double train(SampleCollector collector, Consumer<Double> progressCallback) throws IOException {
+        logger.info("Starting model training from {} collected samples...", collector.size());
+        cancelRequested = false;
+        progressCallback.accept(0.5);
+        List<EncodedSample> samples = collector.getSamples();
+        Vocabulary vocabulary = collector.getVocabulary();
+        return fitAndEvaluate(samples, vocabulary, openCheckpoint(samplesFingerprint(samples, vocabulary)),
+                progressCallback);
+    }
+
+    /**
+     * Tokenizes the messages into a disk spill and trains from it.
+     */
+    private double trainOutOfCore(Map<String, ? extends Iterator<String>> sources,
+                                  Consumer<Double> progressCallback) throws IOException {
+        if (checkpointDirectory != null) {
+            logger.warn("Out-of-core training keeps its samples in temporary files and does not use checkpoints");
+        }
+        Vocabulary vocabulary = new Vocabulary();
+        try (SampleSpill spill = new SampleSpill(spillDirectory, spillBuckets, shuffleSeed)) {
+            for (Map.Entry<String, ? extends Iterator<String>> entry : sources.entrySet()) {
+                Iterator<String> messages = entry.getValue();
+                while (messages.hasNext()) {
+                    checkCancelled();
+                    spill.add(toSample(vocabulary, entry.getKey(), messages.next()));
+                }
+            }
+            spill.finish();
+            logger.info("Spilled samples per category: {}", spill.getCategoryCounts());
+
+            progressCallback.accept(0.5);
+            return fitAndEvaluate(spill, vocabulary, progressCallback);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
+    private EncodedSample toSample(Vocabulary vocabulary, String category, String text) {
+        String preprocessed = preprocessor.preprocess(text);
+        String[] tokens = preprocessor.tokenize(preprocessed);
+        return new EncodedSample(category, vocabulary.encode(tokens));
+    }
+
+    /**
+     * Opens the checkpoint of a run, or returns null when checkpoints are disabled.
+     */
+    private TrainingCheckpoint openCheckpoint(long dataFingerprint) throws IOException {
+        if (checkpointDirectory == null) {
+            return null;
+        }
+        long fingerprint = Objects.hash(preprocessor.getLanguage(), nGramOrder, nGramBuckets,
+                featureSelector == null ? null : featureSelector.getMethod(),
+                featureSelector == null ? 0 : featureSelector.getTopK(),
+                deduplicator == null ? null : deduplicator.getSimilarityThreshold(),
+                TRAINING_ITERATIONS, TRAINING_CUTOFF, EVAL_FRACTION);
+        return TrainingCheckpoint.open(checkpointDirectory, fingerprint * 31 + dataFingerprint);
+    }
+
+    private static long datasetFingerprint(Map<String, String[]> dataset) {
+        long hash = 1;
         for (Map.Entry<String, String[]> entry : dataset.entrySet()) {
+            hash = hash * 31 + entry.getKey().hashCode();
+            hash = hash * 31 + entry.getValue().length;
             for (String text : entry.getValue()) {
-                String preprocessed = preprocessor.preprocess(text);
-                String[] tokens = preprocessor.tokenize(preprocessed);
-                samples.add(new DocumentSample(entry.getKey(), tokens));
-                processed++;
-
-                double currentProgress = processed / (double) totalDocs * 0.5;
-                if (currentProgress - lastProgress >= 0.05) {
-                    lastProgress = currentProgress;
-                    progressCallback.accept(currentProgress);
+                hash = hash * 31 + text.hashCode();
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes tokenized samples by their token strings, which do not depend on id assignment.
+     */
+    private static long samplesFingerprint(List<EncodedSample> samples, Vocabulary vocabulary) {
+        long hash = 2;
+        for (EncodedSample sample : samples) {
+            hash = hash * 31 + sample.getCategory().hashCode();
+            hash = hash * 31 + Arrays.hashCode(vocabulary.decode(sample.getTokenIds()));
+        }
+        return hash;
+    }
+
+    private double fitAndEvaluate(List<EncodedSample> samples, Vocabulary vocabulary, TrainingCheckpoint checkpoint,
+                                  Consumer<Double> progressCallback) throws IOException {
+        logger.info("Encoded {} samples over a vocabulary of {} distinct tokens", samples.size(), vocabulary.size());
+
+        int[] order = checkpoint != null ? checkpoint.loadOrder() : null;
+        List<EncodedSample> undeduplicated = null;
+        if (order != null) {
+            List<EncodedSample> ordered = new ArrayList<>(order.length);
+            for (int position : order) {
+                ordered.add(samples.get(position));
+            }
+            samples = ordered;
+            lastDeduplicationReport = null;
+            logger.info("Restored the shuffled order of {} samples from checkpoint", order.length);
+        } else {
+            Map<EncodedSample, Integer> positions = null;
+            if (checkpoint != null) {
+                positions = new IdentityHashMap<>();
+                for (int i = 0; i < samples.size(); i++) {
+                    positions.put(samples.get(i), i);
                 }
             }
+
+            DeduplicationReport deduplication = null;
+            if (deduplicator != null) {
+                deduplication = deduplicator.deduplicate(samples);
+                if (measureDeduplicationSavings) {
+                    undeduplicated = new ArrayList<>(samples);
+                }
+                samples = deduplication.getKept();
+            }
+            lastDeduplicationReport = deduplication;
+
+            Collections.shuffle(samples, splitRandom());
+            if (checkpoint != null) {
+                order = new int[samples.size()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = positions.get(samples.get(i));
+                }
+                checkpoint.saveOrder(order);
+            }
         }
+        checkCancelled();
 
-        progressCallback.accept(0.5);
+        int split = (int) (samples.size() * (1 - EVAL_FRACTION));
+        List<EncodedSample> trainSet = samples.subList(0, split);
+        List<EncodedSample> evalSet = samples.subList(split, samples.size());
 
-        Collections.shuffle(samples);
-        int split = (int) (samples.size() * 0.8);
-        List<DocumentSample> trainSet = samples.subList(0, split);
-        List<DocumentSample> evalSet = samples.subList(split, samples.size());
+        FeatureVocabulary selected = null;
+        if (featureSelector != null) {
+            selected = featureSelector.select(trainSet, vocabulary);
+            trainSet = restrictTo(trainSet, vocabulary, selected);
+        }
 
-        TrainingParameters params = ModelUtil.createDefaultTrainingParameters();
-        params.put(TrainingParameters.ITERATIONS_PARAM, 100);
-        params.put(TrainingParameters.CUTOFF_PARAM, 3);
+        double accuracy = fitAndEvaluate(trainSet, evalSet, vocabulary, selected, checkpoint, progressCallback);
+        if (undeduplicated != null) {
+            measureBaselineTraining(undeduplicated, vocabulary, selected);
+        }
+        return accuracy;
+    }
+
+    /**
+     * Times training on the split the samples would have given without
+     * deduplication, and records it in the last deduplication report.
+     */
+    private void measureBaselineTraining(List<EncodedSample> samples, Vocabulary vocabulary,
+                                         FeatureVocabulary selected) throws IOException {
+        Collections.shuffle(samples, splitRandom());
+        List<EncodedSample> trainSet = samples.subList(0, (int) (samples.size() * (1 - EVAL_FRACTION)));
+        if (selected != null) {
+            trainSet = restrictTo(trainSet, vocabulary, selected);
+        }
+
+        long start = System.nanoTime();
+        fit(trainSet, vocabulary, createFactory(selected), null, progress -> { });
+        lastDeduplicationReport.setBaselineTrainingMillis((System.nanoTime() - start) / 1_000_000);
+        logger.info("Deduplication: {}", lastDeduplicationReport);
+    }
+
+    /**
+     * Trains and evaluates on the stratified split of spilled samples,
+     * streaming both sides from disk.
+     */
+    private double fitAndEvaluate(SampleSpill spill, Vocabulary vocabulary,
+                                  Consumer<Double> progressCallback) throws IOException {
+        logger.info("Spilled {} samples over a vocabulary of {} distinct tokens", spill.size(), vocabulary.size());
+        if (deduplicator != null) {
+            logger.warn("Deduplication needs the samples in memory and is skipped for out-of-core training");
+        }
+        lastDeduplicationReport = null;
+
+        Iterable<EncodedSample> trainSet = spill.trainSide(EVAL_FRACTION);
+        FeatureVocabulary selected = null;
+        if (featureSelector != null) {
+            selected = featureSelector.select(trainSet, vocabulary);
+            boolean[] kept = selectedIds(vocabulary, selected);
+            Iterable<EncodedSample> unrestricted = trainSet;
+            trainSet = () -> new Iterator<EncodedSample>() {
+                private final Iterator<EncodedSample> samples = unrestricted.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return samples.hasNext();
+                }
 
-        try (ObjectStream<DocumentSample> stream = ObjectStreamUtils.createObjectStream(trainSet)) {
-            model = DocumentCategorizerME.train("en", stream, params, new DoccatFactory());
+                @Override
+                public EncodedSample next() {
+                    return restrictTo(samples.next(), kept);
+                }
+            };
         }
 
-        this.categorizer = new DocumentCategorizerME(model);
+        return fitAndEvaluate(trainSet, spill.evalSide(EVAL_FRACTION), vocabulary, selected, null, progressCallback);
+    }
+
+    private double fitAndEvaluate(Iterable<EncodedSample> trainSet, Iterable<EncodedSample> evalSet,
+                                  Vocabulary vocabulary, FeatureVocabulary selected, TrainingCheckpoint checkpoint,
+                                  Consumer<Double> progressCallback) throws IOException {
+        checkCancelled();
+        long trainStart = System.nanoTime();
+        DoccatModel trained = fit(trainSet, vocabulary, createFactory(selected), checkpoint, progressCallback);
+        DeduplicationReport deduplication = lastDeduplicationReport;
+        if (deduplication != null) {
+            deduplication.setTrainingMillis((System.nanoTime() - trainStart) / 1_000_000);
+            logger.info("Deduplication: {}", deduplication);
+        }
+        useModel(trained);
 
         progressCallback.accept(0.9);
-        double accuracy = evaluateModel(evalSet);
+        double accuracy = evaluateModel(evalSet, vocabulary);
         progressCallback.accept(1.0);
+        if (checkpoint != null) {
+            checkpoint.clear();
+        }
 
         logger.info("Training completed with accuracy: {}", accuracy);
         return accuracy;
     }
 
-    private double evaluateModel(List<DocumentSample> evalSamples) {
+    /**
+     * Trains the maximum entropy model as DocumentCategorizerME.train would,
+     * but runs GIS one iteration at a time so that progress is reported per
+     * iteration, cancellation is checked before each one and, with a
+     * checkpoint, the model is saved after each block or on cancellation and
+     * resumed from.
+     */
+    private DoccatModel fit(Iterable<EncodedSample> trainSet, Vocabulary vocabulary, DoccatFactory factory,
+                            TrainingCheckpoint checkpoint, Consumer<Double> progressCallback) throws IOException {
+        TrainingParameters params = ModelUtil.createDefaultTrainingParameters();
+        params.put(TrainingParameters.ITERATIONS_PARAM, TRAINING_ITERATIONS);
+        params.put(TrainingParameters.CUTOFF_PARAM, TRAINING_CUTOFF);
+        Map<String, String> manifest = new HashMap<>();
+        manifest.put(EmailPreprocessor.VERSION_MANIFEST_ENTRY, String.valueOf(preprocessor.getVersion()));
+        ResumableGISTrainer trainer = new ResumableGISTrainer(() -> cancelRequested);
+        trainer.init(params, manifest);
+
+        DataIndexer indexer;
+        try (ObjectStream<DocumentSample> stream = new EncodedSampleStream(trainSet, vocabulary)) {
+            indexer = trainer.getDataIndexer(new DocumentCategorizerEventStream(stream, factory.getFeatureGenerators()));
+        }
+        checkCancelled();
+
+        GISModel maxent = checkpoint != null ? checkpoint.loadModel() : null;
+        int done = maxent != null ? checkpoint.getModelIterations() : 0;
+        progressCallback.accept(iterationProgress(done));
+        int block = checkpoint != null ? checkpointIterations : TRAINING_ITERATIONS;
+        int threads = params.getIntParameter(TrainingParameters.THREADS_PARAM, 1);
+        while (done < TRAINING_ITERATIONS) {
+            int iterations = Math.min(block, TRAINING_ITERATIONS - done);
+            int offset = done;
+            maxent = trainer.continueTraining(maxent, iterations, indexer, threads,
+                    completed -> progressCallback.accept(iterationProgress(offset + completed)));
+            done += trainer.getLastIterations();
+            // A cancelled block still keeps the iterations it completed
+            if (checkpoint != null && trainer.getLastIterations() > 0) {
+                checkpoint.saveModel(maxent, done);
+            }
+            if (trainer.getLastIterations() < iterations) {
+                throw new TrainingCancelledException(checkpoint == null ? "Training cancelled"
+                        : "Training cancelled, checkpoint " + checkpoint + " resumes after iteration " + done);
+            }
+        }
+        return new DoccatModel(preprocessor.getLanguage(), maxent, manifest, factory);
+    }
+
+    private Random splitRandom() {
+        return splitSeed == null ? new Random() : new Random(splitSeed);
+    }
+
+    private static double iterationProgress(int iterations) {
+        return INDEXED_PROGRESS + (0.9 - INDEXED_PROGRESS) * iterations / TRAINING_ITERATIONS;
+    }
+
+    /**
+     * Drops from each sample the tokens that were not selected.
+     */
+    private List<EncodedSample> restrictTo(List<EncodedSample> samples, Vocabulary vocabulary,
+                                           FeatureVocabulary selected) {
+        boolean[] kept = selectedIds(vocabulary, selected);
+        List<EncodedSample> restricted = new ArrayList<>(samples.size());
+        for (EncodedSample sample : samples) {
+            restricted.add(restrictTo(sample, kept));
+        }
+        return restricted;
+    }
+
+    private static boolean[] selectedIds(Vocabulary vocabulary, FeatureVocabulary selected) {
+        boolean[] kept = new boolean[vocabulary.size()];
+        for (int id = 0; id < kept.length; id++) {
+            kept[id] = selected.contains(vocabulary.tokenOf(id));
+        }
+        return kept;
+    }
+
+    private static EncodedSample restrictTo(EncodedSample sample, boolean[] kept) {
+        int[] ids = sample.getTokenIds();
+        int count = 0;
+        int[] filtered = new int[ids.length];
+        for (int id : ids) {
+            if (kept[id]) {
+                filtered[count++] = id;
+            }
+        }
+        return new EncodedSample(sample.getCategory(), Arrays.copyOf(filtered, count));
+    }
+
+    private DoccatFactory createFactory(FeatureVocabulary selected) {
+        if (nGramOrder == 0) {
+            return selected == null ? new DoccatFactory() : new EmailDoccatFactory(selected);
+        }
+        logger.info("Using hashed {}-gram features with {} buckets", nGramOrder, nGramBuckets);
+        return new HashedNGramDoccatFactory(nGramOrder, nGramBuckets, selected);
+    }
+
+    /**
+     * Drops tokens outside the model's selected vocabulary, if it has one.
+     */
+    private String[] selectFeatures(String[] tokens) {
+        return featureVocabulary != null ? featureVocabulary.filter(tokens) : tokens;
+    }
+
+    private double evaluateModel(Iterable<EncodedSample> evalSamples, Vocabulary vocabulary) {
         if (categorizer == null) {
             logger.error("Categorizer is not initialized.");
             return 0;
         }
 
         int correct = 0;
+        int total = 0;
 
-        for (DocumentSample sample : evalSamples) {
+        for (EncodedSample sample : evalSamples) {
+            total++;
             String expected = sample.getCategory();
-            String[] tokens = sample.getText();
+            String[] tokens = selectFeatures(vocabulary.decode(sample.getTokenIds()));
             String predicted = categorizer.getBestCategory(categorizer.categorize(tokens));
             if (expected.equals(predicted)) correct++;
         }
 
-        return correct / (double) evalSamples.size();
+        return correct / (double) total;
     }
 
     public Map<String, Double> classify(String emailContent) {
@@ -106,19 +850,489 @@ public class EmailClassifier {
             throw new IllegalStateException("Model not trained or loaded.");
         }
 
-        String text = preprocessor.preprocess(emailContent);
-        String[] tokens = preprocessor.tokenize(text);
-        double[] probs = categorizer.categorize(tokens);
+        Map<String, Double> results = prefilter(emailContent);
+        if (results == null) {
+            ShadowScorer shadow = shadowScorer;
+            long start = System.nanoTime();
+            if (shadow != null) {
+                shadow.enter();
+            }
+            try {
+                String text = servingPreprocessor.preprocess(emailContent);
+                String[] tokens = selectFeatures(servingPreprocessor.tokenize(text));
+                results = toResultMap(score(tokens));
+            } finally {
+                if (shadow != null) {
+                    shadow.exit();
+                }
+            }
+            if (shadow != null) {
+                shadow.offer(emailContent, results, System.nanoTime() - start);
+            }
+        }
+
+        logger.info("Classification result: {}", results);
+        return results;
+    }
+
+    /**
+     * Classifies several emails at once. The batch is scored by the vectorized
+     * BatchScorer when the model supports it, and one message at a time otherwise.
+     *
+     * Waits for a warm-up in progress first, for at most the warm-up time
+     * limit, since a batch is about throughput rather than the latency of
+     * its first message.
+     *
+     * @param emails Raw email texts
+     * @return The category probabilities of each email, in input order
+     * @throws IllegalStateException If interrupted while waiting for the warm-up
+     */
+    public List<Map<String, Double>> classifyBatch(List<String> emails) {
+        if (categorizer == null) {
+            logger.error("Cannot classify. Model not loaded or trained.");
+            throw new IllegalStateException("Model not trained or loaded.");
+        }
+        if (!isReady()) {
+            logger.info("Waiting for the warm-up before classifying {} messages", emails.size());
+            try {
+                if (!awaitReady(maxWarmUp)) {
+                    logger.warn("Warm-up still running after {}, classifying the batch anyway", maxWarmUp);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the warm-up", e);
+            }
+        }
+
+        List<Map<String, Double>> results = new ArrayList<>(emails.size());
+        if (batchScorer == null) {
+            for (String email : emails) {
+                results.add(classify(email));
+            }
+            return results;
+        }
+
+        ShadowScorer shadow = shadowScorer;
+        long start = System.nanoTime();
+        if (shadow != null) {
+            shadow.enter();
+        }
+        // Messages decided by the pre-filter keep their slot, the rest are scored together
+        List<int[]> documents = new ArrayList<>(emails.size());
+        List<Integer> scoredSlots = new ArrayList<>(emails.size());
+        try {
+            for (String email : emails) {
+                Map<String, Double> decided = prefilter(email);
+                results.add(decided);
+                if (decided == null) {
+                    String text = servingPreprocessor.preprocess(email);
+                    String[] tokens = selectFeatures(servingPreprocessor.tokenize(text));
+                    documents.add(batchScorer.encode(tokens));
+                    scoredSlots.add(results.size() - 1);
+                }
+            }
+            double[][] scored = batchScorer.score(documents);
+            for (int i = 0; i < scored.length; i++) {
+                results.set(scoredSlots.get(i), toResultMap(scored[i]));
+            }
+        } finally {
+            if (shadow != null) {
+                shadow.exit();
+            }
+        }
+        if (shadow != null && !scoredSlots.isEmpty()) {
+            long perMessage = (System.nanoTime() - start) / scoredSlots.size();
+            for (int slot : scoredSlots) {
+                shadow.offer(emails.get(slot), results.get(slot), perMessage);
+            }
+        }
+
+        logger.info("Classified a batch of {} emails", emails.size());
+        return results;
+    }
+
+    /**
+     * Classifies an email within a time budget. Before each of preprocessing,
+     * tokenizing and scoring the remaining time is checked against the
+     * estimated cost of the stages left: when it is not enough for the whole
+     * text only a prefix goes on (PARTIAL), and when nothing fits a uniform
+     * FALLBACK result is returned instead of overrunning. A call that still
+     * finishes after the budget, since scoring cannot be interrupted, is
+     * reported as LATE.
+     *
+     * @param emailContent Raw email text
+     * @param deadline     Time budget for the whole call
+     * @return The probabilities and how they were obtained
+     */
+    public ClassificationResult classify(String emailContent, Duration deadline) {
+        if (categorizer == null) {
+            logger.error("Cannot classify. Model not loaded or trained.");
+            throw new IllegalStateException("Model not trained or loaded.");
+        }
+
+        long start = System.nanoTime();
+        long budget = deadline.toNanos();
+        deadlineStats.recordCall();
 
+        Map<String, Double> decided = prefilter(emailContent);
+        if (decided != null) {
+            return new ClassificationResult(decided, ClassificationResult.Status.COMPLETE, null,
+                    System.nanoTime() - start);
+        }
+
+        ClassificationResult.Status status = ClassificationResult.Status.COMPLETE;
+        ClassificationResult.Stage exhaustedStage = null;
+        String raw = emailContent == null ? "" : emailContent;
+        long elapsed = System.nanoTime() - start;
+        int affordable = stageCosts.affordableChars(budget - elapsed, DEADLINE_SAFETY_FACTOR,
+                ClassificationResult.Stage.PREPROCESS, ClassificationResult.Stage.TOKENIZE,
+                ClassificationResult.Stage.SCORE);
+        if (affordable == 0) {
+            return fallback(ClassificationResult.Stage.PREPROCESS, elapsed);
+        }
+        if (affordable < raw.length()) {
+            raw = truncate(raw, affordable);
+            status = ClassificationResult.Status.PARTIAL;
+            exhaustedStage = ClassificationResult.Stage.PREPROCESS;
+            deadlineStats.recordPartial(exhaustedStage);
+        }
+
+        long preprocessStart = System.nanoTime();
+        String text = servingPreprocessor.preprocess(raw);
+        long preprocessed = System.nanoTime();
+        stageCosts.update(ClassificationResult.Stage.PREPROCESS, preprocessed - preprocessStart, raw.length());
+        elapsed = preprocessed - start;
+        if (elapsed >= budget) {
+            return fallback(ClassificationResult.Stage.PREPROCESS, elapsed);
+        }
+
+        affordable = stageCosts.affordableChars(budget - elapsed, DEADLINE_SAFETY_FACTOR,
+                ClassificationResult.Stage.TOKENIZE, ClassificationResult.Stage.SCORE);
+        if (affordable == 0) {
+            return fallback(ClassificationResult.Stage.TOKENIZE, elapsed);
+        }
+        if (affordable < text.length()) {
+            text = truncate(text, affordable);
+            if (exhaustedStage == null) {
+                status = ClassificationResult.Status.PARTIAL;
+                exhaustedStage = ClassificationResult.Stage.TOKENIZE;
+                deadlineStats.recordPartial(exhaustedStage);
+            }
+        }
+
+        long tokenizeStart = System.nanoTime();
+        String[] tokens = selectFeatures(servingPreprocessor.tokenize(text));
+        long tokenized = System.nanoTime();
+        stageCosts.update(ClassificationResult.Stage.TOKENIZE, tokenized - tokenizeStart, text.length());
+        elapsed = tokenized - start;
+        if (elapsed >= budget) {
+            return fallback(ClassificationResult.Stage.TOKENIZE, elapsed);
+        }
+
+        // Scoring cost is tracked per character of text, the share of tokens kept follows
+        affordable = stageCosts.affordableChars(budget - elapsed, DEADLINE_SAFETY_FACTOR,
+                ClassificationResult.Stage.SCORE);
+        if (affordable == 0) {
+            return fallback(ClassificationResult.Stage.SCORE, elapsed);
+        }
+        long scoredChars = text.length();
+        if (affordable < text.length()) {
+            int kept = (int) ((long) tokens.length * affordable / text.length());
+            tokens = Arrays.copyOf(tokens, kept);
+            scoredChars = affordable;
+            if (exhaustedStage == null) {
+                status = ClassificationResult.Status.PARTIAL;
+                exhaustedStage = ClassificationResult.Stage.SCORE;
+                deadlineStats.recordPartial(exhaustedStage);
+            }
+        }
+
+        Map<String, Double> results = toResultMap(score(tokens));
+        long end = System.nanoTime();
+        stageCosts.update(ClassificationResult.Stage.SCORE, end - tokenized, scoredChars);
+        elapsed = end - start;
+        if (elapsed >= budget) {
+            // Scoring cannot be interrupted; keep the verdict but report the overrun
+            deadlineStats.recordMiss(ClassificationResult.Stage.SCORE);
+            logger.debug("Deadline of {} missed while scoring", deadline);
+            status = ClassificationResult.Status.LATE;
+            exhaustedStage = ClassificationResult.Stage.SCORE;
+        }
+
+        ClassificationResult result = new ClassificationResult(results, status, exhaustedStage, elapsed);
+        logger.info("Classification result: {}", result);
+        return result;
+    }
+
+    /**
+     * Cuts text to at most the given length, at the last space when there is one.
+     */
+    private static String truncate(String text, int length) {
+        int cut = text.lastIndexOf(' ', length);
+        return text.substring(0, cut > 0 ? cut : length);
+    }
+
+    /**
+     * Runs the domain reputation stage.
+     *
+     * @return A certain verdict for the decided category, or null when the categorizer must decide
+     */
+    private Map<String, Double> prefilter(String emailContent) {
+        DomainReputation reputation = domainReputation;
+        if (reputation == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        String verdict = reputation.decide(preprocessor.extractSenderDomains(emailContent),
+                preprocessor.extractUrlHosts(emailContent));
+        cascadeStats.record(verdict, System.nanoTime() - start);
+        if (verdict == null) {
+            return null;
+        }
+
+        double[] probs = new double[categorizer.getNumberOfCategories()];
+        int index = categorizer.getIndex(verdict);
+        if (index < 0) {
+            logger.warn("Model has no category '{}' for the pre-filter verdict", verdict);
+            return null;
+        }
+        probs[index] = 1.0;
+        logger.debug("Domain reputation decided '{}'", verdict);
+        return toResultMap(probs);
+    }
+
+    private ClassificationResult fallback(ClassificationResult.Stage stage, long elapsed) {
+        deadlineStats.recordMiss(stage);
+        logger.debug("Deadline missed during {}, returning fallback result", stage);
+
+        double[] uniform = new double[categorizer.getNumberOfCategories()];
+        Arrays.fill(uniform, 1.0 / uniform.length);
+        return new ClassificationResult(toResultMap(uniform), ClassificationResult.Status.FALLBACK,
+                stage, elapsed);
+    }
+
+    private Map<String, Double> toResultMap(double[] probs) {
         Map<String, Double> results = new LinkedHashMap<>();
         for (int i = 0; i < categorizer.getNumberOfCategories(); i++) {
             results.put(categorizer.getCategory(i), probs[i]);
         }
-
-        logger.info("Classification result: {}", results);
         return results;
     }
 
+    /**
+     * Scores tokens, splitting oversized documents into segments scored in parallel.
+     */
+    private double[] score(String[] tokens) {
+        if (segmentedScorer != null && tokens.length > parallelScoringThreshold) {
+            logger.debug("Using parallel segment scoring for {} tokens", tokens.length);
+            return segmentedScorer.score(tokens);
+        }
+        return categorizer.categorize(tokens);
+    }
+
+    private void useModel(DoccatModel newModel) {
+        int version = EmailPreprocessor.versionOf(newModel);
+        if (version != preprocessor.getVersion()) {
+            logger.info("Model was trained with preprocessing version {}, serving it with that version", version);
+        }
+        servingPreprocessor = preprocessor.withVersion(version);
+        model = newModel;
+        // Compressed models keep their weights quantized until here
+        DoccatModel scoring = ModelCompressor.expand(newModel);
+        categorizer = new DocumentCategorizerME(scoring);
+        featureVocabulary = newModel.getFactory() instanceof EmailDoccatFactory
+                ? ((EmailDoccatFactory) newModel.getFactory()).getSelectedVocabulary()
+                : null;
+        if (featureVocabulary != null) {
+            logger.info("Model restricts inference to {} selected tokens", featureVocabulary.size());
+        }
+        segmentedScorer = SegmentedScorer.forModel(scoring, segmentSize, ForkJoinPool.commonPool());
+        batchScorer = BatchScorer.forModel(scoring);
+
+        synchronized (readinessLock) {
+            ready = !warmUpOnLoad;
+            readinessLock.notifyAll();
+        }
+        if (warmUpOnLoad) {
+            Thread warmUpThread = new Thread(() -> {
+                try {
+                    warmUp();
+                } catch (RuntimeException e) {
+                    logger.error("Warm-up failed, serving with a cold model", e);
+                    markReady(newModel);
+                }
+            }, "classifier-warm-up");
+            warmUpThread.setDaemon(true);
+            warmUpThread.start();
+        }
+    }
+
+    /**
+     * Runs the warm-up sample through preprocessing, tokenizing and scoring,
+     * single and batched, until the JIT compiler settles: two consecutive
+     * passes in which compilation took at most 2% of the pass. Stops at the
+     * warm-up time limit otherwise, then marks the classifier ready.
+     *
+     * @return Timings of the warm-up
+     */
+    public WarmUpReport warmUp() {
+        DoccatModel target = model;
+        if (target == null) {
+            throw new IllegalStateException("Model not trained or loaded.");
+        }
+        List<String> sample = warmUpSample != null ? warmUpSample : builtInWarmUpSample();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean jitTimed = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+        long start = System.nanoTime();
+        long deadline = start + maxWarmUp.toNanos();
+        long compileStart = jitTimed ? jit.getTotalCompilationTime() : 0;
+        long lastCompile = compileStart;
+        double firstMicros = 0;
+        double lastMicros = 0;
+        int rounds = 0;
+        int quietRounds = 0;
+        boolean stabilized = false;
+        while (System.nanoTime() < deadline && model == target) {
+            long roundStart = System.nanoTime();
+            warmUpRound(sample);
+            long roundNanos = System.nanoTime() - roundStart;
+            double micros = roundNanos / 1000.0 / sample.size();
+            rounds++;
+            if (rounds == 1) {
+                firstMicros = micros;
+            }
+
+            boolean quiet;
+            if (jitTimed) {
+                long compile = jit.getTotalCompilationTime();
+                quiet = compile - lastCompile <= Math.max(1, roundNanos / 1_000_000 / 50);
+                lastCompile = compile;
+            } else {
+                // Without compilation times, wait for the latency to stop improving
+                quiet = rounds > 1 && micros >= lastMicros * 0.95;
+            }
+            lastMicros = micros;
+            quietRounds = quiet ? quietRounds + 1 : 0;
+            if (rounds >= MIN_WARM_UP_ROUNDS && quietRounds >= 2) {
+                stabilized = true;
+                break;
+            }
+        }
+
+        WarmUpReport report = new WarmUpReport(rounds, sample.size(), (System.nanoTime() - start) / 1_000_000,
+                jitTimed ? lastCompile - compileStart : -1, firstMicros, lastMicros, stabilized);
+        lastWarmUpReport = report;
+        logger.info("Warm-up: {}", report);
+        markReady(target);
+        return report;
+    }
+
+    private void warmUpRound(List<String> sample) {
+        List<int[]> documents = new ArrayList<>();
+        for (String email : sample) {
+            String text = servingPreprocessor.preprocess(email);
+            String[] tokens = selectFeatures(servingPreprocessor.tokenize(text));
+            toResultMap(score(tokens));
+            if (batchScorer != null) {
+                documents.add(batchScorer.encode(tokens));
+                if (documents.size() == 64) {
+                    batchScorer.score(documents);
+                    documents.clear();
+                }
+            }
+        }
+        if (batchScorer != null && !documents.isEmpty()) {
+            batchScorer.score(documents);
+        }
+    }
+
+    /**
+     * Reads the warm-up sample shipped with the classifier: short synthetic
+     * messages separated by lines holding only "%%", '#' lines before the
+     * first message being comments.
+     */
+    private static List<String> builtInWarmUpSample() {
+        List<String> sample = new ArrayList<>();
+        try (InputStream in = EmailClassifier.class.getResourceAsStream(WARM_UP_SAMPLE_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Warm-up sample not found: " + WARM_UP_SAMPLE_RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            StringBuilder message = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("%%")) {
+                    if (message != null) {
+                        sample.add(message.toString());
+                    }
+                    message = new StringBuilder();
+                } else if (message != null) {
+                    message.append(line).append('\n');
+                }
+            }
+            if (message != null) {
+                sample.add(message.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the warm-up sample", e);
+        }
+        if (sample.isEmpty()) {
+            throw new IllegalStateException("Empty warm-up sample: " + WARM_UP_SAMPLE_RESOURCE);
+        }
+        return sample;
+    }
+
+    private void markReady(DoccatModel warmed) {
+        synchronized (readinessLock) {
+            // A newer model has its own warm-up
+            if (model == warmed) {
+                ready = true;
+                readinessLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return true once a model is set and, if warm-up on load is enabled, warmed up
+     */
+    public boolean isReady() {
+        synchronized (readinessLock) {
+            return ready;
+        }
+    }
+
+    /**
+     * Waits for the classifier to be ready.
+     *
+     * @param timeout Maximum time to wait
+     * @return true if ready, false if the timeout elapsed first
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (readinessLock) {
+            while (!ready) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(readinessLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the current model, e.g. with a compressed copy of it.
+     *
+     * @param newModel Trained doccat model
+     */
+    public void setModel(DoccatModel newModel) {
+        useModel(newModel);
+    }
+
     public void loadModel(String modelPath) throws IOException {
         logger.info("Attempting to load model from: {}", modelPath);
 
@@ -128,11 +1342,9 @@ public class EmailClassifier {
             throw new IOException("Model file does not exist: " + modelPath);
         }
 
-        try (InputStream in = Files.newInputStream(path)) {
-            model = new DoccatModel(in);
-            categorizer = new DocumentCategorizerME(model);
-            logger.info("Model loaded successfully.");
-        }
+        // Verifies the checksum of models saved through ModelIO
+        useModel(ModelIO.loadModel(modelPath));
+        logger.info("Model loaded successfully.");
     }
 
     /**
@@ -0,0 +1,81 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.DoccatFactory;
+import opennlp.tools.util.model.ArtifactSerializer;
+
+import java.util.Map;
+
+/**
+ * Doccat factory that can carry the feature-selected vocabulary and the
+ * quantized weights of a compressed model as model artifacts, so they are
+ * saved and loaded together with the model.
+ */
+public class EmailDoccatFactory extends DoccatFactory {
+    private static final String VOCABULARY_EXTENSION = "vocab";
+    private static final String VOCABULARY_ENTRY = "selected-features." + VOCABULARY_EXTENSION;
+    private static final String WEIGHTS_EXTENSION = "qweights";
+    private static final String WEIGHTS_ENTRY = "weights." + WEIGHTS_EXTENSION;
+
+    private FeatureVocabulary selectedVocabulary;
+    private QuantizedWeights quantizedWeights;
+
+    /**
+     * Used by OpenNLP when loading a serialized model.
+     */
+    public EmailDoccatFactory() {
+    }
+
+    /**
+     * @param selectedVocabulary Tokens kept by feature selection, or null to keep all
+     */
+    public EmailDoccatFactory(FeatureVocabulary selectedVocabulary) {
+        this.selectedVocabulary = selectedVocabulary;
+    }
+
+    /**
+     * @return The tokens kept by feature selection, or null if none was applied
+     */
+    public FeatureVocabulary getSelectedVocabulary() {
+        if (selectedVocabulary == null && artifactProvider != null) {
+            selectedVocabulary = artifactProvider.getArtifact(VOCABULARY_ENTRY);
+        }
+        return selectedVocabulary;
+    }
+
+    /**
+     * @return The weights of a compressed model, or null if the GIS model holds them
+     */
+    public QuantizedWeights getQuantizedWeights() {
+        if (quantizedWeights == null && artifactProvider != null) {
+            quantizedWeights = artifactProvider.getArtifact(WEIGHTS_ENTRY);
+        }
+        return quantizedWeights;
+    }
+
+    void setQuantizedWeights(QuantizedWeights quantizedWeights) {
+        this.quantizedWeights = quantizedWeights;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Map<String, ArtifactSerializer> createArtifactSerializersMap() {
+        Map<String, ArtifactSerializer> serializers = super.createArtifactSerializersMap();
+        serializers.put(VOCABULARY_EXTENSION, new FeatureVocabulary.Serializer());
+        serializers.put(WEIGHTS_EXTENSION, new QuantizedWeights.Serializer());
+        return serializers;
+    }
+
+    @Override
+    public Map<String, Object> createArtifactMap() {
+        Map<String, Object> artifacts = super.createArtifactMap();
+        FeatureVocabulary vocabulary = getSelectedVocabulary();
+        if (vocabulary != null) {
+            artifacts.put(VOCABULARY_ENTRY, vocabulary);
+        }
+        QuantizedWeights weights = getQuantizedWeights();
+        if (weights != null) {
+            artifacts.put(WEIGHTS_ENTRY, weights);
+        }
+        return artifacts;
+    }
+}
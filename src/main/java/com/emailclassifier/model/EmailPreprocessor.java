@@ -1,6 +1,8 @@
 package com.emailclassifier.model;
 
+import opennlp.tools.doccat.DoccatModel;
 import opennlp.tools.tokenize.SimpleTokenizer;
+import opennlp.tools.util.Span;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -11,10 +13,22 @@ import java.util.regex.Pattern;
 /**
  * Preprocesses email content for classification by cleaning text,
  * removing noise, and extracting features.
+ *
+ * Models record the version of the preprocessing they were trained with in
+ * their manifest, and are served with the same version: models saved before
+ * the version was recorded get the legacy cleaning, which drops non-ASCII
+ * letters.
  */
 public class EmailPreprocessor {
     private static final Logger logger = LogManager.getLogger(EmailPreprocessor.class);
 
+    /** Manifest entry holding the preprocessing version of a model. */
+    public static final String VERSION_MANIFEST_ENTRY = "emailclassifier.preprocessing.version";
+    /** Cleaning that keeps only ASCII letters, used by models without a version. */
+    public static final int LEGACY_VERSION = 1;
+    /** Cleaning that keeps letters of any script. */
+    public static final int CURRENT_VERSION = 2;
+
     private static final Pattern EMAIL_HEADER_PATTERN = Pattern.compile(
         "^(From|To|Subject|Date|Received|CC|BCC|Reply-To|Sender|X-[^:]+):\\s*.*$",
         Pattern.MULTILINE | Pattern.CASE_INSENSITIVE
@@ -22,31 +36,85 @@ public class EmailPreprocessor {
 
     private static final Pattern URL_PATTERN = Pattern.compile("https?://\\S+|www\\.\\S+");
     private static final Pattern EMAIL_PATTERN = Pattern.compile("[\\w.%+-]+@[\\w.-]+\\.[a-zA-Z]{2,6}");
+    private static final Pattern URL_HOST_PATTERN = Pattern.compile(
+        "(?:https?://(?:[^/\\s@]*@)?|\\bwww\\.)([\\w-]+(?:\\.[\\w-]+)+)",
+        Pattern.CASE_INSENSITIVE
+    );
+    // Only applied to the header block, so From: lines quoted in the body are ignored
+    private static final Pattern SENDER_DOMAIN_PATTERN = Pattern.compile(
+        "^(?:From|Sender|Reply-To|Return-Path):[^\\n]*?@([\\w-]+(?:\\.[\\w-]+)+)",
+        Pattern.MULTILINE | Pattern.CASE_INSENSITIVE
+    );
+    private static final Pattern HEADER_LINE_PATTERN = Pattern.compile("[!-9;-~]+:.*");
     private static final Pattern HTML_TAG_PATTERN = Pattern.compile("<[^>]+>");
-    private static final Pattern SPECIAL_CHAR_PATTERN = Pattern.compile("[^a-zA-Z0-9$%!?.]");
+    // Keeps letters of any script so accented words (e.g. French) survive cleaning
+    private static final Pattern SPECIAL_CHAR_PATTERN = Pattern.compile("[^\\p{L}0-9$%!?.]");
+    private static final Pattern LEGACY_SPECIAL_CHAR_PATTERN = Pattern.compile("[^a-zA-Z0-9$%!?.]");
 
-    private final Set<String> stopWords;
+    private final StopWordFilter stopWords;
     private final SimpleTokenizer tokenizer;
+    private final int version;
+    private final Pattern specialChars;
 
     public EmailPreprocessor() {
+        this(StopWordFilter.DEFAULT_LANGUAGE);
+    }
+
+    /**
+     * @param language Language whose stop words are removed by {@link #tokenize(String)}
+     */
+    public EmailPreprocessor(String language) {
+        this(language, CURRENT_VERSION);
+    }
+
+    /**
+     * @param language Language whose stop words are removed by {@link #tokenize(String)}
+     * @param version  Preprocessing version, {@link #LEGACY_VERSION} or {@link #CURRENT_VERSION}
+     */
+    public EmailPreprocessor(String language, int version) {
+        if (version != LEGACY_VERSION && version != CURRENT_VERSION) {
+            throw new IllegalArgumentException("Unsupported preprocessing version: " + version);
+        }
         this.tokenizer = SimpleTokenizer.INSTANCE;
-        this.stopWords = initializeStopWords();
+        this.stopWords = StopWordFilter.forLanguage(language);
+        this.version = version;
+        this.specialChars = version == LEGACY_VERSION ? LEGACY_SPECIAL_CHAR_PATTERN : SPECIAL_CHAR_PATTERN;
+    }
+
+    public String getLanguage() {
+        return stopWords.getLanguage();
     }
 
-    private Set<String> initializeStopWords() {
-        String[] words = {
-            "a", "an", "the", "and", "or", "but", "if", "because", "as", "what",
-            "which", "this", "that", "these", "those", "then", "just", "so", "than",
-            "such", "both", "through", "about", "for", "is", "of", "while", "during",
-            "to", "from", "in", "out", "on", "off", "over", "under", "again", "further",
-            "once", "here", "there", "when", "where", "why", "how", "all", "any",
-            "each", "few", "more", "most", "other", "some", "no", "nor", "not",
-            "only", "own", "same", "too", "very", "can", "will", "just", "should",
-            "now", "don", "shouldn", "wasn", "aren", "won", "didn", "couldn", "doesn",
-            "hasn", "haven", "isn", "mightn", "mustn", "needn", "shan", "wasn", "weren",
-            "wouldn", "t", "m", "s", "ll", "d", "re", "ve", "y", "ain", "ma", "o"
-        };
-        return new HashSet<>(Arrays.asList(words));
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A preprocessor for the same language with the given version
+     */
+    public EmailPreprocessor withVersion(int version) {
+        return version == this.version ? this : new EmailPreprocessor(getLanguage(), version);
+    }
+
+    /**
+     * @param model A trained model
+     * @return The preprocessing version the model was trained with
+     * @throws IllegalArgumentException If the manifest holds an unknown version
+     */
+    public static int versionOf(DoccatModel model) {
+        String value = model.getManifestProperty(VERSION_MANIFEST_ENTRY);
+        if (value == null) {
+            return LEGACY_VERSION;
+        }
+        try {
+            int version = Integer.parseInt(value.trim());
+            if (version == LEGACY_VERSION || version == CURRENT_VERSION) {
+                return version;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unsupported preprocessing version in model: " + value);
     }
 
     /**
@@ -68,13 +136,89 @@ public class EmailPreprocessor {
         text = HTML_TAG_PATTERN.matcher(text).replaceAll(" ");
         text = URL_PATTERN.matcher(text).replaceAll(" URL_TOKEN ");
         text = EMAIL_PATTERN.matcher(text).replaceAll(" EMAIL_TOKEN ");
-        text = SPECIAL_CHAR_PATTERN.matcher(text).replaceAll(" ");
+        text = specialChars.matcher(text).replaceAll(" ");
         text = text.replaceAll("\\s+", " ").trim();
 
         logger.debug("Preprocessed email content: {}", text);
         return text;
     }
 
+    /**
+     * Extracts the domains of the sender header fields (From, Sender, Reply-To,
+     * Return-Path) for the domain reputation stage. Only the header block at
+     * the top of the message is searched: the lines before the first blank
+     * line or the first line that is not a header field. Must be given the raw
+     * content, since headers are stripped by preprocessing.
+     *
+     * @param emailContent Raw email text
+     * @return Lowercase sender domains, without a leading "www."
+     */
+    public Set<String> extractSenderDomains(String emailContent) {
+        Set<String> domains = new LinkedHashSet<>();
+        if (emailContent == null || emailContent.isEmpty()) {
+            return domains;
+        }
+        Matcher matcher = SENDER_DOMAIN_PATTERN.matcher(emailContent);
+        matcher.region(0, headerBlockEnd(emailContent));
+        addDomains(matcher, domains);
+        logger.debug("Extracted sender domains: {}", domains);
+        return domains;
+    }
+
+    /**
+     * Extracts the URL host names that {@link #preprocess} replaces with
+     * placeholder tokens, for the domain reputation stage.
+     *
+     * @param emailContent Raw email text
+     * @return Lowercase host names, without a leading "www."
+     */
+    public Set<String> extractUrlHosts(String emailContent) {
+        Set<String> hosts = new LinkedHashSet<>();
+        if (emailContent == null || emailContent.isEmpty()) {
+            return hosts;
+        }
+        addDomains(URL_HOST_PATTERN.matcher(emailContent), hosts);
+        logger.debug("Extracted URL hosts: {}", hosts);
+        return hosts;
+    }
+
+    /**
+     * @return The end of the leading header lines: a field ("Name: value") or
+     *         its folded continuation, up to the first blank or non-header line
+     */
+    private static int headerBlockEnd(String emailContent) {
+        int start = 0;
+        Matcher line = HEADER_LINE_PATTERN.matcher(emailContent);
+        while (start < emailContent.length()) {
+            int end = emailContent.indexOf('\n', start);
+            if (end < 0) {
+                end = emailContent.length();
+            }
+            int contentEnd = end > start && emailContent.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (contentEnd == start) {
+                return start;
+            }
+            // A folded continuation line starts with white space and cannot open the block
+            char first = emailContent.charAt(start);
+            boolean continuation = start > 0 && (first == ' ' || first == '\t');
+            if (!continuation && !line.region(start, contentEnd).matches()) {
+                return start;
+            }
+            start = end + 1;
+        }
+        return emailContent.length();
+    }
+
+    private static void addDomains(Matcher matcher, Set<String> domains) {
+        while (matcher.find()) {
+            String domain = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (domain.startsWith("www.")) {
+                domain = domain.substring(4);
+            }
+            domains.add(domain);
+        }
+    }
+
     /**
      * Removes common email headers from the text.
      */
@@ -89,17 +233,35 @@ public class EmailPreprocessor {
      * @return Array of useful tokens
      */
     public String[] tokenize(String text) {
+        return tokenize(text, stopWords);
+    }
+
+    /**
+     * Tokenizes text using the stop words of a given language.
+     *
+     * @param text     Cleaned email text
+     * @param language Language of the message, e.g. "en" or "fr"
+     * @return Array of useful tokens
+     */
+    public String[] tokenize(String text, String language) {
+        return tokenize(text, StopWordFilter.forLanguage(language));
+    }
+
+    private String[] tokenize(String text, StopWordFilter filter) {
         if (text == null || text.trim().isEmpty()) {
             logger.warn("Cannot tokenize empty text.");
             return new String[0];
         }
 
-        String[] tokens = tokenizer.tokenize(text);
-        List<String> filtered = new ArrayList<>();
+        // Work on token spans so stop words are rejected before any String is built
+        Span[] spans = tokenizer.tokenizePos(text);
+        List<String> filtered = new ArrayList<>(spans.length);
 
-        for (String token : tokens) {
-            if (token.length() > 1 && !stopWords.contains(token)) {
-                filtered.add(token);
+        for (Span span : spans) {
+            int start = span.getStart();
+            int end = span.getEnd();
+            if (end - start > 1 && !filter.contains(text, start, end)) {
+                filtered.add(text.substring(start, end));
             }
         }
 
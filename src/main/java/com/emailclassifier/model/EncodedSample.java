@@ -0,0 +1,22 @@
+package com.emailclassifier.model;
+
+/**
+ * Training sample whose tokens are stored as vocabulary ids.
+ */
+class EncodedSample {
+    private final String category;
+    private final int[] tokenIds;
+
+    EncodedSample(String category, int[] tokenIds) {
+        this.category = category;
+        this.tokenIds = tokenIds;
+    }
+
+    String getCategory() {
+        return category;
+    }
+
+    int[] getTokenIds() {
+        return tokenIds;
+    }
+}
@@ -0,0 +1,45 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.DocumentSample;
+import opennlp.tools.util.ObjectStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * Feeds encoded samples to OpenNLP, decoding each one to tokens only when it
+ * is read so that String arrays never exist for the whole corpus at once.
+ */
+class EncodedSampleStream implements ObjectStream<DocumentSample> {
+    private final Iterable<EncodedSample> samples;
+    private final Vocabulary vocabulary;
+    private Iterator<EncodedSample> position;
+
+    /**
+     * @param samples Samples in memory or spilled to disk; iterated once per pass
+     */
+    EncodedSampleStream(Iterable<EncodedSample> samples, Vocabulary vocabulary) {
+        this.samples = samples;
+        this.vocabulary = vocabulary;
+        this.position = samples.iterator();
+    }
+
+    @Override
+    public DocumentSample read() throws IOException {
+        try {
+            if (!position.hasNext()) {
+                return null;
+            }
+            EncodedSample sample = position.next();
+            return new DocumentSample(sample.getCategory(), vocabulary.decode(sample.getTokenIds()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void reset() {
+        position = samples.iterator();
+    }
+}
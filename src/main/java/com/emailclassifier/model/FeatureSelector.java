@@ -0,0 +1,246 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ranks tokens by how well their presence separates the categories and keeps
+ * the top K. Document frequencies per category are counted in one parallel
+ * sweep over the encoded samples.
+ */
+public class FeatureSelector {
+    private static final Logger logger = LogManager.getLogger(FeatureSelector.class);
+    private static final int MIN_SAMPLES_PER_TASK = 2048;
+
+    public enum Method { CHI_SQUARE, INFORMATION_GAIN }
+
+    private final Method method;
+    private final int topK;
+
+    public FeatureSelector(Method method, int topK) {
+        if (topK < 1) {
+            throw new IllegalArgumentException("Number of features to keep must be positive: " + topK);
+        }
+        this.method = method;
+        this.topK = topK;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * Selects the best tokens of a training set.
+     *
+     * @param samples    Encoded training samples
+     * @param vocabulary Vocabulary the samples were encoded with
+     * @return The selected tokens
+     */
+    FeatureVocabulary select(List<EncodedSample> samples, Vocabulary vocabulary) {
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        int[] categoryOf = new int[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            categoryOf[i] = categoryIndex.computeIfAbsent(samples.get(i).getCategory(), c -> categoryIndex.size());
+        }
+
+        int vocabularySize = vocabulary.size();
+        int[][] documentFrequency = ForkJoinPool.commonPool().invoke(
+                new CountTask(samples, categoryOf, categoryIndex.size(), vocabularySize, 0, samples.size()));
+
+        int[] categoryTotals = new int[categoryIndex.size()];
+        for (int category : categoryOf) {
+            categoryTotals[category]++;
+        }
+        return rank(documentFrequency, categoryTotals, samples.size(), vocabulary);
+    }
+
+    /**
+     * Selects the best tokens of a training set read in a single sequential
+     * pass, for samples streamed from disk.
+     *
+     * @param samples    Encoded training samples
+     * @param vocabulary Vocabulary the samples were encoded with
+     * @return The selected tokens
+     */
+    FeatureVocabulary select(Iterable<EncodedSample> samples, Vocabulary vocabulary) {
+        int vocabularySize = vocabulary.size();
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        List<int[]> documentFrequency = new ArrayList<>();
+        List<int[]> categoryTotals = new ArrayList<>();
+        // lastSeen[t] == n when token t was already counted for the n-th sample
+        int[] lastSeen = new int[vocabularySize];
+        int n = 0;
+
+        for (EncodedSample sample : samples) {
+            n++;
+            int category = categoryIndex.computeIfAbsent(sample.getCategory(), c -> {
+                documentFrequency.add(new int[vocabularySize]);
+                categoryTotals.add(new int[1]);
+                return categoryIndex.size();
+            });
+            categoryTotals.get(category)[0]++;
+            int[] row = documentFrequency.get(category);
+            for (int token : sample.getTokenIds()) {
+                if (lastSeen[token] != n) {
+                    lastSeen[token] = n;
+                    row[token]++;
+                }
+            }
+        }
+
+        int[] totals = new int[categoryTotals.size()];
+        for (int c = 0; c < totals.length; c++) {
+            totals[c] = categoryTotals.get(c)[0];
+        }
+        return rank(documentFrequency.toArray(new int[0][]), totals, n, vocabulary);
+    }
+
+    private FeatureVocabulary rank(int[][] documentFrequency, int[] categoryTotals, int n, Vocabulary vocabulary) {
+        int vocabularySize = vocabulary.size();
+        double[] scores = new double[vocabularySize];
+        for (int token = 0; token < vocabularySize; token++) {
+            scores[token] = method == Method.CHI_SQUARE
+                    ? chiSquare(documentFrequency, categoryTotals, n, token)
+                    : informationGain(documentFrequency, categoryTotals, n, token);
+        }
+
+        Integer[] ranked = new Integer[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            ranked[i] = i;
+        }
+        Arrays.sort(ranked, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        int kept = Math.min(topK, vocabularySize);
+        List<String> selected = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            selected.add(vocabulary.tokenOf(ranked[i]));
+        }
+
+        logger.info("Feature selection ({}) kept {} of {} tokens", method, kept, vocabularySize);
+        return new FeatureVocabulary(selected);
+    }
+
+    /**
+     * Maximum over categories of the chi-square statistic of token presence vs. category.
+     */
+    private static double chiSquare(int[][] df, int[] categoryTotals, int n, int token) {
+        int present = 0;
+        for (int[] counts : df) {
+            present += counts[token];
+        }
+
+        double best = 0;
+        for (int c = 0; c < df.length; c++) {
+            double a = df[c][token];
+            double b = present - a;
+            double cc = categoryTotals[c] - a;
+            double d = n - categoryTotals[c] - b;
+            double denominator = (a + cc) * (b + d) * (a + b) * (cc + d);
+            if (denominator > 0) {
+                double diff = a * d - cc * b;
+                best = Math.max(best, n * diff * diff / denominator);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Information gain of token presence about the category.
+     */
+    private static double informationGain(int[][] df, int[] categoryTotals, int n, int token) {
+        int present = 0;
+        for (int[] counts : df) {
+            present += counts[token];
+        }
+        int absent = n - present;
+
+        double prior = 0;
+        double withToken = 0;
+        double withoutToken = 0;
+        for (int c = 0; c < df.length; c++) {
+            prior -= plogp(categoryTotals[c] / (double) n);
+            if (present > 0) {
+                withToken -= plogp(df[c][token] / (double) present);
+            }
+            if (absent > 0) {
+                withoutToken -= plogp((categoryTotals[c] - df[c][token]) / (double) absent);
+            }
+        }
+        return prior - (present / (double) n) * withToken - (absent / (double) n) * withoutToken;
+    }
+
+    private static double plogp(double p) {
+        return p > 0 ? p * Math.log(p) : 0;
+    }
+
+    /**
+     * Counts, per category, the number of samples containing each token.
+     */
+    private static class CountTask extends RecursiveTask<int[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<EncodedSample> samples;
+        private final int[] categoryOf;
+        private final int categories;
+        private final int vocabularySize;
+        private final int from;
+        private final int to;
+
+        CountTask(List<EncodedSample> samples, int[] categoryOf, int categories, int vocabularySize,
+                  int from, int to) {
+            this.samples = samples;
+            this.categoryOf = categoryOf;
+            this.categories = categories;
+            this.vocabularySize = vocabularySize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[][] compute() {
+            // Each task owns full-size count arrays, so only split while there is enough work
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            int chunk = Math.max(MIN_SAMPLES_PER_TASK, samples.size() / Math.max(1, parallelism));
+            if (to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                CountTask left = new CountTask(samples, categoryOf, categories, vocabularySize, from, mid);
+                CountTask right = new CountTask(samples, categoryOf, categories, vocabularySize, mid, to);
+                left.fork();
+                int[][] counts = right.compute();
+                int[][] leftCounts = left.join();
+                for (int c = 0; c < categories; c++) {
+                    for (int t = 0; t < vocabularySize; t++) {
+                        counts[c][t] += leftCounts[c][t];
+                    }
+                }
+                return counts;
+            }
+
+            int[][] counts = new int[categories][vocabularySize];
+            // lastSeen[t] == i + 1 when token t was already counted for sample i
+            int[] lastSeen = new int[vocabularySize];
+            for (int i = from; i < to; i++) {
+                int[] row = counts[categoryOf[i]];
+                for (int token : samples.get(i).getTokenIds()) {
+                    if (lastSeen[token] != i + 1) {
+                        lastSeen[token] = i + 1;
+                        row[token]++;
+                    }
+                }
+            }
+            return counts;
+        }
+    }
+}
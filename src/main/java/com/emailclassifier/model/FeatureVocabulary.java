@@ -0,0 +1,85 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.util.model.ArtifactSerializer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set of tokens kept by feature selection. It is stored inside the model so
+ * that inference can drop every other token right after tokenization.
+ */
+public class FeatureVocabulary {
+    private final Set<String> tokens;
+
+    public FeatureVocabulary(Collection<String> tokens) {
+        this.tokens = new HashSet<>(tokens);
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public boolean contains(String token) {
+        return tokens.contains(token);
+    }
+
+    /**
+     * Keeps only the tokens of the vocabulary, preserving their order.
+     */
+    public String[] filter(String[] text) {
+        int kept = 0;
+        String[] filtered = new String[text.length];
+        for (String token : text) {
+            if (tokens.contains(token)) {
+                filtered[kept++] = token;
+            }
+        }
+        if (kept == text.length) {
+            return text;
+        }
+        String[] result = new String[kept];
+        System.arraycopy(filtered, 0, result, 0, kept);
+        return result;
+    }
+
+    /**
+     * Stores the vocabulary in a model package as UTF-8 text, one token per line.
+     */
+    public static class Serializer implements ArtifactSerializer<FeatureVocabulary> {
+        @Override
+        public FeatureVocabulary create(InputStream in) throws IOException {
+            // The stream belongs to the model package and must not be closed here
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            List<String> tokens = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    tokens.add(line);
+                }
+            }
+            return new FeatureVocabulary(tokens);
+        }
+
+        @Override
+        public void serialize(FeatureVocabulary vocabulary, OutputStream out) throws IOException {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (String token : vocabulary.tokens) {
+                writer.write(token);
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.FeatureGenerator;
+
+import java.util.Map;
+
+/**
+ * Doccat factory using a {@link HashedNGramFeatureGenerator}. The n-gram order
+ * and bucket count are stored in the model manifest so a loaded model
+ * rebuilds the same generator.
+ */
+public class HashedNGramDoccatFactory extends EmailDoccatFactory {
+    private static final String ORDER_ENTRY = "hashedNGram.order";
+    private static final String BUCKETS_ENTRY = "hashedNGram.buckets";
+
+    private HashedNGramFeatureGenerator generator;
+
+    /**
+     * Used by OpenNLP when loading a serialized model.
+     */
+    public HashedNGramDoccatFactory() {
+    }
+
+    public HashedNGramDoccatFactory(int order, int buckets) {
+        this(order, buckets, null);
+    }
+
+    /**
+     * @param selectedVocabulary Tokens kept by feature selection, or null to keep all
+     */
+    public HashedNGramDoccatFactory(int order, int buckets, FeatureVocabulary selectedVocabulary) {
+        super(selectedVocabulary);
+        this.generator = new HashedNGramFeatureGenerator(order, buckets);
+    }
+
+    @Override
+    public FeatureGenerator[] getFeatureGenerators() {
+        if (generator == null) {
+            int order = HashedNGramFeatureGenerator.DEFAULT_ORDER;
+            int buckets = HashedNGramFeatureGenerator.DEFAULT_BUCKETS;
+            if (artifactProvider != null) {
+                order = parse(artifactProvider.getManifestProperty(ORDER_ENTRY), order);
+                buckets = parse(artifactProvider.getManifestProperty(BUCKETS_ENTRY), buckets);
+            }
+            generator = new HashedNGramFeatureGenerator(order, buckets);
+        }
+        return new FeatureGenerator[] {generator};
+    }
+
+    @Override
+    public void setFeatureGenerators(FeatureGenerator[] featureGenerators) {
+        if (featureGenerators.length != 1 || !(featureGenerators[0] instanceof HashedNGramFeatureGenerator)) {
+            throw new IllegalArgumentException("Expected a single HashedNGramFeatureGenerator");
+        }
+        this.generator = (HashedNGramFeatureGenerator) featureGenerators[0];
+    }
+
+    @Override
+    public Map<String, String> createManifestEntries() {
+        Map<String, String> entries = super.createManifestEntries();
+        HashedNGramFeatureGenerator current = (HashedNGramFeatureGenerator) getFeatureGenerators()[0];
+        entries.put(ORDER_ENTRY, Integer.toString(current.getOrder()));
+        entries.put(BUCKETS_ENTRY, Integer.toString(current.getBuckets()));
+        return entries;
+    }
+
+    private static int parse(String value, int defaultValue) {
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
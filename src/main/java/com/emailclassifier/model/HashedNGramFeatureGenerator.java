@@ -0,0 +1,106 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.FeatureGenerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Doccat feature generator emitting 1..n-gram features hashed into a fixed
+ * number of buckets, which bounds the model's feature count whatever the
+ * corpus vocabulary. N-gram hashes are combined from the tokens' cached
+ * String hash codes, so no n-gram string is ever concatenated; the emitted
+ * feature names are per-bucket constants created once.
+ */
+public class HashedNGramFeatureGenerator implements FeatureGenerator {
+    public static final int DEFAULT_ORDER = 2;
+    public static final int DEFAULT_BUCKETS = 1 << 18;
+
+    private static final String PREFIX = "hng=";
+
+    private final int order;
+    private final int mask;
+    // Lazily created feature names; a benign race may create the same name twice
+    private final String[] bucketNames;
+
+    public HashedNGramFeatureGenerator() {
+        this(DEFAULT_ORDER, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param order   Longest n-gram emitted (1 = unigrams only)
+     * @param buckets Number of hash buckets, rounded up to a power of two
+     */
+    public HashedNGramFeatureGenerator(int order, int buckets) {
+        if (order < 1) {
+            throw new IllegalArgumentException("N-gram order must be positive: " + order);
+        }
+        if (buckets < 1 || buckets > 1 << 30) {
+            throw new IllegalArgumentException("Bucket count out of range: " + buckets);
+        }
+        int size = Integer.highestOneBit(buckets);
+        if (size < buckets) {
+            size <<= 1;
+        }
+        this.order = order;
+        this.mask = size - 1;
+        this.bucketNames = new String[size];
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public int getBuckets() {
+        return mask + 1;
+    }
+
+    @Override
+    public Collection<String> extractFeatures(String[] text, Map<String, Object> extraInformation) {
+        Objects.requireNonNull(text, "text must not be null");
+        Collection<String> features = new ArrayList<>(text.length * order);
+        forEachFeature(text, 0, text.length, features::add);
+        return features;
+    }
+
+    /**
+     * Emits the features of the n-grams starting in [from, to). N-grams may
+     * extend past {@code to}, so adjacent ranges together emit exactly the
+     * features of the whole token array.
+     */
+    void forEachFeature(String[] text, int from, int to, Consumer<String> sink) {
+        for (int i = from; i < to; i++) {
+            int hash = 0;
+            int last = Math.min(text.length, i + order);
+            for (int j = i; j < last; j++) {
+                hash = combine(hash, text[j].hashCode(), j - i + 1);
+                sink.accept(bucketName(mix(hash) & mask));
+            }
+        }
+    }
+
+    private String bucketName(int bucket) {
+        String name = bucketNames[bucket];
+        if (name == null) {
+            name = PREFIX + bucket;
+            bucketNames[bucket] = name;
+        }
+        return name;
+    }
+
+    private static int combine(int hash, int tokenHash, int length) {
+        // Length is folded in so that e.g. "a" and "a b" land in unrelated buckets
+        return (hash * 0x01000193) ^ tokenHash ^ (length * 0x9E3779B9);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
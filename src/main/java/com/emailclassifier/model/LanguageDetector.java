@@ -0,0 +1,218 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Lightweight language identifier based on character trigram profiles.
+ * Only a prefix of the message body is examined, and scoring uses sorted
+ * primitive arrays, so detection does not allocate per message.
+ * Profiles are loaded from /langid/&lt;language&gt;.txt ("trigram TAB count",
+ * with '_' standing for a word boundary).
+ */
+public class LanguageDetector {
+    private static final Logger logger = LogManager.getLogger(LanguageDetector.class);
+    private static final String RESOURCE_PATTERN = "/langid/%s.txt";
+
+    public static final int DEFAULT_PREFIX_LENGTH = 512;
+    /** Minimum number of known trigrams needed before trusting a detection. */
+    private static final int MIN_EVIDENCE = 8;
+    /** How far into the message a header block may extend. */
+    private static final int MAX_HEADER_SCAN = 8192;
+
+    private final String[] languages;
+    private final String defaultLanguage;
+    private final int prefixLength;
+    // Union of all profiles' trigrams, sorted, with one log-probability row per language
+    private final long[] trigrams;
+    private final float[][] logProbs;
+
+    private LanguageDetector(String defaultLanguage, int prefixLength, Map<String, Map<Long, Integer>> profiles) {
+        this.languages = profiles.keySet().toArray(new String[0]);
+        this.defaultLanguage = defaultLanguage;
+        this.prefixLength = prefixLength;
+
+        TreeSet<Long> union = new TreeSet<>();
+        for (Map<Long, Integer> profile : profiles.values()) {
+            union.addAll(profile.keySet());
+        }
+        this.trigrams = new long[union.size()];
+        int k = 0;
+        for (long trigram : union) {
+            trigrams[k++] = trigram;
+        }
+
+        this.logProbs = new float[languages.length][trigrams.length];
+        for (int l = 0; l < languages.length; l++) {
+            Map<Long, Integer> profile = profiles.get(languages[l]);
+            long total = 0;
+            for (int count : profile.values()) {
+                total += count;
+            }
+            // Add-one smoothing over the union so missing trigrams are penalized, not fatal
+            double denominator = total + trigrams.length;
+            for (int i = 0; i < trigrams.length; i++) {
+                Integer count = profile.get(trigrams[i]);
+                logProbs[l][i] = (float) Math.log(((count != null ? count : 0) + 1) / denominator);
+            }
+        }
+    }
+
+    /**
+     * Loads the trigram profiles of the given languages from the classpath.
+     *
+     * @param defaultLanguage Language returned when the text gives too little evidence
+     * @param languages       Languages to detect, e.g. "en", "fr"
+     * @return A detector examining the first {@link #DEFAULT_PREFIX_LENGTH} body characters
+     */
+    public static LanguageDetector fromResources(String defaultLanguage, String... languages) {
+        Map<String, Map<Long, Integer>> profiles = new HashMap<>();
+        for (String language : languages) {
+            profiles.put(language, loadProfile(language));
+        }
+        return new LanguageDetector(defaultLanguage, DEFAULT_PREFIX_LENGTH, profiles);
+    }
+
+    private static Map<Long, Integer> loadProfile(String language) {
+        String resource = String.format(RESOURCE_PATTERN, language);
+        Map<Long, Integer> profile = new HashMap<>();
+
+        try (InputStream in = LanguageDetector.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                logger.warn("No language profile found for '{}' ({})", language, resource);
+                return profile;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                String trigram = parts[0].replace('_', ' ');
+                if (parts.length == 2 && trigram.length() == 3) {
+                    profile.put(pack(trigram.charAt(0), trigram.charAt(1), trigram.charAt(2)),
+                            Integer.parseInt(parts[1].trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Failed to read language profile {}", resource, e);
+        }
+
+        logger.info("Loaded {} trigrams for language '{}'", profile.size(), language);
+        return profile;
+    }
+
+    public List<String> getLanguages() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(languages)));
+    }
+
+    public String getDefaultLanguage() {
+        return defaultLanguage;
+    }
+
+    /**
+     * Detects the language of a raw email from a prefix of its body.
+     *
+     * @param emailContent Raw email text, with or without headers
+     * @return The most likely language, or the default language when unsure
+     */
+    public String detect(String emailContent) {
+        if (emailContent == null || emailContent.isEmpty() || languages.length == 0) {
+            return defaultLanguage;
+        }
+
+        int start = bodyOffset(emailContent);
+        int end = Math.min(emailContent.length(), start + prefixLength);
+        double[] scores = new double[languages.length];
+        int evidence = 0;
+
+        char c1 = ' ';
+        char c2 = ' ';
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? normalize(emailContent.charAt(i)) : ' ';
+            if (c == ' ' && c2 == ' ') {
+                continue;
+            }
+            int index = Arrays.binarySearch(trigrams, pack(c1, c2, c));
+            if (index >= 0) {
+                evidence++;
+                for (int l = 0; l < languages.length; l++) {
+                    scores[l] += logProbs[l][index];
+                }
+            }
+            c1 = c2;
+            c2 = c;
+        }
+
+        if (evidence < MIN_EVIDENCE) {
+            return defaultLanguage;
+        }
+
+        int best = 0;
+        for (int l = 1; l < languages.length; l++) {
+            if (scores[l] > scores[best]) {
+                best = l;
+            }
+        }
+        return languages[best];
+    }
+
+    /**
+     * Counts the trigrams of a text the way {@link #detect} reads them, with
+     * a space standing for a word boundary, to build a profile from a corpus.
+     *
+     * @param text   Plain text, without headers
+     * @param counts Receives the count of each trigram
+     */
+    public static void countTrigrams(CharSequence text, Map<String, Integer> counts) {
+        char c1 = ' ';
+        char c2 = ' ';
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? normalize(text.charAt(i)) : ' ';
+            if (c == ' ' && c2 == ' ') {
+                continue;
+            }
+            counts.merge(new String(new char[] {c1, c2, c}), 1, Integer::sum);
+            c1 = c2;
+            c2 = c;
+        }
+    }
+
+    /**
+     * Skips a leading RFC 822 header block so detection looks at the body.
+     */
+    private static int bodyOffset(String emailContent) {
+        int colon = emailContent.indexOf(':');
+        int newline = emailContent.indexOf('\n');
+        if (colon <= 0 || (newline >= 0 && colon > newline)) {
+            return 0;
+        }
+        int blank = emailContent.indexOf("\n\n");
+        if (blank < 0) {
+            blank = emailContent.indexOf("\r\n\r\n");
+        }
+        return blank >= 0 && blank < MAX_HEADER_SCAN ? blank + 2 : 0;
+    }
+
+    private static char normalize(char c) {
+        return Character.isLetter(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    private static long pack(char c1, char c2, char c3) {
+        return ((long) c1 << 32) | ((long) c2 << 16) | c3;
+    }
+}
@@ -0,0 +1,109 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes each email to the classifier trained for its language, as detected
+ * by a {@link LanguageDetector}, falling back to the default language's
+ * classifier when no trained model exists for the detected language.
+ */
+public class LanguageRouter {
+    private static final Logger logger = LogManager.getLogger(LanguageRouter.class);
+
+    private final LanguageDetector detector;
+    private final Map<String, EmailClassifier> classifiers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> routedCounts = new ConcurrentHashMap<>();
+
+    public LanguageRouter(LanguageDetector detector) {
+        this.detector = detector;
+    }
+
+    /**
+     * Registers a classifier under its own language (see {@link EmailClassifier#getLanguage()}).
+     */
+    public void register(EmailClassifier classifier) {
+        classifiers.put(classifier.getLanguage(), classifier);
+        logger.info("Registered classifier for language '{}'", classifier.getLanguage());
+    }
+
+    public EmailClassifier getClassifier(String language) {
+        return classifiers.get(language);
+    }
+
+    /**
+     * @return true once every registered classifier is ready
+     */
+    public boolean isReady() {
+        for (EmailClassifier classifier : classifiers.values()) {
+            if (!classifier.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for every registered classifier to be ready.
+     *
+     * @param timeout Maximum time to wait for all of them
+     * @return true if all are ready, false if the timeout elapsed first
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (EmailClassifier classifier : classifiers.values()) {
+            if (!classifier.awaitReady(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the classifier for an email.
+     *
+     * @param emailContent Raw email text
+     * @return The classifier for the detected language, or the default one
+     * @throws IllegalStateException If neither has a trained model
+     */
+    public EmailClassifier route(String emailContent) {
+        String language = detector.detect(emailContent);
+        EmailClassifier classifier = classifiers.get(language);
+
+        if (classifier == null || !classifier.isModelTrained()) {
+            logger.debug("No trained model for '{}', using default language '{}'",
+                    language, detector.getDefaultLanguage());
+            language = detector.getDefaultLanguage();
+            classifier = classifiers.get(language);
+        }
+        if (classifier == null || !classifier.isModelTrained()) {
+            throw new IllegalStateException("No trained model for default language: " + language);
+        }
+
+        routedCounts.computeIfAbsent(language, l -> new LongAdder()).increment();
+        return classifier;
+    }
+
+    /**
+     * Classifies an email with the model of its language.
+     */
+    public Map<String, Double> classify(String emailContent) {
+        return route(emailContent).classify(emailContent);
+    }
+
+    /**
+     * @return Number of emails routed to each language's classifier
+     */
+    public Map<String, Long> getRoutedCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        routedCounts.forEach((language, count) -> counts.put(language, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,157 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.DoccatFactory;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shrinks a trained maxent model after training: features whose weights are
+ * negligible for every outcome are dropped, and the remaining weights are
+ * stored as floats or as 8/16-bit integers with a single scale.
+ *
+ * OpenNLP only writes GIS weights as doubles, so a quantized model keeps a
+ * GIS model with its outcomes and no weights, and carries the quantized
+ * weights as a {@link QuantizedWeights} artifact of its factory. EmailClassifier
+ * expands them into a regular GIS model when it puts the model to use; plain
+ * OpenNLP can read the file but would score every message uniformly.
+ */
+public class ModelCompressor {
+    private static final Logger logger = LogManager.getLogger(ModelCompressor.class);
+
+    /** Keeps full double precision. */
+    public static final int NO_QUANTIZATION = 64;
+
+    private final double pruneThreshold;
+    private final int bits;
+
+    /**
+     * @param pruneThreshold Features whose largest absolute weight is below this are dropped
+     * @param bits           8 or 16 for integer quantization, 32 for float, 64 to keep doubles and only prune
+     */
+    public ModelCompressor(double pruneThreshold, int bits) {
+        if (bits != 8 && bits != 16 && bits != 32 && bits != NO_QUANTIZATION) {
+            throw new IllegalArgumentException("Unsupported quantization width: " + bits);
+        }
+        if (pruneThreshold < 0) {
+            throw new IllegalArgumentException("Prune threshold must not be negative: " + pruneThreshold);
+        }
+        this.pruneThreshold = pruneThreshold;
+        this.bits = bits;
+    }
+
+    /**
+     * Returns a pruned and quantized copy of a GIS doccat model.
+     *
+     * @param model Trained model, possibly already compressed
+     * @return The compressed model
+     * @throws IllegalArgumentException If the model is not a GIS maxent model
+     */
+    @SuppressWarnings("unchecked")
+    public DoccatModel compress(DoccatModel model) {
+        DoccatModel source = expand(model);
+        MaxentModel maxent = source.getMaxentModel();
+        if (!(maxent instanceof GISModel)) {
+            throw new IllegalArgumentException("Only GIS maxent models can be compressed, got "
+                    + maxent.getClass().getSimpleName());
+        }
+
+        Object[] structures = ((GISModel) maxent).getDataStructures();
+        Map<String, Context> pmap = (Map<String, Context>) structures[1];
+        String[] outcomes = (String[]) structures[2];
+
+        List<String> predicates = new ArrayList<>();
+        List<Context> contexts = new ArrayList<>();
+        int droppedWeights = 0;
+        for (Map.Entry<String, Context> entry : pmap.entrySet()) {
+            Context context = entry.getValue();
+            if (maxAbs(context.getParameters()) < pruneThreshold) {
+                droppedWeights += context.getParameters().length;
+                continue;
+            }
+            predicates.add(entry.getKey());
+            contexts.add(context);
+        }
+
+        logger.info("Compressed model: kept {} of {} features, dropped {} weights, {}-bit weights",
+                predicates.size(), pmap.size(), droppedWeights, bits);
+
+        EmailDoccatFactory factory = copyFactory(source.getFactory());
+        if (bits == NO_QUANTIZATION) {
+            GISModel pruned = new GISModel(contexts.toArray(new Context[0]),
+                    predicates.toArray(new String[0]), outcomes);
+            return new DoccatModel(source.getLanguage(), pruned, manifestOf(source), factory);
+        }
+        QuantizedWeights weights = QuantizedWeights.quantize(outcomes, predicates, contexts, bits);
+        factory.setQuantizedWeights(weights);
+        return new DoccatModel(source.getLanguage(), weights.placeholder(), manifestOf(source), factory);
+    }
+
+    /**
+     * Rebuilds the GIS model of a quantized model from its weights so it can
+     * be scored. Other models are returned as they are.
+     *
+     * @param model A doccat model, compressed or not
+     * @return A model whose GIS model holds the weights
+     */
+    static DoccatModel expand(DoccatModel model) {
+        if (!(model.getFactory() instanceof EmailDoccatFactory)) {
+            return model;
+        }
+        QuantizedWeights weights = ((EmailDoccatFactory) model.getFactory()).getQuantizedWeights();
+        if (weights == null) {
+            return model;
+        }
+        return new DoccatModel(model.getLanguage(), weights.toModel(), manifestOf(model),
+                copyFactory(model.getFactory()));
+    }
+
+    /**
+     * @return The manifest entries a derived model must keep, such as its preprocessing version
+     */
+    private static Map<String, String> manifestOf(DoccatModel model) {
+        Map<String, String> manifest = new HashMap<>();
+        String version = model.getManifestProperty(EmailPreprocessor.VERSION_MANIFEST_ENTRY);
+        if (version != null) {
+            manifest.put(EmailPreprocessor.VERSION_MANIFEST_ENTRY, version);
+        }
+        return manifest;
+    }
+
+    /**
+     * Builds a new factory equivalent to the model's, so the compressed model
+     * does not share state with the original. A plain DoccatFactory becomes an
+     * EmailDoccatFactory with the same feature generators, able to carry the
+     * quantized weights.
+     */
+    private static EmailDoccatFactory copyFactory(DoccatFactory factory) {
+        if (factory instanceof HashedNGramDoccatFactory) {
+            HashedNGramDoccatFactory hashed = (HashedNGramDoccatFactory) factory;
+            HashedNGramFeatureGenerator generator = (HashedNGramFeatureGenerator) hashed.getFeatureGenerators()[0];
+            return new HashedNGramDoccatFactory(generator.getOrder(), generator.getBuckets(),
+                    hashed.getSelectedVocabulary());
+        }
+        if (factory instanceof EmailDoccatFactory) {
+            return new EmailDoccatFactory(((EmailDoccatFactory) factory).getSelectedVocabulary());
+        }
+        EmailDoccatFactory copy = new EmailDoccatFactory(null);
+        copy.setFeatureGenerators(factory.getFeatureGenerators());
+        return copy;
+    }
+
+    private static double maxAbs(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max;
+    }
+}
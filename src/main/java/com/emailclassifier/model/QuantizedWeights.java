@@ -0,0 +1,189 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.util.model.ArtifactSerializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maxent weights kept at reduced precision: 8 or 16-bit integers times a
+ * single scale, or floats. A compressed model stores them as an artifact in
+ * place of the double weights of its GIS model, and they are expanded back
+ * into a GIS model when the model is put to use.
+ *
+ * Weights are stored densely, one value per outcome and predicate, since
+ * doccat models only have a handful of outcomes.
+ */
+public class QuantizedWeights {
+    private static final int FORMAT_VERSION = 1;
+
+    private final int bits;
+    private final double scale;
+    private final String[] outcomes;
+    private final String[] predicates;
+    // Integer levels for 8 and 16 bits, float bits for 32, one row per predicate
+    private final int[][] levels;
+
+    private QuantizedWeights(int bits, double scale, String[] outcomes, String[] predicates, int[][] levels) {
+        this.bits = bits;
+        this.scale = scale;
+        this.outcomes = outcomes;
+        this.predicates = predicates;
+        this.levels = levels;
+    }
+
+    /**
+     * Quantizes the weights of the given predicates.
+     *
+     * @param outcomes   Outcomes of the model, indexed as in the contexts
+     * @param predicates Predicate names
+     * @param contexts   Weights of each predicate
+     * @param bits       8 or 16 for integer levels with a single scale, 32 for floats
+     * @return The quantized weights
+     */
+    static QuantizedWeights quantize(String[] outcomes, List<String> predicates, List<Context> contexts, int bits) {
+        if (bits != 8 && bits != 16 && bits != 32) {
+            throw new IllegalArgumentException("Unsupported quantization width: " + bits);
+        }
+        double scale = 0;
+        if (bits != 32) {
+            double max = 0;
+            for (Context context : contexts) {
+                for (double parameter : context.getParameters()) {
+                    max = Math.max(max, Math.abs(parameter));
+                }
+            }
+            scale = max / ((1 << (bits - 1)) - 1);
+        }
+
+        List<String> kept = new ArrayList<>(predicates.size());
+        List<int[]> levels = new ArrayList<>(predicates.size());
+        for (int p = 0; p < predicates.size(); p++) {
+            Context context = contexts.get(p);
+            int[] row = new int[outcomes.length];
+            boolean zero = true;
+            for (int i = 0; i < context.getOutcomes().length; i++) {
+                double value = context.getParameters()[i];
+                row[context.getOutcomes()[i]] = bits == 32 ? Float.floatToIntBits((float) value)
+                        : scale == 0 ? 0 : (int) Math.round(value / scale);
+                zero &= row[context.getOutcomes()[i]] == 0;
+            }
+            // Predicates rounded to zero for every outcome no longer affect scores
+            if (!zero) {
+                kept.add(predicates.get(p));
+                levels.add(row);
+            }
+        }
+        return new QuantizedWeights(bits, scale, outcomes, kept.toArray(new String[0]),
+                levels.toArray(new int[0][]));
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int size() {
+        return predicates.length;
+    }
+
+    /**
+     * @return A GIS model with the dequantized weights, zero weights left out
+     */
+    GISModel toModel() {
+        List<String> kept = new ArrayList<>(predicates.length);
+        List<Context> contexts = new ArrayList<>(predicates.length);
+        for (int p = 0; p < predicates.length; p++) {
+            int[] outcomeIndices = new int[outcomes.length];
+            double[] parameters = new double[outcomes.length];
+            int count = 0;
+            for (int o = 0; o < outcomes.length; o++) {
+                double value = bits == 32 ? Float.intBitsToFloat(levels[p][o]) : levels[p][o] * scale;
+                if (value != 0.0) {
+                    outcomeIndices[count] = o;
+                    parameters[count++] = value;
+                }
+            }
+            if (count > 0) {
+                kept.add(predicates[p]);
+                contexts.add(new Context(Arrays.copyOf(outcomeIndices, count),
+                        Arrays.copyOf(parameters, count)));
+            }
+        }
+        return new GISModel(contexts.toArray(new Context[0]), kept.toArray(new String[0]), outcomes);
+    }
+
+    /**
+     * @return A GIS model with the outcomes and no weights, saved in place of the full model
+     */
+    GISModel placeholder() {
+        return new GISModel(new Context[0], new String[0], outcomes);
+    }
+
+    /**
+     * Stores the weights in a model package: the width, scale and outcomes,
+     * then each predicate name followed by one value per outcome.
+     */
+    public static class Serializer implements ArtifactSerializer<QuantizedWeights> {
+        @Override
+        public QuantizedWeights create(InputStream in) throws IOException {
+            // The stream belongs to the model package and must not be closed here
+            DataInputStream data = new DataInputStream(in);
+            int version = data.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported quantized weights format: " + version);
+            }
+            int bits = data.readByte();
+            if (bits != 8 && bits != 16 && bits != 32) {
+                throw new IOException("Unsupported quantization width: " + bits);
+            }
+            double scale = data.readDouble();
+            String[] outcomes = new String[data.readInt()];
+            for (int o = 0; o < outcomes.length; o++) {
+                outcomes[o] = data.readUTF();
+            }
+            String[] predicates = new String[data.readInt()];
+            int[][] levels = new int[predicates.length][outcomes.length];
+            for (int p = 0; p < predicates.length; p++) {
+                predicates[p] = data.readUTF();
+                for (int o = 0; o < outcomes.length; o++) {
+                    levels[p][o] = bits == 8 ? data.readByte() : bits == 16 ? data.readShort() : data.readInt();
+                }
+            }
+            return new QuantizedWeights(bits, scale, outcomes, predicates, levels);
+        }
+
+        @Override
+        public void serialize(QuantizedWeights weights, OutputStream out) throws IOException {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(FORMAT_VERSION);
+            data.writeByte(weights.bits);
+            data.writeDouble(weights.scale);
+            data.writeInt(weights.outcomes.length);
+            for (String outcome : weights.outcomes) {
+                data.writeUTF(outcome);
+            }
+            data.writeInt(weights.predicates.length);
+            for (int p = 0; p < weights.predicates.length; p++) {
+                data.writeUTF(weights.predicates[p]);
+                for (int level : weights.levels[p]) {
+                    if (weights.bits == 8) {
+                        data.writeByte(level);
+                    } else if (weights.bits == 16) {
+                        data.writeShort(level);
+                    } else {
+                        data.writeInt(level);
+                    }
+                }
+            }
+            data.flush();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.ml.EventTrainer;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.maxent.GISTrainer;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.DataIndexer;
+import opennlp.tools.ml.model.Prior;
+import opennlp.tools.ml.model.UniformPrior;
+import opennlp.tools.util.InsufficientTrainingDataException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * GIS trainer that runs its iterations one {@link #trainModel} call at a
+ * time, reports each iteration as it completes and stops before the next
+ * one once cancelled, returning what it has fitted so far.
+ *
+ * Each call continues from the model returned by the previous one: that
+ * model is passed to GIS as the prior, so every event is scored with the
+ * earlier parameters plus the ones being fitted, and the two parameter sets
+ * are added up afterwards. This is the same computation as running all the
+ * iterations in one call, except that GIS's log-likelihood convergence test
+ * never fires, so the requested number of iterations is always run. Every
+ * call shuts its expectation threads down before returning, cancelled or not.
+ */
+class ResumableGISTrainer extends GISTrainer {
+    private static final Logger logger = LogManager.getLogger(ResumableGISTrainer.class);
+
+    private final BooleanSupplier cancelled;
+    private int lastIterations;
+
+    /**
+     * @param cancelled Checked before every iteration
+     */
+    ResumableGISTrainer(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Runs more iterations on the indexed events, fewer if cancelled meanwhile.
+     *
+     * @param previous            Model to continue from, or null to start from zero
+     * @param iterations          Number of iterations of this call
+     * @param indexer             Events, indexed once for all the calls
+     * @param threads             Threads computing the model expectations
+     * @param completedIterations Receives the number of iterations of this call done so far
+     * @return The previous model with the parameters fitted by this call added,
+     *         null if cancelled before any iteration from zero
+     */
+    GISModel continueTraining(GISModel previous, int iterations, DataIndexer indexer, int threads,
+                              IntConsumer completedIterations) throws IOException {
+        if (indexer.getOutcomeLabels().length <= 1) {
+            throw new InsufficientTrainingDataException("Training data must contain more than one outcome");
+        }
+        GISModel model = previous;
+        lastIterations = 0;
+        while (lastIterations < iterations && !cancelled.getAsBoolean()) {
+            Prior prior = model == null ? new UniformPrior() : new WarmStartPrior(model);
+            GISModel increment = trainModel(1, indexer, prior, threads);
+            model = model == null ? increment : add(model, increment);
+            lastIterations++;
+            completedIterations.accept(lastIterations);
+        }
+        addToReport(TRAINER_TYPE_PARAM, EventTrainer.EVENT_VALUE);
+        return model;
+    }
+
+    /**
+     * @return Iterations run by the last call; fewer than requested if it was cancelled
+     */
+    int getLastIterations() {
+        return lastIterations;
+    }
+
+    @Override
+    protected void display(String s) {
+        // GIS repeats its set-up messages on every call
+        String line = s.strip();
+        if (!line.isEmpty()) {
+            logger.trace(line);
+        }
+    }
+
+    /**
+     * Adds the parameters of two models, matching predicates and outcomes by name.
+     */
+    static GISModel add(GISModel first, GISModel second) {
+        Object[] a = first.getDataStructures();
+        Object[] b = second.getDataStructures();
+        @SuppressWarnings("unchecked")
+        Map<String, Context> firstParams = (Map<String, Context>) a[1];
+        @SuppressWarnings("unchecked")
+        Map<String, Context> secondParams = (Map<String, Context>) b[1];
+        String[] firstOutcomes = (String[]) a[2];
+        String[] outcomes = (String[]) b[2];
+
+        Map<String, Integer> outcomeIndex = new HashMap<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomeIndex.put(outcomes[i], i);
+        }
+        for (String outcome : firstOutcomes) {
+            if (!outcomeIndex.containsKey(outcome)) {
+                throw new IllegalArgumentException("Models have different outcomes: "
+                        + Arrays.toString(firstOutcomes) + " and " + Arrays.toString(outcomes));
+            }
+        }
+
+        Set<String> predicates = new LinkedHashSet<>(secondParams.keySet());
+        predicates.addAll(firstParams.keySet());
+        String[] predLabels = predicates.toArray(new String[0]);
+        Context[] params = new Context[predLabels.length];
+        double[] sum = new double[outcomes.length];
+        boolean[] active = new boolean[outcomes.length];
+        for (int p = 0; p < predLabels.length; p++) {
+            Arrays.fill(sum, 0);
+            Arrays.fill(active, false);
+            Context context = firstParams.get(predLabels[p]);
+            if (context != null) {
+                for (int j = 0; j < context.getOutcomes().length; j++) {
+                    int outcome = outcomeIndex.get(firstOutcomes[context.getOutcomes()[j]]);
+                    sum[outcome] += context.getParameters()[j];
+                    active[outcome] = true;
+                }
+            }
+            context = secondParams.get(predLabels[p]);
+            if (context != null) {
+                for (int j = 0; j < context.getOutcomes().length; j++) {
+                    int outcome = context.getOutcomes()[j];
+                    sum[outcome] += context.getParameters()[j];
+                    active[outcome] = true;
+                }
+            }
+            params[p] = compact(sum, active);
+        }
+        return new GISModel(params, predLabels, outcomes);
+    }
+
+    private static Context compact(double[] sum, boolean[] active) {
+        int count = 0;
+        for (boolean a : active) {
+            if (a) count++;
+        }
+        int[] outcomes = new int[count];
+        double[] parameters = new double[count];
+        int k = 0;
+        for (int o = 0; o < sum.length; o++) {
+            if (active[o]) {
+                outcomes[k] = o;
+                parameters[k++] = sum[o];
+            }
+        }
+        return new Context(outcomes, parameters);
+    }
+
+    /**
+     * Prior equal to the distribution of an earlier model, so GIS fits only
+     * the change to its parameters.
+     */
+    static class WarmStartPrior implements Prior {
+        private final Map<String, Context> params;
+        private final String[] modelOutcomes;
+        private int[][] outcomes;
+        private double[][] parameters;
+        // GIS passes the same context array for an event on every iteration,
+        // and arrays hash by identity, so each event is scored only once
+        private final Map<int[], double[]> eventPriors = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        WarmStartPrior(GISModel model) {
+            Object[] data = model.getDataStructures();
+            this.params = (Map<String, Context>) data[1];
+            this.modelOutcomes = (String[]) data[2];
+        }
+
+        @Override
+        public void setLabels(String[] outcomeLabels, String[] predLabels) {
+            Map<String, Integer> outcomeIndex = new HashMap<>();
+            for (int i = 0; i < outcomeLabels.length; i++) {
+                outcomeIndex.put(outcomeLabels[i], i);
+            }
+            outcomes = new int[predLabels.length][];
+            parameters = new double[predLabels.length][];
+            for (int p = 0; p < predLabels.length; p++) {
+                Context context = params.get(predLabels[p]);
+                if (context == null) {
+                    outcomes[p] = new int[0];
+                    parameters[p] = new double[0];
+                    continue;
+                }
+                int[] mapped = new int[context.getOutcomes().length];
+                for (int j = 0; j < mapped.length; j++) {
+                    Integer outcome = outcomeIndex.get(modelOutcomes[context.getOutcomes()[j]]);
+                    if (outcome == null) {
+                        throw new IllegalArgumentException("Unknown outcome in the earlier model: "
+                                + modelOutcomes[context.getOutcomes()[j]]);
+                    }
+                    mapped[j] = outcome;
+                }
+                outcomes[p] = mapped;
+                parameters[p] = context.getParameters();
+            }
+        }
+
+        @Override
+        public void logPrior(double[] dist, int[] context) {
+            logPrior(dist, context, null);
+        }
+
+        @Override
+        public void logPrior(double[] dist, int[] context, float[] values) {
+            double[] cached = eventPriors.get(context);
+            if (cached == null) {
+                cached = new double[dist.length];
+                score(cached, context, values);
+                eventPriors.put(context, cached);
+            }
+            System.arraycopy(cached, 0, dist, 0, dist.length);
+        }
+
+        private void score(double[] dist, int[] context, float[] values) {
+            for (int ci = 0; ci < context.length; ci++) {
+                double value = values == null ? 1 : values[ci];
+                int[] active = outcomes[context[ci]];
+                double[] weights = parameters[context[ci]];
+                for (int j = 0; j < active.length; j++) {
+                    dist[active[j]] += weights[j] * value;
+                }
+            }
+            // Left unnormalized: GIS adds its own parameters and normalizes the sum
+        }
+
+        @Override
+        public void logPrior(double[] dist, Context[] context, float[] values) {
+            // Never called: GIS training only passes predicate ids, and the model built by
+            // add() scores without this prior. A Context carries no predicate name to look
+            // the earlier weights up by, so the earlier model contributes nothing here.
+            Arrays.fill(dist, 0);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.emailclassifier.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Thread-safe sink that preprocesses and tokenizes (category, text) pairs as
+ * they are produced, so several readers can feed training concurrently
+ * without keeping raw message texts. Tokens are stored as vocabulary ids.
+ */
+public class SampleCollector implements BiConsumer<String, String> {
+    private final EmailPreprocessor preprocessor;
+    private final Vocabulary vocabulary;
+    private final ConcurrentLinkedQueue<EncodedSample> samples = new ConcurrentLinkedQueue<>();
+
+    SampleCollector(EmailPreprocessor preprocessor, Vocabulary vocabulary) {
+        this.preprocessor = preprocessor;
+        this.vocabulary = vocabulary;
+    }
+
+    @Override
+    public void accept(String category, String text) {
+        String preprocessed = preprocessor.preprocess(text);
+        samples.add(new EncodedSample(category, vocabulary.encode(preprocessor.tokenize(preprocessed))));
+    }
+
+    public int size() {
+        return samples.size();
+    }
+
+    Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    List<EncodedSample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+}
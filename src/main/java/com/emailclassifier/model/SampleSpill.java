@@ -0,0 +1,259 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Disk-backed store of encoded samples for corpora that do not fit in the heap.
+ *
+ * Samples are scattered at random into bucket files as they are added; reading
+ * loads one bucket at a time and shuffles it in memory, which yields a uniform
+ * shuffle of the whole corpus (external scatter shuffle) while holding only
+ * about 1/buckets of it. The shuffle is fully determined by the seed.
+ *
+ * The train/eval split is stratified: in shuffled order every
+ * round(1/evalFraction)-th sample of each category goes to evaluation, so each
+ * category keeps its proportion on both sides. Both sides are streamed, and
+ * can be iterated any number of times with the same order.
+ */
+class SampleSpill implements Closeable {
+    private static final Logger logger = LogManager.getLogger(SampleSpill.class);
+    private static final int WRITE_BUFFER_SIZE = 32 * 1024;
+
+    private final Path directory;
+    private final Path[] bucketFiles;
+    private final DataOutputStream[] writers;
+    private final long seed;
+    private final Random scatter;
+    private final List<String> categories = new ArrayList<>();
+    private final Map<String, Integer> categoryIndex = new HashMap<>();
+    private final Map<String, Integer> categoryCounts = new HashMap<>();
+    private long size;
+    private long bytes;
+    private boolean finished;
+
+    /**
+     * @param parent  Directory in which a temporary spill directory is created
+     * @param buckets Number of bucket files; reading holds one bucket in memory
+     * @param seed    Seed of the shuffle
+     * @throws IOException If the spill directory cannot be created
+     */
+    SampleSpill(Path parent, int buckets, long seed) throws IOException {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Number of buckets must be positive: " + buckets);
+        }
+        Files.createDirectories(parent);
+        this.directory = Files.createTempDirectory(parent, "samples-");
+        this.bucketFiles = new Path[buckets];
+        this.writers = new DataOutputStream[buckets];
+        this.seed = seed;
+        this.scatter = new Random(seed);
+        for (int i = 0; i < buckets; i++) {
+            bucketFiles[i] = directory.resolve(String.format("bucket-%04d.bin", i));
+        }
+        logger.info("Spilling samples to {} in {} buckets", directory, buckets);
+    }
+
+    /**
+     * Appends a sample to a random bucket.
+     */
+    synchronized void add(EncodedSample sample) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Spill is already finished");
+        }
+        int category = categoryIndex.computeIfAbsent(sample.getCategory(), c -> {
+            categories.add(c);
+            return categories.size() - 1;
+        });
+        categoryCounts.merge(sample.getCategory(), 1, Integer::sum);
+
+        int bucket = scatter.nextInt(writers.length);
+        DataOutputStream out = writers[bucket];
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bucketFiles[bucket]),
+                    WRITE_BUFFER_SIZE));
+            writers[bucket] = out;
+        }
+
+        int[] ids = sample.getTokenIds();
+        out.writeShort(category);
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+        size++;
+        bytes += 6 + 4L * ids.length;
+    }
+
+    /**
+     * Flushes and closes the bucket files; no samples can be added afterwards.
+     */
+    synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        for (DataOutputStream writer : writers) {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        logger.info("Spilled {} samples ({} bytes) per category {}", size, bytes, categoryCounts);
+    }
+
+    long size() {
+        return size;
+    }
+
+    Map<String, Integer> getCategoryCounts() {
+        return Collections.unmodifiableMap(categoryCounts);
+    }
+
+    /**
+     * Streams the training side of the stratified split in shuffled order.
+     */
+    Iterable<EncodedSample> trainSide(double evalFraction) {
+        return () -> new SplitIterator(evalFraction, false);
+    }
+
+    /**
+     * Streams the evaluation side of the stratified split in shuffled order.
+     */
+    Iterable<EncodedSample> evalSide(double evalFraction) {
+        return () -> new SplitIterator(evalFraction, true);
+    }
+
+    /**
+     * Streams every sample in shuffled order.
+     */
+    Iterable<EncodedSample> shuffled() {
+        return ShuffledIterator::new;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+        logger.debug("Deleted spill directory {}", directory);
+    }
+
+    private List<EncodedSample> readBucket(int bucket) throws IOException {
+        List<EncodedSample> samples = new ArrayList<>();
+        if (!Files.exists(bucketFiles[bucket])) {
+            return samples;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(bucketFiles[bucket])))) {
+            while (true) {
+                int category;
+                try {
+                    category = in.readShort();
+                } catch (EOFException e) {
+                    break;
+                }
+                int[] ids = new int[in.readInt()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = in.readInt();
+                }
+                samples.add(new EncodedSample(categories.get(category), ids));
+            }
+        }
+        // Per-bucket seed keeps every pass over the spill in the same order
+        Collections.shuffle(samples, new Random(seed * 31 + bucket));
+        return samples;
+    }
+
+    private class ShuffledIterator implements Iterator<EncodedSample> {
+        private int nextBucket;
+        private Iterator<EncodedSample> current = Collections.emptyIterator();
+
+        ShuffledIterator() {
+            if (!finished) {
+                throw new IllegalStateException("Spill must be finished before reading");
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextBucket < bucketFiles.length) {
+                try {
+                    current = readBucket(nextBucket++).iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public EncodedSample next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    private class SplitIterator implements Iterator<EncodedSample> {
+        private final ShuffledIterator shuffled = new ShuffledIterator();
+        private final int stride;
+        private final boolean evalSide;
+        private final Map<String, Integer> seen = new HashMap<>();
+        private EncodedSample next;
+
+        SplitIterator(double evalFraction, boolean evalSide) {
+            if (evalFraction <= 0 || evalFraction >= 1) {
+                throw new IllegalArgumentException("Evaluation fraction must be in (0, 1): " + evalFraction);
+            }
+            this.stride = (int) Math.round(1 / evalFraction);
+            this.evalSide = evalSide;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && shuffled.hasNext()) {
+                EncodedSample candidate = shuffled.next();
+                int index = seen.merge(candidate.getCategory(), 1, Integer::sum);
+                boolean forEval = index % stride == 0;
+                if (forEval == evalSide) {
+                    next = candidate;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public EncodedSample next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            EncodedSample sample = next;
+            next = null;
+            return sample;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.emailclassifier.model;
+
+/**
+ * Scoring kernel using plain loops, used when the Vector API is not available.
+ */
+class ScalarScoringKernel implements ScoringKernel {
+
+    @Override
+    public void sum(double[][] weights, int[] featureIds, double[] sums) {
+        for (int o = 0; o < weights.length; o++) {
+            double[] outcomeWeights = weights[o];
+            double sum = 0;
+            for (int id : featureIds) {
+                sum += outcomeWeights[id];
+            }
+            sums[o] = sum;
+        }
+    }
+
+    @Override
+    public void softmax(double[][] sums, int count) {
+        for (int d = 0; d < count; d++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] outcome : sums) {
+                max = Math.max(max, outcome[d]);
+            }
+            double normal = 0;
+            for (double[] outcome : sums) {
+                outcome[d] = StrictMath.exp(outcome[d] - max);
+                normal += outcome[d];
+            }
+            for (double[] outcome : sums) {
+                outcome[d] /= normal;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.emailclassifier.model;
+
+/**
+ * Arithmetic of batch scoring: gathers feature weights per outcome and turns
+ * weight sums into probabilities. Implemented with the incubating Vector API
+ * when it is available and with plain loops otherwise.
+ */
+interface ScoringKernel {
+
+    /**
+     * Adds up the weights of the given features for every outcome.
+     *
+     * @param weights    Weights indexed [outcome][featureId]
+     * @param featureIds Feature ids of one document, repeated ids count repeatedly
+     * @param sums       Receives one sum per outcome
+     */
+    void sum(double[][] weights, int[] featureIds, double[] sums);
+
+    /**
+     * Normalizes the weight sums of a batch in place, softmax over outcomes.
+     *
+     * @param sums  Sums indexed [outcome][document]
+     * @param count Number of documents in the batch
+     */
+    void softmax(double[][] sums, int count);
+}
@@ -0,0 +1,186 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.doccat.BagOfWordsFeatureGenerator;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.doccat.FeatureGenerator;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scores very large token streams by splitting them into segments and summing
+ * the per-segment maxent scores on a fork-join pool.
+ *
+ * A maxent model scores a document as softmax(sum of feature weights), so the
+ * per-outcome sums of independent segments can be added before the softmax.
+ * With bag-of-words or hashed n-gram features (n-grams are attributed to the
+ * segment they start in) the result equals scoring the whole document, up to
+ * floating point rounding.
+ */
+public class SegmentedScorer {
+    private static final Logger logger = LogManager.getLogger(SegmentedScorer.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+    private final Map<String, Context> pmap;
+    private final FeatureGenerator[] featureGenerators;
+    private final int numOutcomes;
+    private final int segmentSize;
+    private final ForkJoinPool pool;
+
+    private SegmentedScorer(Map<String, Context> pmap, FeatureGenerator[] featureGenerators,
+                            int numOutcomes, int segmentSize, ForkJoinPool pool) {
+        this.pmap = pmap;
+        this.featureGenerators = featureGenerators;
+        this.numOutcomes = numOutcomes;
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a scorer for the given model, or returns null when the model's
+     * scores cannot be combined per segment (only GIS maxent models with
+     * bag-of-words or hashed n-gram features are supported).
+     *
+     * @param model       Trained doccat model
+     * @param segmentSize Number of tokens per segment
+     * @param pool        Pool running the segment tasks
+     * @return A scorer, or null if the model type is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public static SegmentedScorer forModel(DoccatModel model, int segmentSize, ForkJoinPool pool) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+        }
+
+        MaxentModel maxent = model.getMaxentModel();
+        if (!(maxent instanceof GISModel)) {
+            logger.warn("Segmented scoring not supported for model type {}",
+                    maxent.getClass().getSimpleName());
+            return null;
+        }
+
+        FeatureGenerator[] generators = model.getFactory().getFeatureGenerators();
+        for (FeatureGenerator generator : generators) {
+            if (!(generator instanceof BagOfWordsFeatureGenerator)
+                    && !(generator instanceof HashedNGramFeatureGenerator)) {
+                logger.warn("Segmented scoring not supported for feature generator {}",
+                        generator.getClass().getSimpleName());
+                return null;
+            }
+        }
+
+        Object[] structures = ((GISModel) maxent).getDataStructures();
+        Map<String, Context> pmap = (Map<String, Context>) structures[1];
+        return new SegmentedScorer(pmap, generators, maxent.getNumOutcomes(), segmentSize, pool);
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Scores the tokens and returns outcome probabilities in model outcome order.
+     *
+     * @param tokens Tokens of the whole document
+     * @return Probability of each outcome
+     */
+    public double[] score(String[] tokens) {
+        double[] sums = pool.invoke(new SegmentTask(tokens, 0, tokens.length));
+        logger.debug("Scored {} tokens in {} segments", tokens.length,
+                (tokens.length + segmentSize - 1) / segmentSize);
+        return softmax(sums);
+    }
+
+    /**
+     * Computes the raw per-outcome weight sums of a token range.
+     */
+    double[] scoreSegment(String[] tokens, int from, int to) {
+        double[] sums = new double[numOutcomes];
+        for (FeatureGenerator generator : featureGenerators) {
+            if (generator instanceof HashedNGramFeatureGenerator) {
+                // N-grams starting near the end of the segment read into the next one
+                ((HashedNGramFeatureGenerator) generator).forEachFeature(tokens, from, to,
+                        feature -> addWeights(feature, sums));
+                continue;
+            }
+
+            String[] segment = new String[to - from];
+            System.arraycopy(tokens, from, segment, 0, segment.length);
+            for (String feature : generator.extractFeatures(segment, Collections.emptyMap())) {
+                addWeights(feature, sums);
+            }
+        }
+        return sums;
+    }
+
+    private void addWeights(String feature, double[] sums) {
+        Context context = pmap.get(feature);
+        if (context == null) {
+            return;
+        }
+        int[] outcomes = context.getOutcomes();
+        double[] parameters = context.getParameters();
+        for (int i = 0; i < outcomes.length; i++) {
+            sums[outcomes[i]] += parameters[i];
+        }
+    }
+
+    /**
+     * Applies the uniform prior and normalizes, matching GISModel.eval.
+     */
+    private double[] softmax(double[] sums) {
+        double logPrior = Math.log(1.0 / numOutcomes);
+        double normal = 0.0;
+        for (int i = 0; i < numOutcomes; i++) {
+            sums[i] = StrictMath.exp(sums[i] + logPrior);
+            normal += sums[i];
+        }
+        for (int i = 0; i < numOutcomes; i++) {
+            sums[i] /= normal;
+        }
+        return sums;
+    }
+
+    private class SegmentTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] tokens;
+        private final int from;
+        private final int to;
+
+        SegmentTask(String[] tokens, int from, int to) {
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= segmentSize) {
+                return scoreSegment(tokens, from, to);
+            }
+
+            // Split on a segment boundary so the partition does not depend on scheduling
+            int segments = (to - from + segmentSize - 1) / segmentSize;
+            int mid = from + (segments / 2) * segmentSize;
+
+            SegmentTask left = new SegmentTask(tokens, from, mid);
+            SegmentTask right = new SegmentTask(tokens, mid, to);
+            left.fork();
+            double[] sums = right.compute();
+            double[] leftSums = left.join();
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += leftSums[i];
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores a sample of the primary model's messages with a candidate model on
+ * a single low-priority thread, and records how the two compare.
+ *
+ * The primary call only hands the message over and never waits. Shadow work
+ * is the first thing dropped under load: a sampled message is skipped when
+ * other primary calls occupy every processor, or when the shadow queue is full.
+ */
+class ShadowScorer {
+    private static final Logger logger = LogManager.getLogger(ShadowScorer.class);
+
+    private final EmailClassifier shadow;
+    private final double sampleRate;
+    private final ThreadPoolExecutor executor;
+    private final ShadowStats stats = new ShadowStats();
+    private final AtomicInteger primaryInFlight = new AtomicInteger();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param shadow        Classifier holding the candidate model
+     * @param sampleRate    Fraction of messages scored by the shadow
+     * @param queueCapacity Messages waiting for the shadow beyond which new ones are dropped
+     */
+    ShadowScorer(EmailClassifier shadow, double sampleRate, int queueCapacity) {
+        this.shadow = shadow;
+        this.sampleRate = sampleRate;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "shadow-scorer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    ShadowStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Marks the start of a primary call, so the scorer knows how busy the classifier is.
+     */
+    void enter() {
+        primaryInFlight.incrementAndGet();
+    }
+
+    void exit() {
+        primaryInFlight.decrementAndGet();
+    }
+
+    /**
+     * Queues a message for shadow scoring if it is sampled and the system has room.
+     *
+     * @param email        Raw message
+     * @param primary      Primary model's probabilities
+     * @param primaryNanos Time the primary model took
+     */
+    void offer(String email, Map<String, Double> primary, long primaryNanos) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        stats.recordSampled();
+        if (primaryInFlight.get() >= processors) {
+            stats.recordDropped();
+            return;
+        }
+        String primaryVerdict = bestCategory(primary);
+        try {
+            executor.execute(() -> {
+                try {
+                    long start = System.nanoTime();
+                    Map<String, Double> result = shadow.classify(email);
+                    stats.record(primaryVerdict, bestCategory(result), primaryNanos, System.nanoTime() - start);
+                } catch (RuntimeException e) {
+                    logger.warn("Shadow model failed to classify a message", e);
+                    stats.recordFailed();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stats.recordDropped();
+        }
+    }
+
+    private static String bestCategory(Map<String, Double> probabilities) {
+        return probabilities.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse("");
+    }
+
+    /**
+     * Stops the shadow thread, discarding queued messages.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        logger.info("Shadow scoring stopped: {}", stats);
+    }
+}
@@ -0,0 +1,120 @@
+package com.emailclassifier.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters comparing a shadow model with the primary model on
+ * sampled live traffic: how often their verdicts agree, how they disagree
+ * (e.g. "ham->spam" when the primary said ham and the shadow spam), and how
+ * long each took on the same messages.
+ */
+public class ShadowStats {
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder agreements = new LongAdder();
+    private final Map<String, LongAdder> disagreements = new ConcurrentHashMap<>();
+    private final LongAdder primaryNanos = new LongAdder();
+    private final LongAdder shadowNanos = new LongAdder();
+    private final LongAccumulator maxShadowNanos = new LongAccumulator(Math::max, 0);
+
+    void recordSampled() {
+        sampled.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    void record(String primaryVerdict, String shadowVerdict, long primaryElapsed, long shadowElapsed) {
+        compared.increment();
+        primaryNanos.add(primaryElapsed);
+        shadowNanos.add(shadowElapsed);
+        maxShadowNanos.accumulate(shadowElapsed);
+        if (primaryVerdict.equals(shadowVerdict)) {
+            agreements.increment();
+        } else {
+            disagreements.computeIfAbsent(primaryVerdict + "->" + shadowVerdict, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @return Messages selected for shadow scoring, including dropped ones
+     */
+    public long getSampled() {
+        return sampled.sum();
+    }
+
+    /**
+     * @return Sampled messages skipped because the system was busy
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return Messages scored by both models
+     */
+    public long getCompared() {
+        return compared.sum();
+    }
+
+    public long getAgreements() {
+        return agreements.sum();
+    }
+
+    public double getAgreementRate() {
+        long total = getCompared();
+        return total == 0 ? 0.0 : getAgreements() / (double) total;
+    }
+
+    /**
+     * @return Disagreement counts keyed by "primary->shadow" verdicts
+     */
+    public Map<String, Long> getDisagreements() {
+        Map<String, Long> counts = new TreeMap<>();
+        disagreements.forEach((transition, count) -> counts.put(transition, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return Mean primary latency on the compared messages, in microseconds
+     */
+    public double getAveragePrimaryMicros() {
+        long total = getCompared();
+        return total == 0 ? 0.0 : primaryNanos.sum() / 1000.0 / total;
+    }
+
+    /**
+     * @return Mean shadow latency on the compared messages, in microseconds
+     */
+    public double getAverageShadowMicros() {
+        long total = getCompared();
+        return total == 0 ? 0.0 : shadowNanos.sum() / 1000.0 / total;
+    }
+
+    public double getMaxShadowMicros() {
+        return maxShadowNanos.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sampled=%d, dropped=%d, failed=%d, compared=%d, agreement=%.1f%% %s, "
+                        + "avg primary=%.1fus, avg shadow=%.1fus, max shadow=%.1fus",
+                getSampled(), getDropped(), getFailed(), getCompared(), getAgreementRate() * 100, getDisagreements(),
+                getAveragePrimaryMicros(), getAverageShadowMicros(), getMaxShadowMicros());
+    }
+}
@@ -0,0 +1,70 @@
+package com.emailclassifier.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running estimates of what each classification stage costs per character,
+ * used to plan a deadline-aware call before running a stage rather than
+ * noticing afterwards that the budget is gone.
+ *
+ * Estimates start from defaults measured on a warmed-up JVM, so even the
+ * first calls can be cut short, and follow an exponential moving average of
+ * the observed costs. Preprocessing is counted per character of raw text,
+ * tokenizing and scoring per character of preprocessed text.
+ */
+class StageCosts {
+    /** Initial estimates, in nanoseconds per character, indexed by stage. */
+    static final double[] DEFAULT_NANOS_PER_CHAR = {200, 20, 30};
+    private static final double SMOOTHING = 0.2;
+    // Shorter inputs are dominated by fixed costs and would skew the estimates
+    private static final int MIN_SAMPLE_CHARS = 256;
+
+    private final AtomicLongArray nanosPerChar = new AtomicLongArray(ClassificationResult.Stage.values().length);
+
+    StageCosts() {
+        for (ClassificationResult.Stage stage : ClassificationResult.Stage.values()) {
+            nanosPerChar.set(stage.ordinal(), Double.doubleToLongBits(DEFAULT_NANOS_PER_CHAR[stage.ordinal()]));
+        }
+    }
+
+    double getNanosPerChar(ClassificationResult.Stage stage) {
+        return Double.longBitsToDouble(nanosPerChar.get(stage.ordinal()));
+    }
+
+    /**
+     * Estimates how many characters can go through the given stages within
+     * a fraction of the remaining time.
+     *
+     * @param remainingNanos Time left in the budget
+     * @param safetyFactor   Fraction of the remaining time the stages may plan to use
+     * @param stages         Stages still to run on each character
+     * @return The affordable number of characters, 0 when the budget is spent
+     */
+    int affordableChars(long remainingNanos, double safetyFactor, ClassificationResult.Stage... stages) {
+        if (remainingNanos <= 0) {
+            return 0;
+        }
+        double cost = 0;
+        for (ClassificationResult.Stage stage : stages) {
+            cost += getNanosPerChar(stage);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remainingNanos * safetyFactor / cost);
+    }
+
+    /**
+     * Folds an observed run of a stage into its estimate.
+     */
+    void update(ClassificationResult.Stage stage, long nanos, long chars) {
+        if (chars < MIN_SAMPLE_CHARS) {
+            return;
+        }
+        double observed = nanos / (double) chars;
+        int index = stage.ordinal();
+        long current;
+        long next;
+        do {
+            current = nanosPerChar.get(index);
+            next = Double.doubleToLongBits(Double.longBitsToDouble(current) * (1 - SMOOTHING) + observed * SMOOTHING);
+        } while (!nanosPerChar.compareAndSet(index, current, next));
+    }
+}
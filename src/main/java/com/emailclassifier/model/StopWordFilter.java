@@ -0,0 +1,176 @@
+package com.emailclassifier.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stop-word set compiled into a char trie that can be probed directly on a
+ * range of a char[] or CharSequence, without building a String per token.
+ * Lists are loaded from the classpath resource /stopwords/&lt;language&gt;.txt
+ * (one lowercase word per line, '#' starts a comment) and cached per language.
+ */
+public class StopWordFilter {
+    private static final Logger logger = LogManager.getLogger(StopWordFilter.class);
+    private static final String RESOURCE_PATTERN = "/stopwords/%s.txt";
+    private static final Map<String, StopWordFilter> CACHE = new ConcurrentHashMap<>();
+
+    public static final String DEFAULT_LANGUAGE = "en";
+
+    // Trie nodes as parallel arrays; node 0 is the root.
+    // Children of a node form a linked list through nextSibling.
+    private final char[] label;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final boolean[] terminal;
+    private final String language;
+    private final int size;
+
+    private StopWordFilter(String language, List<String> words) {
+        this.language = language;
+
+        int maxNodes = 1;
+        for (String word : words) {
+            maxNodes += word.length();
+        }
+        char[] labels = new char[maxNodes];
+        int[] children = new int[maxNodes];
+        int[] siblings = new int[maxNodes];
+        boolean[] terminals = new boolean[maxNodes];
+        Arrays.fill(children, -1);
+        Arrays.fill(siblings, -1);
+
+        int nodes = 1;
+        int distinct = 0;
+        for (String word : words) {
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int child = children[node];
+                while (child != -1 && labels[child] != c) {
+                    child = siblings[child];
+                }
+                if (child == -1) {
+                    child = nodes++;
+                    labels[child] = c;
+                    siblings[child] = children[node];
+                    children[node] = child;
+                }
+                node = child;
+            }
+            if (!terminals[node]) {
+                terminals[node] = true;
+                distinct++;
+            }
+        }
+
+        this.label = Arrays.copyOf(labels, nodes);
+        this.firstChild = Arrays.copyOf(children, nodes);
+        this.nextSibling = Arrays.copyOf(siblings, nodes);
+        this.terminal = Arrays.copyOf(terminals, nodes);
+        this.size = distinct;
+    }
+
+    /**
+     * Returns the cached filter for a language, loading its resource list on first use.
+     * A missing list yields an empty filter so that tokenization still works.
+     *
+     * @param language ISO 639-1 code such as "en" or "fr"
+     * @return The stop-word filter for the language
+     */
+    public static StopWordFilter forLanguage(String language) {
+        return CACHE.computeIfAbsent(language.toLowerCase(Locale.ROOT), StopWordFilter::load);
+    }
+
+    /**
+     * Compiles a filter from an explicit word list.
+     */
+    public static StopWordFilter of(String language, List<String> words) {
+        return new StopWordFilter(language, words);
+    }
+
+    private static StopWordFilter load(String language) {
+        String resource = String.format(RESOURCE_PATTERN, language);
+        List<String> words = new ArrayList<>();
+
+        try (InputStream in = StopWordFilter.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                logger.warn("No stop-word list found for language '{}' ({})", language, resource);
+                return new StopWordFilter(language, words);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String word = line.trim();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(word.toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read stop-word list {}", resource, e);
+        }
+
+        StopWordFilter filter = new StopWordFilter(language, words);
+        logger.info("Loaded {} stop words for language '{}'", filter.size(), language);
+        return filter;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether chars [start, end) of the buffer form a stop word.
+     */
+    public boolean contains(char[] buffer, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(node, buffer[i]);
+            if (node == -1) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    /**
+     * Checks whether chars [start, end) of the text form a stop word.
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(node, text.charAt(i));
+            if (node == -1) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    public boolean contains(String word) {
+        return contains(word, 0, word.length());
+    }
+
+    private int child(int node, char c) {
+        int child = firstChild[node];
+        while (child != -1 && label[child] != c) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+}
@@ -0,0 +1,16 @@
+package com.emailclassifier.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown by training when {@link EmailClassifier#cancelTraining()} was called.
+ * The stages saved to the checkpoint directory, if any, are kept, so training
+ * again with the same inputs resumes from them.
+ */
+public class TrainingCancelledException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public TrainingCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,265 @@
+package com.emailclassifier.model;
+
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.maxent.io.BinaryGISModelReader;
+import opennlp.tools.ml.maxent.io.BinaryGISModelWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Directory holding the finished stages of a training run: the tokenized
+ * corpus, the shuffled order of the samples and the model after the last
+ * completed block of iterations. Training again with the same inputs and
+ * settings picks up after the latest stage instead of starting over.
+ *
+ * The stages belong to the run whose fingerprint is stored with them; opening
+ * the directory with another fingerprint discards them. Each file is written
+ * under a temporary name, synced to disk and renamed, so a crash never leaves
+ * half a stage.
+ */
+class TrainingCheckpoint {
+    private static final Logger logger = LogManager.getLogger(TrainingCheckpoint.class);
+
+    private static final String FINGERPRINT_FILE = "fingerprint";
+    private static final String CORPUS_FILE = "corpus.bin";
+    private static final String ORDER_FILE = "order.bin";
+    private static final String MODEL_FILE = "model.bin";
+
+    private final Path directory;
+
+    private TrainingCheckpoint(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the checkpoint directory for a run, discarding the stages of any other run.
+     *
+     * @param directory   Checkpoint directory, created if needed
+     * @param fingerprint Hash of the training inputs and settings
+     */
+    static TrainingCheckpoint open(Path directory, long fingerprint) throws IOException {
+        Files.createDirectories(directory);
+        TrainingCheckpoint checkpoint = new TrainingCheckpoint(directory);
+        String expected = Long.toHexString(fingerprint);
+        Path fingerprintFile = directory.resolve(FINGERPRINT_FILE);
+        if (Files.exists(fingerprintFile)
+                && Files.readString(fingerprintFile, StandardCharsets.UTF_8).trim().equals(expected)) {
+            logger.info("Resuming training from checkpoint {}", directory);
+        } else {
+            checkpoint.deleteStages();
+            checkpoint.write(FINGERPRINT_FILE, out -> out.write(expected.getBytes(StandardCharsets.UTF_8)));
+        }
+        return checkpoint;
+    }
+
+    boolean hasCorpus() {
+        return Files.exists(directory.resolve(CORPUS_FILE));
+    }
+
+    /**
+     * Saves the tokens of the vocabulary in id order and the encoded samples.
+     */
+    void saveCorpus(Vocabulary vocabulary, List<EncodedSample> samples) throws IOException {
+        write(CORPUS_FILE, out -> {
+            int tokens = vocabulary.size();
+            out.writeInt(tokens);
+            for (int id = 0; id < tokens; id++) {
+                out.writeUTF(vocabulary.tokenOf(id));
+            }
+            Map<String, Integer> categoryIndex = new HashMap<>();
+            List<String> categories = new ArrayList<>();
+            for (EncodedSample sample : samples) {
+                categoryIndex.computeIfAbsent(sample.getCategory(), c -> {
+                    categories.add(c);
+                    return categories.size() - 1;
+                });
+            }
+            out.writeInt(categories.size());
+            for (String category : categories) {
+                out.writeUTF(category);
+            }
+            out.writeInt(samples.size());
+            for (EncodedSample sample : samples) {
+                int[] ids = sample.getTokenIds();
+                out.writeShort(categoryIndex.get(sample.getCategory()));
+                out.writeInt(ids.length);
+                for (int id : ids) {
+                    out.writeInt(id);
+                }
+            }
+        });
+        logger.info("Checkpointed {} tokenized samples", samples.size());
+    }
+
+    /**
+     * Reads the saved samples, interning their tokens into an empty vocabulary
+     * so that they keep their ids.
+     */
+    List<EncodedSample> loadCorpus(Vocabulary vocabulary) throws IOException {
+        if (vocabulary.size() != 0) {
+            throw new IllegalArgumentException("Vocabulary must be empty");
+        }
+        try (DataInputStream in = read(CORPUS_FILE)) {
+            int tokens = in.readInt();
+            for (int id = 0; id < tokens; id++) {
+                vocabulary.intern(in.readUTF());
+            }
+            String[] categories = new String[in.readInt()];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            List<EncodedSample> samples = new ArrayList<>(count);
+            for (int s = 0; s < count; s++) {
+                String category = categories[in.readShort()];
+                int[] ids = new int[in.readInt()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = in.readInt();
+                }
+                samples.add(new EncodedSample(category, ids));
+            }
+            logger.info("Restored {} tokenized samples from checkpoint", count);
+            return samples;
+        }
+    }
+
+    /**
+     * Saves the order of the training samples as positions in the corpus.
+     */
+    void saveOrder(int[] order) throws IOException {
+        write(ORDER_FILE, out -> {
+            out.writeInt(order.length);
+            for (int position : order) {
+                out.writeInt(position);
+            }
+        });
+    }
+
+    /**
+     * @return The saved order, or null if it was not reached
+     */
+    int[] loadOrder() throws IOException {
+        if (!Files.exists(directory.resolve(ORDER_FILE))) {
+            return null;
+        }
+        try (DataInputStream in = read(ORDER_FILE)) {
+            int[] order = new int[in.readInt()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = in.readInt();
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Saves the model reached after the given number of iterations.
+     */
+    void saveModel(GISModel model, int iterations) throws IOException {
+        write(MODEL_FILE, out -> {
+            out.writeInt(iterations);
+            // The writer closes the stream when done; closing it again below is harmless
+            new BinaryGISModelWriter(model, out).persist();
+        });
+        logger.info("Checkpointed the model after {} iterations", iterations);
+    }
+
+    /**
+     * @return Iterations done by the saved model, 0 if there is none
+     */
+    int getModelIterations() throws IOException {
+        if (!Files.exists(directory.resolve(MODEL_FILE))) {
+            return 0;
+        }
+        try (DataInputStream in = read(MODEL_FILE)) {
+            return in.readInt();
+        }
+    }
+
+    /**
+     * @return The saved model, or null if there is none
+     */
+    GISModel loadModel() throws IOException {
+        if (!Files.exists(directory.resolve(MODEL_FILE))) {
+            return null;
+        }
+        try (DataInputStream in = read(MODEL_FILE)) {
+            in.readInt();
+            return (GISModel) new BinaryGISModelReader(in).getModel();
+        }
+    }
+
+    /**
+     * Deletes the checkpoint once training has completed.
+     */
+    void clear() throws IOException {
+        deleteStages();
+        Files.deleteIfExists(directory.resolve(FINGERPRINT_FILE));
+        logger.debug("Cleared training checkpoint {}", directory);
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+
+    private void deleteStages() throws IOException {
+        for (String stage : new String[] {CORPUS_FILE, ORDER_FILE, MODEL_FILE}) {
+            Files.deleteIfExists(directory.resolve(stage));
+        }
+    }
+
+    private DataInputStream read(String name) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(name))));
+    }
+
+    private void write(String name, StageWriter writer) throws IOException {
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            writer.write(out);
+        }
+        // Some stage writers close the stream themselves, so the file is synced through a channel of its own
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+    }
+
+    /**
+     * Syncs the directory so the rename survives a crash. Some systems,
+     * Windows among them, cannot open a directory.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot sync checkpoint directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private interface StageWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,128 @@
+package com.emailclassifier.model;
+
+import java.util.Arrays;
+
+/**
+ * Maps tokens to dense int ids so that training samples can be stored as
+ * int arrays, with a single shared String per distinct token.
+ * Backed by an open-addressing (linear probing) table of parallel arrays.
+ * All methods are thread-safe.
+ */
+public class Vocabulary {
+    private static final int NO_ID = -1;
+
+    private String[] keys;
+    private int[] ids;
+    private int mask;
+    private String[] tokens;
+    private int size;
+
+    public Vocabulary() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize Expected number of distinct tokens
+     */
+    public Vocabulary(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        allocateTable(capacity);
+        this.tokens = new String[Math.max(16, expectedSize)];
+    }
+
+    /**
+     * Returns the id of a token, adding it to the vocabulary if needed.
+     */
+    public synchronized int intern(String token) {
+        int slot = slotOf(token);
+        if (keys[slot] != null) {
+            return ids[slot];
+        }
+
+        int id = size++;
+        if (id == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        tokens[id] = token;
+        keys[slot] = token;
+        ids[slot] = id;
+
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * @return The id of a token, or -1 if it is not in the vocabulary
+     */
+    public synchronized int idOf(String token) {
+        int slot = slotOf(token);
+        return keys[slot] != null ? ids[slot] : NO_ID;
+    }
+
+    public synchronized String tokenOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown token id: " + id);
+        }
+        return tokens[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Interns every token and returns their ids.
+     */
+    public synchronized int[] encode(String[] text) {
+        int[] encoded = new int[text.length];
+        for (int i = 0; i < text.length; i++) {
+            encoded[i] = intern(text[i]);
+        }
+        return encoded;
+    }
+
+    /**
+     * Converts ids back to the shared token strings.
+     */
+    public synchronized String[] decode(int[] encoded) {
+        String[] text = new String[encoded.length];
+        for (int i = 0; i < encoded.length; i++) {
+            text[i] = tokens[encoded[i]];
+        }
+        return text;
+    }
+
+    private int slotOf(String token) {
+        int slot = mix(token.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(token)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        allocateTable(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new String[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,76 @@
+package com.emailclassifier.model;
+
+/**
+ * Outcome of a warm-up: how long it ran, how much of it the JIT compiler
+ * spent compiling, and the per-message latency before and after.
+ */
+public class WarmUpReport {
+    private final int rounds;
+    private final int sampleSize;
+    private final long elapsedMillis;
+    private final long compileMillis;
+    private final double firstRoundMicros;
+    private final double lastRoundMicros;
+    private final boolean stabilized;
+
+    WarmUpReport(int rounds, int sampleSize, long elapsedMillis, long compileMillis,
+                 double firstRoundMicros, double lastRoundMicros, boolean stabilized) {
+        this.rounds = rounds;
+        this.sampleSize = sampleSize;
+        this.elapsedMillis = elapsedMillis;
+        this.compileMillis = compileMillis;
+        this.firstRoundMicros = firstRoundMicros;
+        this.lastRoundMicros = lastRoundMicros;
+        this.stabilized = stabilized;
+    }
+
+    /**
+     * @return Number of passes over the sample
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return JIT compilation time during the warm-up, -1 if the JVM does not report it
+     */
+    public long getCompileMillis() {
+        return compileMillis;
+    }
+
+    /**
+     * @return Mean latency per message in the first pass, mostly interpreted code
+     */
+    public double getFirstRoundMicros() {
+        return firstRoundMicros;
+    }
+
+    /**
+     * @return Mean latency per message in the last pass, the expected steady state
+     */
+    public double getLastRoundMicros() {
+        return lastRoundMicros;
+    }
+
+    /**
+     * @return false if the time limit was reached before compilation settled
+     */
+    public boolean isStabilized() {
+        return stabilized;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rounds of %d messages in %d ms (JIT %d ms, %s), latency %.0f us -> %.0f us per message",
+                rounds, sampleSize, elapsedMillis, compileMillis, stabilized ? "stabilized" : "time limit reached",
+                firstRoundMicros, lastRoundMicros);
+    }
+}
@@ -0,0 +1,140 @@
+package com.emailclassifier.tools;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.DatasetLoader;
+import opennlp.tools.doccat.DoccatModel;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the default unigram features with hashed n-gram features on a
+ * spam/ham corpus: accuracy, serialized model size, load time and classify latency.
+ *
+ * Both configurations are trained and evaluated on the same seeded split,
+ * and latency is measured on messages of both categories with the
+ * classifier's per-call logging turned down.
+ *
+ * Usage: FeatureBenchmark &lt;spamDir&gt; &lt;hamDir&gt; [order] [buckets] [seed]
+ */
+public class FeatureBenchmark {
+    private static final Logger logger = LogManager.getLogger(FeatureBenchmark.class);
+    private static final int LATENCY_SAMPLES = 2000;
+    private static final long DEFAULT_SPLIT_SEED = 42;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FeatureBenchmark <spamDir> <hamDir> [order] [buckets] [seed]");
+            System.exit(2);
+        }
+        int order = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int buckets = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 18;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SPLIT_SEED;
+
+        Map<String, String[]> dataset = new DatasetLoader().loadFromDirectories(new File(args[0]), new File(args[1]));
+        List<String> latencySample = latencySample(dataset);
+
+        EmailClassifier unigram = new EmailClassifier();
+        unigram.setSplitSeed(seed);
+        Result baseline = run("unigram (bag of words)", unigram, dataset, latencySample);
+
+        EmailClassifier hashed = new EmailClassifier();
+        hashed.setHashedNGramFeatures(order, buckets);
+        hashed.setSplitSeed(seed);
+        Result candidate = run("hashed 1.." + order + "-gram, " + buckets + " buckets", hashed, dataset, latencySample);
+
+        System.out.printf("%-40s %10s %12s %10s %12s %12s%n",
+                "features", "accuracy", "model bytes", "load ms", "classify us", "train ms");
+        baseline.print();
+        candidate.print();
+    }
+
+    private static Result run(String name, EmailClassifier classifier, Map<String, String[]> dataset,
+                              List<String> latencySample) throws IOException {
+        logger.info("Benchmarking {}", name);
+        Result result = new Result(name);
+
+        long start = System.nanoTime();
+        result.accuracy = classifier.train(dataset, progress -> { });
+        result.trainMillis = (System.nanoTime() - start) / 1_000_000;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        classifier.getModel().serialize(out);
+        byte[] serialized = out.toByteArray();
+        result.modelBytes = serialized.length;
+
+        // Untimed first load, so class loading is not counted in the first configuration
+        new DoccatModel(new ByteArrayInputStream(serialized));
+        start = System.nanoTime();
+        new DoccatModel(new ByteArrayInputStream(serialized));
+        result.loadMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        // classify() logs every result at INFO, which would dominate the timing
+        String classifierLogger = EmailClassifier.class.getName();
+        Level level = LogManager.getLogger(classifierLogger).getLevel();
+        Configurator.setLevel(classifierLogger, Level.WARN);
+        try {
+            // First pass warms up the JIT, second pass is measured
+            for (String email : latencySample) {
+                classifier.classify(email);
+            }
+            start = System.nanoTime();
+            for (String email : latencySample) {
+                classifier.classify(email);
+            }
+            result.classifyMicros = (System.nanoTime() - start) / 1000.0 / latencySample.size();
+        } finally {
+            Configurator.setLevel(classifierLogger, level);
+        }
+        return result;
+    }
+
+    /**
+     * Takes messages from every category in turn, so that each weighs about
+     * the same in the latency.
+     */
+    private static List<String> latencySample(Map<String, String[]> dataset) {
+        List<String> sample = new ArrayList<>();
+        List<String[]> categories = new ArrayList<>(dataset.values());
+        for (int i = 0; sample.size() < LATENCY_SAMPLES; i++) {
+            boolean added = false;
+            for (String[] emails : categories) {
+                if (i < emails.length && sample.size() < LATENCY_SAMPLES) {
+                    sample.add(emails[i]);
+                    added = true;
+                }
+            }
+            if (!added) {
+                break;
+            }
+        }
+        return sample;
+    }
+
+    private static class Result {
+        final String name;
+        double accuracy;
+        long modelBytes;
+        double loadMillis;
+        double classifyMicros;
+        long trainMillis;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        void print() {
+            System.out.printf("%-40s %9.2f%% %12d %10.1f %12.1f %12d%n",
+                    name, accuracy * 100, modelBytes, loadMillis, classifyMicros, trainMillis);
+        }
+    }
+}
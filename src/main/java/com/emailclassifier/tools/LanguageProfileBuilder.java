@@ -0,0 +1,68 @@
+package com.emailclassifier.tools;
+
+import com.emailclassifier.model.LanguageDetector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a character trigram profile for {@link LanguageDetector} from a
+ * plain-text corpus in one language, keeping the most frequent trigrams.
+ * The output goes to src/main/resources/langid/&lt;language&gt;.txt.
+ *
+ * Usage: LanguageProfileBuilder &lt;language&gt; &lt;output&gt; [size] &lt;corpus files...&gt;
+ */
+public class LanguageProfileBuilder {
+    private static final Logger logger = LogManager.getLogger(LanguageProfileBuilder.class);
+    public static final int DEFAULT_SIZE = 3000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: LanguageProfileBuilder <language> <output> [size] <corpus files...>");
+            System.exit(2);
+        }
+        String language = args[0];
+        Path output = Paths.get(args[1]);
+        int first = 2;
+        int size = DEFAULT_SIZE;
+        if (args[2].matches("\\d+")) {
+            size = Integer.parseInt(args[2]);
+            first = 3;
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        List<String> sources = new ArrayList<>();
+        long chars = 0;
+        for (int i = first; i < args.length; i++) {
+            Path corpus = Paths.get(args[i]);
+            String text = Files.readString(corpus, StandardCharsets.UTF_8);
+            LanguageDetector.countTrigrams(text, counts);
+            sources.add(corpus.getFileName().toString());
+            chars += text.length();
+        }
+
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Map.Entry<String, Integer>> kept = sorted.subList(0, Math.min(size, sorted.size()));
+
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("# Character trigram profile for '" + language + "': trigram (spaces as '_') and count\n");
+            writer.write("# Top " + kept.size() + " of " + counts.size() + " trigrams in " + chars
+                    + " characters of " + String.join(", ", sources) + "\n");
+            for (Map.Entry<String, Integer> entry : kept) {
+                writer.write(entry.getKey().replace(' ', '_') + "\t" + entry.getValue() + "\n");
+            }
+        }
+        logger.info("Wrote {} trigrams for '{}' to {}", kept.size(), language, output.toAbsolutePath());
+    }
+}
@@ -0,0 +1,481 @@
+package com.emailclassifier.tools;
+
+import com.emailclassifier.journal.JournalRecord;
+import com.emailclassifier.journal.VerdictJournal;
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.DatasetLoader;
+import com.emailclassifier.utils.MailReader;
+import com.emailclassifier.utils.MaildirReader;
+import com.emailclassifier.utils.SyntheticCorpusGenerator;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-loop load test of the in-process classifier: replays a corpus at a
+ * fixed arrival rate, whatever the classifier's speed, and reports latency
+ * percentiles, throughput, GC pauses and allocation per message.
+ *
+ * Each message has an intended start time on the arrival schedule, and its
+ * latency is measured from that time rather than from when a thread picked it
+ * up. When the classifier falls behind, the time messages spend waiting is
+ * counted, which a closed loop (send the next message when the previous one
+ * returns) would hide: the coordinated omission problem.
+ */
+public class LoadGenerator {
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+    private final EmailClassifier classifier;
+    private double rate = 100;
+    private double durationSeconds = 30;
+    private double warmupSeconds = 5;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param classifier Classifier with a loaded model
+     */
+    public LoadGenerator(EmailClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Sets the arrival rate, in messages per second.
+     */
+    public void setRate(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Sets the measured duration and the warm-up run at the same rate before it, in seconds.
+     */
+    public void setDuration(double durationSeconds, double warmupSeconds) {
+        if (durationSeconds <= 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("Invalid duration: " + durationSeconds + " s, warm-up: "
+                    + warmupSeconds + " s");
+        }
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    /**
+     * Sets the number of classification threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Waits for the classifier to be ready, then replays the messages in a
+     * loop on the arrival schedule, first for the warm-up, then for the
+     * measured duration.
+     *
+     * @param messages Corpus to replay
+     * @return Measurements of the measured part
+     * @throws InterruptedException If interrupted while waiting for readiness or the schedule
+     */
+    public Report run(List<String> messages) throws InterruptedException {
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("No messages to replay");
+        }
+        if (!classifier.isModelTrained()) {
+            throw new IllegalStateException("Model not trained or loaded.");
+        }
+        // Load only counts once the classifier would accept traffic
+        if (!classifier.isReady()) {
+            logger.info("Waiting for the classifier to warm up");
+            while (!classifier.awaitReady(Duration.ofSeconds(1))) {
+                logger.debug("Classifier not ready yet");
+            }
+        }
+        if (warmupSeconds > 0) {
+            logger.info("Warming up for {} s at {} msg/s", warmupSeconds, rate);
+            replay(messages, (long) Math.ceil(rate * warmupSeconds), null);
+        }
+        logger.info("Measuring for {} s at {} msg/s with {} threads", durationSeconds, rate, threads);
+        Report report = new Report((int) Math.ceil(rate * durationSeconds), rate);
+        replay(messages, report.latencies.length, report);
+        return report;
+    }
+
+    private void replay(List<String> messages, long count, Report report) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        GcMonitor gc = report == null ? null : new GcMonitor();
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        AtomicLong lastEnd = new AtomicLong(start);
+
+        try {
+            for (long i = 0; i < count; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                String message = messages.get((int) (i % messages.size()));
+                int slot = (int) i;
+                pool.execute(() -> {
+                    long allocated = threadBean.getCurrentThreadAllocatedBytes();
+                    long begin = System.nanoTime();
+                    try {
+                        classifier.classify(message);
+                    } catch (RuntimeException e) {
+                        if (report != null) {
+                            report.errors.increment();
+                        }
+                    }
+                    long end = System.nanoTime();
+                    lastEnd.accumulateAndGet(end, Math::max);
+                    if (report != null) {
+                        report.latencies[slot] = end - intended;
+                        report.serviceNanos.add(end - begin);
+                        report.allocatedBytes.add(threadBean.getCurrentThreadAllocatedBytes() - allocated);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            if (!pool.awaitTermination(10, TimeUnit.MINUTES)) {
+                pool.shutdownNow();
+            }
+            if (gc != null) {
+                gc.close();
+            }
+        }
+        if (report != null) {
+            report.elapsedNanos = lastEnd.get() - start;
+            report.gcCount = gc.count;
+            report.gcTotalMillis = gc.totalMillis;
+            report.gcMaxPauseMillis = gc.maxPauseMillis;
+        }
+    }
+
+    /**
+     * Latency and resource measurements of one run. Latencies are in
+     * milliseconds and include the time spent waiting behind earlier messages.
+     */
+    public static class Report {
+        private final long[] latencies;
+        private final double targetRate;
+        private final LongAdder serviceNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private long elapsedNanos;
+        private long gcCount;
+        private long gcTotalMillis;
+        private long gcMaxPauseMillis;
+        private boolean sorted;
+
+        Report(int count, double targetRate) {
+            this.latencies = new long[count];
+            this.targetRate = targetRate;
+        }
+
+        public int getCount() {
+            return latencies.length;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @param percentile Between 0 and 100, e.g. 99.9
+         */
+        public synchronized double getLatencyMillis(double percentile) {
+            if (!sorted) {
+                Arrays.sort(latencies);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6;
+        }
+
+        /**
+         * @return Mean time spent classifying, excluding waiting
+         */
+        public double getMeanServiceMillis() {
+            return serviceNanos.sum() / 1e6 / latencies.length;
+        }
+
+        /**
+         * @return Completed messages per second; below the target rate when the classifier cannot keep up
+         */
+        public double getThroughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        public double getTargetRate() {
+            return targetRate;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcTotalMillis() {
+            return gcTotalMillis;
+        }
+
+        public long getGcMaxPauseMillis() {
+            return gcMaxPauseMillis;
+        }
+
+        public double getAllocatedBytesPerMessage() {
+            return allocatedBytes.sum() / (double) latencies.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("messages=%d, errors=%d, throughput=%.1f/s (target %.1f/s)%n"
+                            + "latency p50=%.2f ms, p99=%.2f ms, p99.9=%.2f ms, max=%.2f ms, mean service=%.2f ms%n"
+                            + "gc: %d collections, %d ms total, max pause %d ms; allocation %.1f KB/message",
+                    getCount(), getErrors(), getThroughput(), targetRate,
+                    getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9), getLatencyMillis(100),
+                    getMeanServiceMillis(), gcCount, gcTotalMillis, gcMaxPauseMillis,
+                    getAllocatedBytesPerMessage() / 1024);
+        }
+    }
+
+    /**
+     * Service level objectives checked against a report. Unset limits are not checked.
+     */
+    public static class Slo {
+        private double p50Millis = Double.NaN;
+        private double p99Millis = Double.NaN;
+        private double p999Millis = Double.NaN;
+        private double maxGcPauseMillis = Double.NaN;
+        private double minThroughputRatio = Double.NaN;
+
+        public void setP50Millis(double p50Millis) {
+            this.p50Millis = p50Millis;
+        }
+
+        public void setP99Millis(double p99Millis) {
+            this.p99Millis = p99Millis;
+        }
+
+        public void setP999Millis(double p999Millis) {
+            this.p999Millis = p999Millis;
+        }
+
+        public void setMaxGcPauseMillis(double maxGcPauseMillis) {
+            this.maxGcPauseMillis = maxGcPauseMillis;
+        }
+
+        /**
+         * Sets the minimum throughput as a fraction of the target rate, e.g. 0.95.
+         */
+        public void setMinThroughputRatio(double minThroughputRatio) {
+            this.minThroughputRatio = minThroughputRatio;
+        }
+
+        /**
+         * @return One line per violated objective; empty if all are met
+         */
+        public List<String> violations(Report report) {
+            List<String> violations = new ArrayList<>();
+            check(violations, "p50 latency", report.getLatencyMillis(50), p50Millis, "ms");
+            check(violations, "p99 latency", report.getLatencyMillis(99), p99Millis, "ms");
+            check(violations, "p99.9 latency", report.getLatencyMillis(99.9), p999Millis, "ms");
+            check(violations, "max GC pause", report.getGcMaxPauseMillis(), maxGcPauseMillis, "ms");
+            if (!Double.isNaN(minThroughputRatio)
+                    && report.getThroughput() < minThroughputRatio * report.getTargetRate()) {
+                violations.add(String.format("throughput %.1f/s is below %.0f%% of the target %.1f/s",
+                        report.getThroughput(), minThroughputRatio * 100, report.getTargetRate()));
+            }
+            if (report.getErrors() > 0) {
+                violations.add(report.getErrors() + " messages failed to classify");
+            }
+            return violations;
+        }
+
+        private static void check(List<String> violations, String name, double actual, double limit, String unit) {
+            if (!Double.isNaN(limit) && actual > limit) {
+                violations.add(String.format("%s %.2f %s exceeds %.2f %s", name, actual, unit, limit, unit));
+            }
+        }
+    }
+
+    /**
+     * Collects GC pauses through the collectors' notifications, which give
+     * the duration of each collection rather than only a running total.
+     */
+    private static class GcMonitor implements NotificationListener {
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private long count;
+        private long totalMillis;
+        private long maxPauseMillis;
+
+        GcMonitor() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) bean;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long duration = info.getGcInfo().getDuration();
+            count++;
+            totalMillis += duration;
+            maxPauseMillis = Math.max(maxPauseMillis, duration);
+        }
+
+        synchronized void close() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    logger.debug("GC listener already removed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a corpus to replay: a directory of message files, an mbox file,
+     * a Maildir folder, a verdict journal directory, or "synthetic:&lt;count&gt;"
+     * for generated messages.
+     */
+    static List<String> loadCorpus(String source) throws IOException {
+        List<String> messages = new ArrayList<>();
+        if (source.startsWith("synthetic:")) {
+            int count = Integer.parseInt(source.substring("synthetic:".length()));
+            SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator(42);
+            for (int i = 0; i < count; i++) {
+                messages.add(generator.generate(i % 2 == 0 ? "spam" : "ham", i / 2));
+            }
+            return messages;
+        }
+
+        Path path = Paths.get(source);
+        DatasetLoader loader = new DatasetLoader();
+        if (Files.isRegularFile(path) || MaildirReader.isMaildir(path)) {
+            try (MailReader reader = loader.openMailbox(path)) {
+                reader.forEachRemaining(messages::add);
+            }
+        } else {
+            for (JournalRecord record : VerdictJournal.read(path)) {
+                messages.add(record.getBody());
+            }
+            if (messages.isEmpty()) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                        messages.add(loader.readMessage(file));
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Usage: LoadGenerator &lt;model&gt; &lt;corpus&gt; [--rate N] [--duration s] [--warmup s] [--threads N]
+     * [--slo-p50 ms] [--slo-p99 ms] [--slo-p999 ms] [--slo-gc-pause ms] [--slo-throughput ratio]
+     *
+     * Exits with status 1 if an objective is violated.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println("Usage: LoadGenerator <model> <corpus> [--rate N] [--duration s] [--warmup s] "
+                    + "[--threads N] [--slo-p50 ms] [--slo-p99 ms] [--slo-p999 ms] [--slo-gc-pause ms] "
+                    + "[--slo-throughput ratio]");
+            System.exit(2);
+        }
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.setWarmUpOnLoad(true);
+        classifier.loadModel(args[0]);
+        List<String> corpus = loadCorpus(args[1]);
+
+        LoadGenerator generator = new LoadGenerator(classifier);
+        Slo slo = new Slo();
+        double duration = 30;
+        double warmup = 5;
+        for (int i = 2; i < args.length; i += 2) {
+            double value = Double.parseDouble(args[i + 1]);
+            switch (args[i]) {
+                case "--rate":
+                    generator.setRate(value);
+                    break;
+                case "--duration":
+                    duration = value;
+                    break;
+                case "--warmup":
+                    warmup = value;
+                    break;
+                case "--threads":
+                    generator.setThreads((int) value);
+                    break;
+                case "--slo-p50":
+                    slo.setP50Millis(value);
+                    break;
+                case "--slo-p99":
+                    slo.setP99Millis(value);
+                    break;
+                case "--slo-p999":
+                    slo.setP999Millis(value);
+                    break;
+                case "--slo-gc-pause":
+                    slo.setMaxGcPauseMillis(value);
+                    break;
+                case "--slo-throughput":
+                    slo.setMinThroughputRatio(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        generator.setDuration(duration, warmup);
+
+        logger.info("Replaying {} messages from {}", corpus.size(), args[1]);
+        Report report = generator.run(corpus);
+        System.out.println(report);
+
+        List<String> violations = slo.violations(report);
+        for (String violation : violations) {
+            System.out.println("SLO VIOLATED: " + violation);
+        }
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+}
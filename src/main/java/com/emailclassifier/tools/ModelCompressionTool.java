@@ -0,0 +1,114 @@
+package com.emailclassifier.tools;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.model.ModelCompressor;
+import com.emailclassifier.utils.DatasetLoader;
+import com.emailclassifier.utils.ModelIO;
+import opennlp.tools.doccat.DoccatModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prunes and quantizes a saved model, then compares the original and the
+ * compressed model: accuracy on a spam/ham corpus, file size, load time and
+ * classify latency.
+ *
+ * Usage: ModelCompressionTool &lt;model&gt; &lt;output&gt; &lt;spamDir&gt; &lt;hamDir&gt; [pruneThreshold] [bits]
+ */
+public class ModelCompressionTool {
+    private static final Logger logger = LogManager.getLogger(ModelCompressionTool.class);
+    private static final int LATENCY_SAMPLES = 2000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: ModelCompressionTool <model> <output> <spamDir> <hamDir> "
+                    + "[pruneThreshold] [bits]");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        double threshold = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+        int bits = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+
+        Map<String, String[]> dataset = new DatasetLoader().loadFromDirectories(new File(args[2]), new File(args[3]));
+
+        Result original = measure("original", input, dataset);
+
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.loadModel(input.toString());
+        DoccatModel compressed = new ModelCompressor(threshold, bits).compress(classifier.getModel());
+        ModelIO.saveModel(compressed, output.toString());
+        logger.info("Compressed model written to {}", output.toAbsolutePath());
+
+        Result candidate = measure("pruned < " + threshold + ", " + bits + "-bit", output, dataset);
+
+        System.out.printf("%-30s %10s %12s %10s %12s%n", "model", "accuracy", "file bytes", "load ms", "classify us");
+        original.print();
+        candidate.print();
+    }
+
+    private static Result measure(String name, Path modelFile, Map<String, String[]> dataset) throws IOException {
+        Result result = new Result(name);
+        result.fileBytes = Files.size(modelFile);
+
+        EmailClassifier classifier = new EmailClassifier();
+        long start = System.nanoTime();
+        classifier.loadModel(modelFile.toString());
+        result.loadMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        int correct = 0;
+        int total = 0;
+        List<String> latencySample = new ArrayList<>();
+        for (Map.Entry<String, String[]> entry : dataset.entrySet()) {
+            for (String email : entry.getValue()) {
+                Map<String, Double> scores = classifier.classify(email);
+                String predicted = scores.entrySet().stream()
+                        .max(Map.Entry.comparingByValue())
+                        .map(Map.Entry::getKey)
+                        .orElse(null);
+                if (entry.getKey().equals(predicted)) {
+                    correct++;
+                }
+                total++;
+                if (latencySample.size() < LATENCY_SAMPLES) {
+                    latencySample.add(email);
+                }
+            }
+        }
+        result.accuracy = total == 0 ? 0 : (double) correct / total;
+
+        // The accuracy pass warmed up the JIT
+        start = System.nanoTime();
+        for (String email : latencySample) {
+            classifier.classify(email);
+        }
+        result.classifyMicros = (System.nanoTime() - start) / 1000.0 / Math.max(1, latencySample.size());
+        return result;
+    }
+
+    private static class Result {
+        final String name;
+        double accuracy;
+        long fileBytes;
+        double loadMillis;
+        double classifyMicros;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        void print() {
+            System.out.printf("%-30s %9.2f%% %12d %10.1f %12.1f%n",
+                    name, accuracy * 100, fileBytes, loadMillis, classifyMicros);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.emailclassifier.utils;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Decides the category of an archive entry from its path or the archive name.
+ */
+@FunctionalInterface
+public interface ArchiveLabeler {
+
+    /**
+     * Labels entries by the first path component naming a category, that is
+     * "spam" or "ham", optionally as "easy_ham" or "hard_ham" and with a
+     * numeric suffix such as "spam_2". Entries with no such component are
+     * labeled by the archive file name, whose last "_" or "-" separated part
+     * must name a category the same way (e.g. "20030228_spam_2.tar.gz").
+     * Unlabeled entries are skipped.
+     */
+    ArchiveLabeler DEFAULT = (archive, entryName) -> {
+        for (String component : entryName.split("/")) {
+            String label = labelOf(component);
+            if (label != null) {
+                return label;
+            }
+        }
+        String name = archive.getFileName().toString().toLowerCase(Locale.ROOT)
+                .replaceFirst("\\.(zip|tar|tar\\.gz|tgz)$", "")
+                .replaceFirst("_\\d+$", "");
+        return labelOf(name.substring(Math.max(name.lastIndexOf('_'), name.lastIndexOf('-')) + 1));
+    };
+
+    /**
+     * @param archive   Archive containing the entry
+     * @param entryName Path of the entry inside the archive
+     * @return The category, or null to skip the entry
+     */
+    String label(Path archive, String entryName);
+
+    private static String labelOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT).replaceFirst("_\\d+$", "");
+        if (lower.startsWith("easy_") || lower.startsWith("hard_")) {
+            lower = lower.substring("easy_".length());
+        }
+        return lower.equals("spam") || lower.equals("ham") ? lower : null;
+    }
+}
@@ -0,0 +1,290 @@
+package com.emailclassifier.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the files of a .zip, .tar, .tar.gz or .tgz archive as messages,
+ * without unpacking them to disk. Each message is read fully into memory,
+ * one entry at a time; the entry name is available through getCurrentEntryName.
+ * Entries rejected by the name filter are skipped without being read.
+ *
+ * Tar archives may use ustar prefixes, GNU long names or pax extended
+ * headers for the path and size of an entry.
+ */
+public class ArchiveReader extends MailReader {
+    private static final Logger logger = LogManager.getLogger(ArchiveReader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TAR_BLOCK = 512;
+
+    private final Path archive;
+    private final InputStream in;
+    private final ZipInputStream zip;
+    private final Predicate<String> entryFilter;
+    private String currentEntryName;
+    private String pendingLongName;
+    private long pendingSize = -1;
+    private int entryCount;
+    private int skippedCount;
+
+    public ArchiveReader(Path archive) throws IOException {
+        this(archive, entryName -> true);
+    }
+
+    /**
+     * @param archive     Archive to read
+     * @param entryFilter Accepts the paths of the entries to read, others are skipped unread
+     */
+    public ArchiveReader(Path archive, Predicate<String> entryFilter) throws IOException {
+        this.archive = archive;
+        this.entryFilter = entryFilter;
+        String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+        InputStream raw = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE);
+
+        if (name.endsWith(".zip")) {
+            this.zip = new ZipInputStream(raw, StandardCharsets.UTF_8);
+            this.in = zip;
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            this.zip = null;
+            this.in = new GZIPInputStream(raw, BUFFER_SIZE);
+        } else if (name.endsWith(".tar")) {
+            this.zip = null;
+            this.in = raw;
+        } else {
+            raw.close();
+            throw new IOException("Unsupported archive format: " + archive.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Checks whether a file name has a supported archive extension.
+     */
+    public static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar.gz") || name.endsWith(".tgz") || name.endsWith(".tar");
+    }
+
+    public Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return Path inside the archive of the message last returned by next()
+     */
+    public String getCurrentEntryName() {
+        return currentEntryName;
+    }
+
+    /**
+     * @return Number of files skipped so far because the entry filter rejected their path
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    protected String readNext() throws IOException {
+        byte[] content = zip != null ? readNextZipEntry() : readNextTarEntry();
+        if (content == null) {
+            logger.debug("Read {} entries from {}", entryCount, archive);
+            return null;
+        }
+        entryCount++;
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readNextZipEntry() throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (!entryFilter.test(entry.getName())) {
+                skippedCount++;
+                continue;
+            }
+            currentEntryName = entry.getName();
+            return zip.readAllBytes();
+        }
+        return null;
+    }
+
+    private byte[] readNextTarEntry() throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        while (true) {
+            if (!readBlock(header)) {
+                return null;
+            }
+            if (isZeroBlock(header)) {
+                // End-of-archive marker
+                return null;
+            }
+
+            long size = parseOctal(header, 124, 12);
+            char type = (char) header[156];
+
+            if (type == 'L') {
+                // GNU long name: the data holds the name of the following entry
+                byte[] data = readPadded(size);
+                pendingLongName = cString(data, 0, data.length);
+                continue;
+            }
+            if (type == 'x') {
+                // Pax extended header: overrides the path and size of the following entry
+                readPaxHeader(readPadded(size));
+                continue;
+            }
+
+            String name = pendingLongName != null ? pendingLongName : tarName(header);
+            if (pendingSize >= 0) {
+                size = pendingSize;
+            }
+            pendingLongName = null;
+            pendingSize = -1;
+
+            if (type != '0' && type != '\0' && type != '7') {
+                // Directories, links, global pax headers and other metadata entries
+                skipPadded(size);
+                continue;
+            }
+            if (!entryFilter.test(name)) {
+                skippedCount++;
+                skipPadded(size);
+                continue;
+            }
+            currentEntryName = name;
+            return readPadded(size);
+        }
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, block.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read < block.length) {
+            throw new EOFException("Truncated tar archive: " + archive);
+        }
+        return true;
+    }
+
+    private byte[] readPadded(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - TAR_BLOCK) {
+            throw new IOException("Tar entry too large in " + archive + ": " + size + " bytes");
+        }
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Truncated tar archive: " + archive);
+        }
+        long padding = (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+        in.skipNBytes(padding);
+        return data;
+    }
+
+    private void skipPadded(long size) throws IOException {
+        try {
+            in.skipNBytes(size + (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        } catch (EOFException e) {
+            throw new EOFException("Truncated tar archive: " + archive);
+        }
+    }
+
+    /**
+     * Reads the "length key=value\n" records of a pax extended header.
+     */
+    private void readPaxHeader(byte[] data) throws IOException {
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed pax header in " + archive, e);
+            }
+            if (length <= space - position || position + length > data.length) {
+                throw new IOException("Malformed pax header in " + archive);
+            }
+            // The record ends with a newline, excluded from the value
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                String key = record.substring(0, equals);
+                String value = record.substring(equals + 1);
+                if (key.equals("path")) {
+                    pendingLongName = value;
+                } else if (key.equals("size")) {
+                    try {
+                        pendingSize = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed pax size in " + archive + ": " + value, e);
+                    }
+                }
+            }
+            position += length;
+        }
+    }
+
+    private static String tarName(byte[] header) {
+        String name = cString(header, 0, 100);
+        // ustar splits long paths into a prefix and a name
+        if (header[257] == 'u' && header[258] == 's' && header[259] == 't') {
+            String prefix = cString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        while (i < end && bytes[i] == ' ') {
+            i++;
+        }
+        long value = 0;
+        for (; i < end && bytes[i] >= '0' && bytes[i] <= '7'; i++) {
+            value = value * 8 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
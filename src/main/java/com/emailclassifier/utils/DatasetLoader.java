@@ -5,12 +5,26 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Utility class for loading email datasets from directories.
@@ -19,6 +33,52 @@ import java.util.Map;
 public class DatasetLoader {
     private static final Logger logger = LogManager.getLogger(DatasetLoader.class);
 
+    /** Default cap on the bytes read from a single email file. */
+    public static final int DEFAULT_MAX_MESSAGE_BYTES = 10 * 1024 * 1024;
+
+    private boolean recursive;
+    private int readConcurrency = 1;
+    private int maxMessageBytes = DEFAULT_MAX_MESSAGE_BYTES;
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Sets whether email files in subdirectories are loaded too.
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    public int getReadConcurrency() {
+        return readConcurrency;
+    }
+
+    /**
+     * Sets how many email files are read in parallel.
+     */
+    public void setReadConcurrency(int readConcurrency) {
+        if (readConcurrency < 1) {
+            throw new IllegalArgumentException("Read concurrency must be positive: " + readConcurrency);
+        }
+        this.readConcurrency = readConcurrency;
+    }
+
+    public int getMaxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes read per email file; larger files are truncated.
+     */
+    public void setMaxMessageBytes(int maxMessageBytes) {
+        if (maxMessageBytes < 1) {
+            throw new IllegalArgumentException("Max message bytes must be positive: " + maxMessageBytes);
+        }
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
     /**
      * Loads an email dataset from spam and ham directories.
      *
@@ -43,7 +103,10 @@ public class DatasetLoader {
     }
 
     /**
-     * Loads all email contents from a given directory.
+     * Loads all email contents from a given directory, reading up to
+     * readConcurrency files at once. Messages are returned in listing order
+     * whatever the concurrency, so that training sees the same samples in the
+     * same order on every run.
      *
      * @param directory Directory containing email files
      * @return Array of email contents
@@ -54,30 +117,103 @@ public class DatasetLoader {
             throw new IOException("Invalid directory: " + directory.getAbsolutePath());
         }
 
-        List<String> emails = new ArrayList<>();
-        File[] files = directory.listFiles();
+        // Keyed by listing position, since concurrent reads finish in any order
+        Map<Integer, String> emails = new ConcurrentHashMap<>();
+        int listed = 0;
+        ExecutorService executor = readConcurrency > 1 ? Executors.newFixedThreadPool(readConcurrency) : null;
+        // Bounds the number of queued reads so listing never runs far ahead of reading
+        int maxInFlight = readConcurrency * 4;
+        Semaphore inFlight = new Semaphore(maxInFlight);
 
-        if (files == null || files.length == 0) {
+        try (Stream<Path> files = listEmailFiles(directory.toPath())) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                int position = listed++;
+                if (executor == null) {
+                    readInto(file, position, emails);
+                    continue;
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        readInto(file, position, emails);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(maxInFlight);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading directory: " + directory.getAbsolutePath(), e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        if (emails.isEmpty()) {
             logger.warn("No files found in directory: {}", directory.getAbsolutePath());
-            return new String[0];
         }
+        // Files that failed to read leave gaps
+        List<String> ordered = new ArrayList<>(emails.size());
+        for (int position = 0; position < listed; position++) {
+            String email = emails.get(position);
+            if (email != null) {
+                ordered.add(email);
+            }
+        }
+        return ordered.toArray(new String[0]);
+    }
+
+    private void readInto(Path file, int position, Map<Integer, String> emails) {
+        try {
+            emails.put(position, readMessage(file));
+        } catch (IOException e) {
+            logger.warn("Failed to read file: {}", file.toAbsolutePath(), e);
+        }
+    }
 
-        for (File file : files) {
-            if (file.isFile()) {
-                try {
-                    String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-                    emails.add(content);
-                } catch (IOException e) {
-                    logger.warn("Failed to read file: {}", file.getAbsolutePath(), e);
-                }
+    /**
+     * Reads an email file, truncating it to maxMessageBytes.
+     * Malformed UTF-8 sequences are replaced rather than rejected.
+     *
+     * @param file Email file
+     * @return The message text
+     * @throws IOException If the file cannot be read
+     */
+    public String readMessage(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int limit = (int) Math.min(size, maxMessageBytes);
+            if (size > maxMessageBytes) {
+                logger.debug("Truncating {} from {} to {} bytes", file, size, limit);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(limit);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the limit or end of file
             }
+            buffer.flip();
+            return StandardCharsets.UTF_8.decode(buffer).toString();
         }
+    }
 
-        return emails.toArray(new String[0]);
+    /**
+     * Lazily lists the regular files of a directory, recursing when enabled.
+     * The returned stream must be closed.
+     */
+    public Stream<Path> listEmailFiles(Path directory) throws IOException {
+        Stream<Path> entries = recursive ? Files.walk(directory) : Files.list(directory);
+        return entries.filter(Files::isRegularFile);
     }
 
     /**
      * Checks whether a directory contains at least a minimum number of email samples.
+     * Listing stops as soon as minSamples files have been seen.
      *
      * @param directory  Directory to check
      * @param minSamples Minimum required number of email files
@@ -88,7 +224,96 @@ public class DatasetLoader {
             return false;
         }
 
-        File[] files = directory.listFiles();
-        return files != null && files.length >= minSamples;
+        try (Stream<Path> files = listEmailFiles(directory.toPath())) {
+            return files.limit(Math.max(minSamples, 0)).count() >= minSamples;
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to list directory: {}", directory.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Opens a mailbox for streaming, either an mbox file or a Maildir folder.
+     * Messages are read one at a time; the caller must close the reader.
+     *
+     * @param mailbox Path to an mbox file or a Maildir directory
+     * @return A reader yielding one raw message per iteration
+     * @throws IOException If the path is neither an mbox file nor a Maildir folder
+     */
+    public MailReader openMailbox(Path mailbox) throws IOException {
+        if (Files.isRegularFile(mailbox)) {
+            logger.info("Streaming mbox file: {}", mailbox.toAbsolutePath());
+            return new MboxReader(mailbox);
+        }
+        if (Files.isDirectory(mailbox) && MaildirReader.isMaildir(mailbox)) {
+            logger.info("Streaming Maildir folder: {}", mailbox.toAbsolutePath());
+            return new MaildirReader(mailbox);
+        }
+        throw new IOException("Not an mbox file or Maildir folder: " + mailbox.toAbsolutePath());
+    }
+
+    /**
+     * Streams the entries of zip and tar(.gz) archives into a sink, decompressing
+     * up to {@code parallelism} archives at once. The sink is called concurrently
+     * from the reading threads and must be thread-safe.
+     *
+     * @param archives    Archives to read
+     * @param labeler     Decides each entry's category; entries labeled null are skipped
+     * @param parallelism Number of archives decompressed in parallel
+     * @param sink        Receives (category, message) pairs
+     * @return Number of messages read per category
+     * @throws IOException If an archive cannot be read
+     */
+    public Map<String, Integer> streamArchives(List<Path> archives, ArchiveLabeler labeler, int parallelism,
+                                               BiConsumer<String, String> sink) throws IOException {
+        logger.info("Streaming {} archives with parallelism {}", archives.size(), parallelism);
+
+        Map<String, Integer> counts = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, archives.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path archive : archives) {
+                futures.add(executor.submit(() -> {
+                    readArchive(archive, labeler, sink, counts);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading archives", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read archives: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logger.info("Read archived messages per category: {}", counts);
+        return counts;
+    }
+
+    private void readArchive(Path archive, ArchiveLabeler labeler, BiConsumer<String, String> sink,
+                             Map<String, Integer> counts) throws IOException {
+        int skipped;
+        // Unlabeled entries are skipped before their content is read
+        try (ArchiveReader reader = new ArchiveReader(archive, name -> labeler.label(archive, name) != null)) {
+            while (reader.hasNext()) {
+                String message = reader.next();
+                String label = labeler.label(archive, reader.getCurrentEntryName());
+                sink.accept(label, message);
+                counts.merge(label, 1, Integer::sum);
+            }
+            skipped = reader.getSkippedCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unlabeled entries in {}", skipped, archive);
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.emailclassifier.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Base class for readers that yield email messages one at a time from a
+ * mailbox, without loading the whole mailbox in memory.
+ * I/O errors while iterating are rethrown as UncheckedIOException.
+ */
+public abstract class MailReader implements Iterator<String>, Closeable {
+    private String nextMessage;
+    private boolean finished;
+
+    /**
+     * Reads the next message from the underlying mailbox.
+     *
+     * @return The raw message text, or null when the mailbox is exhausted
+     * @throws IOException If reading fails
+     */
+    protected abstract String readNext() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (nextMessage == null && !finished) {
+            try {
+                nextMessage = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = nextMessage == null;
+        }
+        return nextMessage != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String message = nextMessage;
+        nextMessage = null;
+        return message;
+    }
+
+    /**
+     * Returns the remaining messages as a sequential stream that closes this reader.
+     */
+    public Stream<String> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+}
@@ -0,0 +1,89 @@
+package com.emailclassifier.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Streams the messages of a Maildir folder from its "cur" and "new"
+ * subdirectories, one file at a time. "tmp" is skipped because it only holds
+ * messages still being delivered.
+ */
+public class MaildirReader extends MailReader {
+    private static final Logger logger = LogManager.getLogger(MaildirReader.class);
+    private static final String[] SUBDIRECTORIES = {"cur", "new"};
+
+    private final Path maildir;
+    private int subdirectoryIndex;
+    private DirectoryStream<Path> currentStream;
+    private Iterator<Path> currentEntries;
+
+    public MaildirReader(Path maildir) throws IOException {
+        if (!isMaildir(maildir)) {
+            throw new IOException("Not a Maildir folder: " + maildir.toAbsolutePath());
+        }
+        this.maildir = maildir;
+    }
+
+    /**
+     * Checks whether a directory has the Maildir layout.
+     */
+    public static boolean isMaildir(Path directory) {
+        return Files.isDirectory(directory.resolve("cur")) || Files.isDirectory(directory.resolve("new"));
+    }
+
+    @Override
+    protected String readNext() throws IOException {
+        while (true) {
+            if (currentEntries != null && currentEntries.hasNext()) {
+                Path file = currentEntries.next();
+                if (file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                try {
+                    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    // The MDA may move cur/new entries concurrently
+                    logger.warn("Failed to read file: {}", file, e);
+                    continue;
+                }
+            }
+            if (!openNextSubdirectory()) {
+                return null;
+            }
+        }
+    }
+
+    private boolean openNextSubdirectory() throws IOException {
+        closeCurrentStream();
+        while (subdirectoryIndex < SUBDIRECTORIES.length) {
+            Path subdirectory = maildir.resolve(SUBDIRECTORIES[subdirectoryIndex++]);
+            if (Files.isDirectory(subdirectory)) {
+                currentStream = Files.newDirectoryStream(subdirectory);
+                currentEntries = currentStream.iterator();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        subdirectoryIndex = SUBDIRECTORIES.length;
+        closeCurrentStream();
+    }
+
+    private void closeCurrentStream() throws IOException {
+        if (currentStream != null) {
+            currentStream.close();
+            currentStream = null;
+            currentEntries = null;
+        }
+    }
+}
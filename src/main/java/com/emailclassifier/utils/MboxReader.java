@@ -0,0 +1,83 @@
+package com.emailclassifier.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams the messages of an mbox file. Messages are separated by "From "
+ * lines at the start of the file or after a blank line; ">From " escapes
+ * (mboxrd) are undone. Only one message is held in memory at a time.
+ */
+public class MboxReader extends MailReader {
+    private static final Logger logger = LogManager.getLogger(MboxReader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SEPARATOR = "From ";
+
+    private final Path path;
+    private final BufferedReader reader;
+    private String pendingLine;
+    private int messageCount;
+
+    public MboxReader(Path path) throws IOException {
+        this.path = path;
+        // InputStreamReader replaces malformed bytes instead of failing on legacy encodings
+        this.reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.pendingLine = reader.readLine();
+    }
+
+    @Override
+    protected String readNext() throws IOException {
+        // Skip the separator of the message we are about to read
+        if (pendingLine != null && pendingLine.startsWith(SEPARATOR)) {
+            pendingLine = reader.readLine();
+        }
+        if (pendingLine == null) {
+            logger.debug("Read {} messages from {}", messageCount, path);
+            return null;
+        }
+
+        StringBuilder message = new StringBuilder();
+        String line = pendingLine;
+        boolean previousBlank = false;
+        while (line != null) {
+            if (previousBlank && line.startsWith(SEPARATOR)) {
+                break;
+            }
+            message.append(unescape(line)).append('\n');
+            previousBlank = line.isEmpty();
+            line = reader.readLine();
+        }
+        pendingLine = line;
+        messageCount++;
+        return message.toString();
+    }
+
+    /**
+     * Removes one quoting level from ">From " lines.
+     */
+    private static String unescape(String line) {
+        if (line.startsWith(">")) {
+            int i = 0;
+            while (i < line.length() && line.charAt(i) == '>') {
+                i++;
+            }
+            if (line.startsWith(SEPARATOR, i)) {
+                return line.substring(1);
+            }
+        }
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -1,27 +1,76 @@
 package com.emailclassifier.utils;
 
+import opennlp.tools.doccat.DoccatFactory;
 import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.model.ArtifactSerializer;
+import opennlp.tools.util.model.ModelUtil;
+import opennlp.tools.util.model.SerializableArtifact;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Utilitaire pour sauvegarder et charger des modèles OpenNLP.
  * Correction spéciale pour l'erreur DirectoryNotEmptyException.
+ *
+ * Le modèle est sérialisé une seule fois en mémoire, au niveau de compression
+ * choisi, puis écrit dans un fichier temporaire du répertoire de destination,
+ * synchronisé sur disque et renommé atomiquement : un arrêt en pleine écriture
+ * laisse l'ancien modèle intact. Une somme de contrôle CRC32C des entrées est
+ * placée dans le commentaire de l'archive, que OpenNLP ignore ; elle est
+ * vérifiée au chargement sans relecture du fichier.
  */
 public class ModelIO {
     private static final Logger logger = LogManager.getLogger(ModelIO.class);
-    
+
+    /** Niveau de compression par défaut : 3% plus gros qu'au niveau maximal, deux fois plus rapide. */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    private static final String DEFAULT_FILE_NAME = "email_classifier_model.bin";
+    private static final String MANIFEST_ENTRY = "manifest.properties";
+    private static final String DOCCAT_MODEL_ENTRY = "doccat.model";
+    private static final String CHECKSUM_PREFIX = "crc32c=";
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Sauvegarde un modèle DoccatModel dans un fichier.
      *
@@ -30,117 +79,115 @@ public class ModelIO {
      * @throws IOException Si l'écriture échoue
      */
     public static void saveModel(DoccatModel model, String modelPath) throws IOException {
+        saveModel(model, modelPath, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Sauvegarde un modèle DoccatModel dans un fichier avec un niveau de compression donné.
+     *
+     * @param model Le modèle à sauvegarder
+     * @param modelPath Chemin où le modèle devrait être sauvegardé
+     * @param compressionLevel Niveau de compression, de 0 (aucune) à 9 (maximale), ou -1 pour le défaut de zlib
+     * @throws IOException Si l'écriture échoue
+     */
+    public static void saveModel(DoccatModel model, String modelPath, int compressionLevel) throws IOException {
+        save(model, modelPath, compressionLevel);
+    }
+
+    /**
+     * Sauvegarde un modèle en arrière-plan, sur un thread dédié qui traite les
+     * sauvegardes dans l'ordre. Le modèle ne doit plus être modifié pendant la
+     * sauvegarde ; le thread étant un démon, attendre le résultat avant de
+     * quitter l'application.
+     *
+     * @param model Le modèle à sauvegarder
+     * @param modelPath Chemin où le modèle devrait être sauvegardé
+     * @return Le chemin du fichier écrit, ou l'erreur de sauvegarde
+     */
+    public static CompletableFuture<Path> saveModelAsync(DoccatModel model, String modelPath) {
+        return saveModelAsync(model, modelPath, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Sauvegarde un modèle en arrière-plan avec un niveau de compression donné.
+     *
+     * @param model Le modèle à sauvegarder
+     * @param modelPath Chemin où le modèle devrait être sauvegardé
+     * @param compressionLevel Niveau de compression, de 0 à 9, ou -1 pour le défaut de zlib
+     * @return Le chemin du fichier écrit, ou l'erreur de sauvegarde
+     */
+    public static CompletableFuture<Path> saveModelAsync(DoccatModel model, String modelPath, int compressionLevel) {
+        checkCompressionLevel(compressionLevel);
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        saver.execute(() -> {
+            try {
+                future.complete(save(model, modelPath, compressionLevel));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static Path save(DoccatModel model, String modelPath, int compressionLevel) throws IOException {
         logger.info("Sauvegarde du modèle dans {}", modelPath);
-        
+        checkCompressionLevel(compressionLevel);
+
         // Vérifier si le modèle est valide
         if (model == null) {
             throw new IOException("Le modèle est null, impossible de sauvegarder");
         }
-        
-        // Vérifier si le chemin existe et s'il s'agit d'un répertoire
-        File destination = new File(modelPath);
-        if (destination.exists() && destination.isDirectory()) {
-            // Le chemin spécifié est un répertoire, nous devons ajouter un nom de fichier
-            modelPath = modelPath + File.separator + "email_classifier_model.bin";
-            destination = new File(modelPath);
-            logger.info("Le chemin spécifié est un répertoire, utilisation du chemin modifié: {}", modelPath);
-        }
-        
-        // Créer le dossier parent si nécessaire
-        File parentDir = destination.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            boolean created = parentDir.mkdirs();
-            if (!created) {
-                logger.warn("Impossible de créer les répertoires parents pour {}", modelPath);
-            }
-        }
-        
-        // Écrire directement dans le fichier de destination
-        try (OutputStream modelOut = new BufferedOutputStream(new FileOutputStream(destination))) {
-            model.serialize(modelOut);
-            logger.info("Modèle sauvegardé avec succès dans {}", modelPath);
-        } catch (IOException e) {
-            logger.error("Échec de sauvegarde du modèle dans {} - {}", modelPath, e.getMessage());
-            
-            // Vérifier les permissions
-            if (destination.exists() && !destination.canWrite()) {
-                throw new IOException("Pas de permission d'écriture pour le fichier: " + modelPath, e);
-            }
-            
-            // Vérifier si le dossier parent est accessible en écriture
-            if (parentDir != null && !parentDir.canWrite()) {
-                throw new IOException("Pas de permission d'écriture pour le répertoire: " + parentDir.getAbsolutePath(), e);
-            }
-            
-            throw e;
-        }
+
+        byte[] serialized = serialize(model, compressionLevel);
+        Path destination = resolveDestination(modelPath);
+        write(serialized, destination);
+        return destination;
     }
-    
+
     /**
      * Tente de sauvegarder un modèle à différents emplacements en cas d'échec.
+     * Le modèle n'est sérialisé qu'une fois, seule l'écriture est retentée.
+     *
      * @param model Le modèle à sauvegarder
      * @param preferredPath Chemin préféré pour la sauvegarde
      * @return Le chemin où le modèle a été sauvegardé
      * @throws IOException Si la sauvegarde échoue à tous les emplacements
      */
     public static String saveModelWithFallback(DoccatModel model, String preferredPath) throws IOException {
+        if (model == null) {
+            throw new IOException("Le modèle est null, impossible de sauvegarder");
+        }
+        byte[] serialized = serialize(model, DEFAULT_COMPRESSION_LEVEL);
+
         // Générer un nom de fichier unique basé sur la date/heure
         String timestamp = String.valueOf(System.currentTimeMillis());
         String baseFileName = "email_classifier_model_" + timestamp + ".bin";
-        
-        // Essayer le chemin préféré en premier
-        try {
-            // Si le chemin préféré est un répertoire, nous utiliserons le chemin tel quel
-            // La méthode saveModel s'occupera d'ajouter un nom de fichier si nécessaire
-            saveModel(model, preferredPath);
-            return preferredPath;
-        } catch (IOException e) {
-            logger.warn("Échec de sauvegarde à l'emplacement préféré: " + e.getMessage() + 
-                      ". Tentative dans le dossier utilisateur");
-            
-            // Essayer le dossier documents de l'utilisateur
+
+        // Chemin préféré, puis dossier Documents (ou dossier utilisateur), dossier de l'application et dossier temporaire
+        String userHome = System.getProperty("user.home");
+        File documentsDir = new File(userHome, "Documents");
+        String homeDir = documentsDir.isDirectory() ? documentsDir.getPath() : userHome;
+        List<String> candidates = new ArrayList<>();
+        candidates.add(preferredPath);
+        candidates.add(homeDir + File.separator + baseFileName);
+        candidates.add("." + File.separator + baseFileName);
+        candidates.add(System.getProperty("java.io.tmpdir") + File.separator + baseFileName);
+
+        IOException lastError = null;
+        for (String candidate : candidates) {
             try {
-                String userHome = System.getProperty("user.home");
-                String documentsPath = userHome + File.separator + "Documents";
-                File documentsDir = new File(documentsPath);
-                
-                // Si Documents n'existe pas, utiliser le dossier utilisateur directement
-                if (!documentsDir.exists() || !documentsDir.isDirectory()) {
-                    documentsPath = userHome;
-                }
-                
-                String homePath = documentsPath + File.separator + baseFileName;
-                saveModel(model, homePath);
-                return homePath;
-            } catch (IOException e2) {
-                logger.warn("Échec de sauvegarde dans le dossier utilisateur: " + e2.getMessage() + 
-                          ". Tentative dans le dossier de l'application");
-                
-                // Essayer le dossier courant de l'application
-                try {
-                    String currentDirPath = "." + File.separator + baseFileName;
-                    saveModel(model, currentDirPath);
-                    return currentDirPath;
-                } catch (IOException e3) {
-                    logger.warn("Échec de sauvegarde dans le dossier de l'application: " + e3.getMessage() + 
-                              ". Tentative dans le dossier temporaire");
-                    
-                    // Dernière tentative: dossier temporaire
-                    try {
-                        String tempDir = System.getProperty("java.io.tmpdir");
-                        String tempPath = tempDir + File.separator + baseFileName;
-                        saveModel(model, tempPath);
-                        return tempPath;
-                    } catch (IOException e4) {
-                        logger.error("Échec de toutes les tentatives de sauvegarde", e4);
-                        throw new IOException("Impossible de sauvegarder le modèle à aucun emplacement. " +
-                                           "Dernière erreur: " + e4.getMessage(), e4);
-                    }
-                }
+                write(serialized, resolveDestination(candidate));
+                return candidate;
+            } catch (IOException e) {
+                logger.warn("Échec de sauvegarde dans {}: {}", candidate, e.getMessage());
+                lastError = e;
             }
         }
+        logger.error("Échec de toutes les tentatives de sauvegarde", lastError);
+        throw new IOException("Impossible de sauvegarder le modèle à aucun emplacement. " +
+                "Dernière erreur: " + lastError.getMessage(), lastError);
     }
-    
+
     /**
      * Vérifie si un fichier modèle existe.
      *
@@ -151,19 +198,21 @@ public class ModelIO {
         File file = new File(modelPath);
         return file.exists() && file.isFile();
     }
-    
+
     /**
-     * Charge un modèle DoccatModel à partir d'un fichier.
+     * Charge un modèle DoccatModel à partir d'un fichier. Le fichier est lu
+     * d'un bloc, sa somme de contrôle vérifiée s'il en porte une, puis le
+     * modèle est décodé depuis la mémoire.
      *
      * @param modelPath Chemin du fichier modèle
      * @return Le modèle chargé
-     * @throws IOException Si le chargement échoue
+     * @throws IOException Si le chargement échoue ou si le fichier est corrompu
      */
     public static DoccatModel loadModel(String modelPath) throws IOException {
         logger.info("Chargement du modèle depuis {}", modelPath);
-        
+
         File modelFile = new File(modelPath);
-        
+
         // Vérifier si le chemin est un répertoire
         if (modelFile.exists() && modelFile.isDirectory()) {
             // Chercher un fichier .bin dans ce répertoire
@@ -176,25 +225,287 @@ public class ModelIO {
                 throw new IOException("Le chemin spécifié est un répertoire et ne contient pas de fichier modèle .bin");
             }
         }
-        
+
         // Vérifier si le fichier existe
         if (!modelFile.exists()) {
             throw new IOException("Le fichier modèle n'existe pas: " + modelPath);
         }
-        
+
         // Vérifier les permissions de lecture
         if (!modelFile.canRead()) {
             throw new IOException("Pas de permission de lecture pour le fichier: " + modelPath);
         }
-        
+
+        long start = System.nanoTime();
+        byte[] content = Files.readAllBytes(modelFile.toPath());
+        long read = System.nanoTime();
+        boolean verified = verifyChecksum(content, modelFile);
+        long checked = System.nanoTime();
+
         // Charger le modèle
-        try (InputStream modelIn = Files.newInputStream(modelFile.toPath())) {
-            DoccatModel model = new DoccatModel(modelIn);
-            logger.info("Modèle chargé avec succès depuis {}", modelFile.getAbsolutePath());
+        try {
+            DoccatModel model = new DoccatModel(new ByteArrayInputStream(content));
+            long decoded = System.nanoTime();
+            logger.info("Modèle chargé depuis {} : {} octets lus en {} ({}), {} en {}, décodé en {}",
+                    modelFile.getAbsolutePath(), content.length, millis(read - start),
+                    throughput(content.length, read - start),
+                    verified ? "somme de contrôle vérifiée" : "sans somme de contrôle",
+                    millis(checked - read), millis(decoded - checked));
             return model;
         } catch (IOException e) {
             logger.error("Échec du chargement du modèle depuis {} - {}", modelFile.getAbsolutePath(), e.getMessage());
             throw new IOException("Échec du chargement du modèle: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sérialise le modèle en archive zip et y ajoute la somme de contrôle.
+     */
+    private static byte[] serialize(DoccatModel model, int compressionLevel) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        Map<String, Object> artifacts = artifacts(model);
+        if (artifacts != null) {
+            writeArchive(model, artifacts, out, compressionLevel);
+        } else {
+            // Artefact inconnu : sérialisation d'OpenNLP, au niveau de compression par défaut
+            logger.debug("Sérialisation du modèle par OpenNLP");
+            model.serialize(out);
+        }
+        byte[] serialized = appendChecksum(out.toByteArray());
+        logger.info("Modèle sérialisé : {} octets en {} (niveau de compression {})",
+                serialized.length, millis(System.nanoTime() - start), compressionLevel);
+        return serialized;
+    }
+
+    /**
+     * Entrées de l'archive dans l'ordre d'écriture : le manifeste, le modèle
+     * maxent puis les artefacts de la fabrique, comme l'écrirait OpenNLP.
+     *
+     * @return Les artefacts par nom d'entrée, ou null si l'un d'eux demande la sérialisation d'OpenNLP
+     */
+    private static Map<String, Object> artifacts(DoccatModel model) {
+        Map<String, Object> artifacts = new LinkedHashMap<>();
+        artifacts.put(MANIFEST_ENTRY, model.getArtifact(MANIFEST_ENTRY));
+        artifacts.put(DOCCAT_MODEL_ENTRY, model.getMaxentModel());
+        DoccatFactory factory = model.getFactory();
+        if (factory != null) {
+            // Seules les extensions servent ici, writeArchive reprend les sérialiseurs
+            Map<String, ?> serializers = factory.createArtifactSerializersMap();
+            for (Map.Entry<String, Object> artifact : factory.createArtifactMap().entrySet()) {
+                if (artifact.getValue() instanceof SerializableArtifact
+                        || !serializers.containsKey(extension(artifact.getKey()))) {
+                    return null;
+                }
+                artifacts.put(artifact.getKey(), artifact.getValue());
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Écrit l'archive du modèle. Les sérialiseurs d'OpenNLP écrivent valeur par
+     * valeur : un tampon devant le compresseur lui évite un appel par valeur.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void writeArchive(DoccatModel model, Map<String, Object> artifacts, OutputStream target,
+                                     int compressionLevel) throws IOException {
+        Map<String, ArtifactSerializer> serializers = model.getFactory() != null
+                ? model.getFactory().createArtifactSerializersMap() : Map.of();
+        ZipOutputStream zip = new ZipOutputStream(target);
+        zip.setLevel(compressionLevel);
+        OutputStream entry = new BufferedOutputStream(new FilterOutputStream(zip) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // L'archive est fermée par son propriétaire
+            }
+        }, BUFFER_SIZE);
+
+        for (Map.Entry<String, Object> artifact : artifacts.entrySet()) {
+            zip.putNextEntry(new ZipEntry(artifact.getKey()));
+            if (MANIFEST_ENTRY.equals(artifact.getKey())) {
+                ((Properties) artifact.getValue()).store(entry, "");
+            } else if (artifact.getValue() instanceof MaxentModel) {
+                ModelUtil.writeModel((MaxentModel) artifact.getValue(), entry);
+            } else {
+                serializers.get(extension(artifact.getKey())).serialize(artifact.getValue(), entry);
+            }
+            entry.flush();
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private static String extension(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Place la somme de contrôle CRC32C des entrées, qui précèdent le
+     * répertoire central, dans le commentaire de l'archive.
+     */
+    private static byte[] appendChecksum(byte[] archive) throws IOException {
+        int end = archive.length - END_OF_CENTRAL_DIRECTORY_SIZE;
+        if (end < 0 || readInt(archive, end) != END_OF_CENTRAL_DIRECTORY_SIGNATURE || readShort(archive, end + 20) != 0) {
+            throw new IOException("Archive du modèle inattendue, impossible d'ajouter la somme de contrôle");
+        }
+        byte[] comment = (CHECKSUM_PREFIX + Long.toHexString(checksum(archive, readInt(archive, end + 16))))
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] sealed = Arrays.copyOf(archive, archive.length + comment.length);
+        sealed[end + 20] = (byte) comment.length;
+        sealed[end + 21] = (byte) (comment.length >>> 8);
+        System.arraycopy(comment, 0, sealed, archive.length, comment.length);
+        return sealed;
+    }
+
+    /**
+     * @return true si la somme de contrôle a été vérifiée, false si le fichier n'en porte pas
+     * @throws IOException Si le fichier est tronqué ou si la somme de contrôle diffère
+     */
+    private static boolean verifyChecksum(byte[] content, File modelFile) throws IOException {
+        int end = findEndOfCentralDirectory(content);
+        if (end < 0) {
+            throw new IOException("Fichier modèle tronqué ou corrompu: " + modelFile.getAbsolutePath());
+        }
+        String comment = new String(content, end + END_OF_CENTRAL_DIRECTORY_SIZE,
+                content.length - end - END_OF_CENTRAL_DIRECTORY_SIZE, StandardCharsets.US_ASCII);
+        if (!comment.startsWith(CHECKSUM_PREFIX)) {
+            // Modèle écrit par une version précédente ou directement par OpenNLP
+            logger.debug("Pas de somme de contrôle dans {}", modelFile.getAbsolutePath());
+            return false;
+        }
+        int entriesLength = readInt(content, end + 16);
+        if (entriesLength < 0 || entriesLength > end) {
+            throw new IOException("Fichier modèle corrompu: " + modelFile.getAbsolutePath());
+        }
+        long expected;
+        try {
+            expected = Long.parseLong(comment.substring(CHECKSUM_PREFIX.length()), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Somme de contrôle illisible dans " + modelFile.getAbsolutePath(), e);
+        }
+        if (checksum(content, entriesLength) != expected) {
+            throw new IOException("Somme de contrôle invalide, fichier modèle corrompu: " + modelFile.getAbsolutePath());
+        }
+        return true;
+    }
+
+    /**
+     * @return La position de la fin du répertoire central, ou -1 si l'archive n'en a pas
+     */
+    private static int findEndOfCentralDirectory(byte[] content) {
+        int last = content.length - END_OF_CENTRAL_DIRECTORY_SIZE;
+        for (int position = last; position >= 0 && position >= last - 0xFFFF; position--) {
+            if (readInt(content, position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                    && readShort(content, position + 20) == last - position) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static long checksum(byte[] content, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(content, 0, length);
+        return crc.getValue();
+    }
+
+    private static int readInt(byte[] content, int position) {
+        return (content[position] & 0xFF) | (content[position + 1] & 0xFF) << 8
+                | (content[position + 2] & 0xFF) << 16 | (content[position + 3] & 0xFF) << 24;
+    }
+
+    private static int readShort(byte[] content, int position) {
+        return (content[position] & 0xFF) | (content[position + 1] & 0xFF) << 8;
+    }
+
+    private static Path resolveDestination(String modelPath) {
+        // Vérifier si le chemin existe et s'il s'agit d'un répertoire
+        Path destination = Paths.get(modelPath);
+        if (Files.isDirectory(destination)) {
+            // Le chemin spécifié est un répertoire, nous devons ajouter un nom de fichier
+            destination = destination.resolve(DEFAULT_FILE_NAME);
+            logger.info("Le chemin spécifié est un répertoire, utilisation du chemin modifié: {}", destination);
+        }
+        return destination;
+    }
+
+    /**
+     * Écrit le modèle sérialisé dans un fichier temporaire du répertoire de
+     * destination, le synchronise sur disque puis le renomme atomiquement.
+     */
+    private static void write(byte[] serialized, Path destination) throws IOException {
+        Path directory = destination.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(destination.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        long start = System.nanoTime();
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(serialized);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.error("Échec de sauvegarde du modèle dans {} - {}", destination, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+
+            // Vérifier les permissions
+            if (Files.exists(destination) && !Files.isWritable(destination)) {
+                throw new IOException("Pas de permission d'écriture pour le fichier: " + destination, e);
+            }
+
+            // Vérifier si le dossier parent est accessible en écriture
+            if (Files.isDirectory(directory) && !Files.isWritable(directory)) {
+                throw new IOException("Pas de permission d'écriture pour le répertoire: " + directory, e);
+            }
+
+            throw e;
+        }
+        syncDirectory(directory);
+        long elapsed = System.nanoTime() - start;
+        logger.info("Modèle sauvegardé avec succès dans {} : {} octets écrits en {} ({})",
+                destination, serialized.length, millis(elapsed), throughput(serialized.length, elapsed));
+    }
+
+    /**
+     * Synchronise le répertoire pour que le renommage survive à une panne.
+     * Certains systèmes, dont Windows, ne permettent pas d'ouvrir un répertoire.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Impossible de synchroniser le répertoire {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void checkCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Niveau de compression invalide: " + compressionLevel);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static String throughput(long bytes, long nanos) {
+        return String.format("%.1f Mo/s", nanos > 0 ? bytes / 1e6 / (nanos / 1e9) : 0.0);
+    }
+}
@@ -0,0 +1,547 @@
+package com.emailclassifier.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+/**
+ * Generates reproducible spam/ham corpora for load and scale testing.
+ *
+ * Every message is a function of the seed, its category and its index only,
+ * so a corpus can be regenerated identically on any machine, streamed in
+ * memory without being stored, or written in parallel. Messages have headers,
+ * plain or HTML bodies, links and optional base64 attachments; their words are
+ * drawn from a Zipf-distributed shared vocabulary mixed with category topic
+ * words, and their sizes follow a log-normal distribution. All of this is
+ * configurable per category through {@link Profile}.
+ *
+ * Corpora can be written as one file per message (the layout read by
+ * {@link DatasetLoader#loadFromDirectories}), as Maildir folders or as mbox files.
+ */
+public class SyntheticCorpusGenerator {
+    private static final Logger logger = LogManager.getLogger(SyntheticCorpusGenerator.class);
+
+    public static final int DEFAULT_VOCABULARY_SIZE = 50_000;
+    public static final double DEFAULT_ZIPF_EXPONENT = 1.1;
+
+    private static final String[] SPAM_TOPIC = {
+        "free", "winner", "prize", "claim", "offer", "limited", "cash", "bonus", "guaranteed", "credit",
+        "loan", "viagra", "pills", "pharmacy", "discount", "cheap", "casino", "lottery", "congratulations",
+        "urgent", "act", "now", "click", "unsubscribe", "investment", "bitcoin", "profit", "million",
+        "selected", "exclusive", "deal", "risk-free", "refund", "password", "verify", "account", "suspended",
+        "inheritance", "beneficiary", "weight", "miracle"
+    };
+    private static final String[] HAM_TOPIC = {
+        "meeting", "agenda", "project", "deadline", "review", "attached", "document", "report", "schedule",
+        "team", "feedback", "minutes", "draft", "budget", "quarter", "release", "deploy", "invoice", "contract",
+        "lunch", "tomorrow", "thanks", "regards", "update", "notes", "presentation", "call", "client",
+        "proposal", "roadmap", "ticket", "merge", "branch", "sprint", "vacation", "conference", "travel",
+        "family", "weekend", "dinner"
+    };
+    private static final String[] SPAM_SUBJECTS = {
+        "You have been selected", "Final notice", "Claim your %s now", "Exclusive %s inside",
+        "Re: your %s", "Act now: %s", "Congratulations, %s"
+    };
+    private static final String[] HAM_SUBJECTS = {
+        "Re: %s", "%s for tomorrow", "Updated %s", "Fwd: %s", "Question about the %s", "%s notes"
+    };
+    private static final String[] HAM_DOMAINS = {
+        "example.com", "example.org", "corp.example.net", "mail.example.edu", "partners.example.com"
+    };
+    private static final String[] TLDS = {"com", "net", "biz", "info", "ru", "cn", "top", "xyz"};
+    private static final String[] SYLLABLES = {
+        "ba", "be", "bi", "bo", "ca", "co", "da", "de", "di", "fa", "fe", "ga", "go", "ha", "he", "ka", "ke",
+        "la", "le", "li", "lo", "ma", "me", "mi", "mo", "na", "ne", "no", "pa", "pe", "po", "ra", "re", "ri",
+        "ro", "sa", "se", "si", "so", "ta", "te", "ti", "to", "va", "ve", "vi", "za", "ze", "an", "en", "in",
+        "on", "ar", "er", "or", "st", "tr", "th"
+    };
+
+    private final long seed;
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private String[] vocabulary;
+    private double[] cumulativeWeights;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates a generator with the default spam and ham profiles.
+     *
+     * @param seed Seed of everything generated; the same seed gives the same corpus
+     */
+    public SyntheticCorpusGenerator(long seed) {
+        this.seed = seed;
+        profiles.put("spam", Profile.spam());
+        profiles.put("ham", Profile.ham());
+        setVocabulary(DEFAULT_VOCABULARY_SIZE, DEFAULT_ZIPF_EXPONENT);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the profile of a category, to be adjusted in place. Unknown
+     * categories get a copy of the ham profile.
+     */
+    public Profile getProfile(String category) {
+        return profiles.computeIfAbsent(category, c -> Profile.ham());
+    }
+
+    /**
+     * Sets the shared vocabulary, whose words are used with Zipf frequencies:
+     * the word of rank r has a weight of 1 / r^exponent.
+     *
+     * @param size     Number of distinct words
+     * @param exponent Zipf exponent, around 1 for natural language
+     */
+    public void setVocabulary(int size, double exponent) {
+        if (size < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("Invalid vocabulary: size=" + size + ", exponent=" + exponent);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        vocabulary = new String[size];
+        cumulativeWeights = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            vocabulary[rank] = pseudoWord(random, rank);
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulativeWeights[rank] = total;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many messages are generated and written at once.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates one message.
+     *
+     * @param category Category whose profile is used
+     * @param index    Position of the message in its category
+     * @return The raw message, headers included
+     */
+    public String generate(String category, long index) {
+        Profile profile = getProfile(category);
+        SplittableRandom random = new SplittableRandom(messageSeed(category, index));
+        boolean spam = "spam".equals(category);
+
+        int targetBytes = (int) Math.min(profile.maxBytes,
+                Math.max(profile.minBytes, profile.medianBytes * Math.exp(profile.sizeSpread * random.nextGaussian())));
+        boolean html = random.nextDouble() < profile.htmlRatio;
+        boolean attachment = random.nextDouble() < profile.attachmentRatio;
+        String domain = senderDomain(random, spam);
+
+        StringBuilder message = new StringBuilder(targetBytes + 512);
+        message.append("From: ").append(word(random)).append('.').append(word(random)).append('@').append(domain).append('\n');
+        message.append("To: ").append(word(random)).append("@example.com\n");
+        String[] subjects = spam ? SPAM_SUBJECTS : HAM_SUBJECTS;
+        message.append("Subject: ")
+                .append(String.format(subjects[random.nextInt(subjects.length)], topicWord(random, profile)))
+                .append('\n');
+        message.append("Date: ").append(String.format("Mon, %d Jan 2024 %02d:%02d:%02d +0000",
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60))).append('\n');
+        message.append("Message-ID: <").append(Long.toHexString(random.nextLong())).append('@').append(domain).append(">\n");
+        message.append("MIME-Version: 1.0\n");
+
+        String boundary = "=_" + Long.toHexString(random.nextLong());
+        if (attachment) {
+            message.append("Content-Type: multipart/mixed; boundary=\"").append(boundary).append("\"\n\n");
+            message.append("--").append(boundary).append('\n');
+        }
+        message.append("Content-Type: ").append(html ? "text/html" : "text/plain").append("; charset=UTF-8\n\n");
+        if (html) {
+            message.append("<html><body>\n");
+        }
+
+        int bodyStart = message.length();
+        while (message.length() - bodyStart < targetBytes) {
+            if (html) {
+                message.append("<p>");
+            }
+            appendParagraph(message, random, profile, domain, html);
+            message.append(html ? "</p>\n" : "\n\n");
+        }
+
+        if (html) {
+            message.append("</body></html>\n");
+        }
+        if (attachment) {
+            byte[] content = new byte[profile.attachmentBytes / 2 + random.nextInt(profile.attachmentBytes + 1)];
+            random.nextBytes(content);
+            message.append("--").append(boundary).append('\n');
+            message.append("Content-Type: application/octet-stream; name=\"").append(word(random)).append(".pdf\"\n");
+            message.append("Content-Transfer-Encoding: base64\n\n");
+            message.append(Base64.getMimeEncoder().encodeToString(content)).append('\n');
+            message.append("--").append(boundary).append("--\n");
+        }
+        return message.toString();
+    }
+
+    private void appendParagraph(StringBuilder message, SplittableRandom random, Profile profile,
+                                 String domain, boolean html) {
+        int sentences = 1 + random.nextInt(5);
+        for (int s = 0; s < sentences; s++) {
+            int words = 4 + random.nextInt(16);
+            for (int w = 0; w < words; w++) {
+                String next = random.nextDouble() < profile.topicWeight ? topicWord(random, profile) : word(random);
+                if (w == 0) {
+                    message.append(Character.toUpperCase(next.charAt(0))).append(next, 1, next.length());
+                } else {
+                    message.append(' ').append(next);
+                }
+            }
+            message.append(". ");
+            if (random.nextDouble() < profile.urlsPerSentence) {
+                String url = "http://" + (random.nextBoolean() ? domain : word(random) + "." + TLDS[random.nextInt(TLDS.length)])
+                        + "/" + word(random) + "?id=" + Integer.toHexString(random.nextInt());
+                if (html) {
+                    message.append("<a href=\"").append(url).append("\">").append(word(random)).append("</a> ");
+                } else {
+                    message.append(url).append(' ');
+                }
+            }
+        }
+    }
+
+    private String word(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1]);
+        return vocabulary[Math.min(rank < 0 ? -rank - 1 : rank, vocabulary.length - 1)];
+    }
+
+    private static String topicWord(SplittableRandom random, Profile profile) {
+        return profile.topicWords[random.nextInt(profile.topicWords.length)];
+    }
+
+    private String senderDomain(SplittableRandom random, boolean spam) {
+        if (!spam) {
+            return HAM_DOMAINS[random.nextInt(HAM_DOMAINS.length)];
+        }
+        return word(random) + word(random) + "." + TLDS[random.nextInt(TLDS.length)];
+    }
+
+    private static String pseudoWord(SplittableRandom random, int rank) {
+        // Frequent words are short, as in natural language
+        int syllables = 1 + Math.min(4, (int) Math.log10(rank + 1) + random.nextInt(2));
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private long messageSeed(String category, long index) {
+        long h = seed ^ (category.hashCode() * 0x9E3779B97F4A7C15L);
+        h += index * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        h *= 0x94D049BB133111EBL;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Streams messages of a category in memory, generating each on demand.
+     *
+     * @param category Category to generate
+     * @param count    Number of messages
+     * @return An iterator over messages 0 to count - 1
+     */
+    public Iterator<String> stream(String category, long count) {
+        return new Iterator<String>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public String next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return generate(category, next++);
+            }
+        };
+    }
+
+    /**
+     * Streams a spam/ham corpus, in the form taken by
+     * {@link com.emailclassifier.model.EmailClassifier#trainFromSources}.
+     */
+    public Map<String, Iterator<String>> streams(long spamCount, long hamCount) {
+        Map<String, Iterator<String>> sources = new LinkedHashMap<>();
+        sources.put("spam", stream("spam", spamCount));
+        sources.put("ham", stream("ham", hamCount));
+        return sources;
+    }
+
+    /**
+     * Generates a spam/ham corpus in memory, in the form returned by
+     * {@link DatasetLoader#loadFromDirectories}.
+     */
+    public Map<String, String[]> dataset(int spamCount, int hamCount) {
+        Map<String, String[]> dataset = new LinkedHashMap<>();
+        dataset.put("spam", generateAll("spam", spamCount));
+        dataset.put("ham", generateAll("ham", hamCount));
+        return dataset;
+    }
+
+    private String[] generateAll(String category, int count) {
+        String[] messages = new String[count];
+        parallel(count, i -> messages[(int) i] = generate(category, i));
+        return messages;
+    }
+
+    /**
+     * Writes one file per message, named {@code <category>-<index>.eml}.
+     *
+     * @param directory Directory to fill, created if needed
+     * @param category  Category to generate
+     * @param count     Number of messages
+     * @throws IOException If a file cannot be written
+     */
+    public void writeDirectory(Path directory, String category, long count) throws IOException {
+        Files.createDirectories(directory);
+        try {
+            parallel(count, i -> {
+                Path file = directory.resolve(String.format("%s-%09d.eml", category, i));
+                try {
+                    Files.write(file, generate(category, i).getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        logger.info("Wrote {} {} messages into {}", count, category, directory);
+    }
+
+    /**
+     * Writes messages into the "new" folder of a Maildir, creating the
+     * cur/new/tmp layout if needed.
+     */
+    public void writeMaildir(Path maildir, String category, long count) throws IOException {
+        Files.createDirectories(maildir.resolve("cur"));
+        Files.createDirectories(maildir.resolve("tmp"));
+        writeDirectory(maildir.resolve("new"), category, count);
+    }
+
+    /**
+     * Writes messages into an mbox file, escaping body lines that start with "From ".
+     */
+    public void writeMbox(Path mbox, String category, long count) throws IOException {
+        if (mbox.getParent() != null) {
+            Files.createDirectories(mbox.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(mbox, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < count; i++) {
+                writer.write("From generator@example.com Mon Jan  1 00:00:00 2024\n");
+                for (String line : generate(category, i).split("\n", -1)) {
+                    if (line.startsWith("From ") || line.startsWith(">From ")) {
+                        writer.write('>');
+                    }
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        }
+        logger.info("Wrote {} {} messages into {}", count, category, mbox);
+    }
+
+    private interface IndexTask {
+        void run(long index);
+    }
+
+    private void parallel(long count, IndexTask task) {
+        if (parallelism == 1 || count < 1000) {
+            for (long i = 0; i < count; i++) {
+                task.run(i);
+            }
+            return;
+        }
+        // Messages depend only on their index, so the order of generation does not matter
+        long chunk = (count + parallelism - 1) / parallelism;
+        LongStream.range(0, parallelism).parallel().forEach(part -> {
+            for (long i = part * chunk; i < Math.min(count, (part + 1) * chunk); i++) {
+                task.run(i);
+            }
+        });
+    }
+
+    /**
+     * Shape of the messages of one category.
+     */
+    public static class Profile {
+        private double medianBytes;
+        private double sizeSpread;
+        private int minBytes = 64;
+        private int maxBytes = 256 * 1024;
+        private double htmlRatio;
+        private double attachmentRatio;
+        private int attachmentBytes = 16 * 1024;
+        private double urlsPerSentence;
+        private double topicWeight;
+        private String[] topicWords;
+
+        static Profile spam() {
+            Profile profile = new Profile();
+            profile.setSize(1500, 0.8);
+            profile.setHtmlRatio(0.6);
+            profile.setAttachmentRatio(0.05);
+            profile.setUrlsPerSentence(0.4);
+            profile.setTopicWords(SPAM_TOPIC, 0.25);
+            return profile;
+        }
+
+        static Profile ham() {
+            Profile profile = new Profile();
+            profile.setSize(2500, 1.0);
+            profile.setHtmlRatio(0.2);
+            profile.setAttachmentRatio(0.15);
+            profile.setUrlsPerSentence(0.05);
+            profile.setTopicWords(HAM_TOPIC, 0.2);
+            return profile;
+        }
+
+        /**
+         * Sets the log-normal distribution of body sizes.
+         *
+         * @param medianBytes Median body size
+         * @param spread      Standard deviation of the size's logarithm; 0 gives fixed-size bodies
+         */
+        public void setSize(double medianBytes, double spread) {
+            if (medianBytes <= 0 || spread < 0) {
+                throw new IllegalArgumentException("Invalid size distribution: median=" + medianBytes
+                        + ", spread=" + spread);
+            }
+            this.medianBytes = medianBytes;
+            this.sizeSpread = spread;
+        }
+
+        /**
+         * Clips body sizes, which keeps the distribution's long tail bounded.
+         */
+        public void setSizeLimits(int minBytes, int maxBytes) {
+            if (minBytes < 1 || maxBytes < minBytes) {
+                throw new IllegalArgumentException("Invalid size limits: " + minBytes + ".." + maxBytes);
+            }
+            this.minBytes = minBytes;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Sets the fraction of messages with an HTML body.
+         */
+        public void setHtmlRatio(double htmlRatio) {
+            this.htmlRatio = ratio("HTML ratio", htmlRatio);
+        }
+
+        /**
+         * Sets the fraction of messages carrying a base64 attachment of
+         * about {@code attachmentBytes} bytes.
+         */
+        public void setAttachmentRatio(double attachmentRatio) {
+            this.attachmentRatio = ratio("Attachment ratio", attachmentRatio);
+        }
+
+        public void setAttachmentBytes(int attachmentBytes) {
+            if (attachmentBytes < 0) {
+                throw new IllegalArgumentException("Attachment size must not be negative: " + attachmentBytes);
+            }
+            this.attachmentBytes = attachmentBytes;
+        }
+
+        /**
+         * Sets the probability that a sentence is followed by a link.
+         */
+        public void setUrlsPerSentence(double urlsPerSentence) {
+            this.urlsPerSentence = ratio("URL rate", urlsPerSentence);
+        }
+
+        /**
+         * Sets the category's own words and the fraction of words taken from
+         * them; the rest comes from the shared vocabulary. Lower weights make
+         * the categories harder to separate.
+         */
+        public void setTopicWords(String[] topicWords, double topicWeight) {
+            if (topicWords.length == 0) {
+                throw new IllegalArgumentException("Topic words must not be empty");
+            }
+            this.topicWords = topicWords.clone();
+            this.topicWeight = ratio("Topic weight", topicWeight);
+        }
+
+        private static double ratio(String name, double value) {
+            if (value < 0 || value > 1) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1: " + value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Writes a corpus under outputDir/spam and outputDir/ham.
+     *
+     * Usage: SyntheticCorpusGenerator &lt;outputDir&gt; &lt;spamCount&gt; &lt;hamCount&gt; [seed] [files|maildir|mbox]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: SyntheticCorpusGenerator <outputDir> <spamCount> <hamCount> [seed] "
+                    + "[files|maildir|mbox]");
+            System.exit(2);
+        }
+        Path output = Paths.get(args[0]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        String layout = args.length > 4 ? args[4] : "files";
+        SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator(seed);
+
+        long start = System.nanoTime();
+        long total = 0;
+        for (int i = 0; i < 2; i++) {
+            String category = i == 0 ? "spam" : "ham";
+            long count = Long.parseLong(args[1 + i]);
+            switch (layout) {
+                case "files":
+                    generator.writeDirectory(output.resolve(category), category, count);
+                    break;
+                case "maildir":
+                    generator.writeMaildir(output.resolve(category), category, count);
+                    break;
+                case "mbox":
+                    generator.writeMbox(output.resolve(category + ".mbox"), category, count);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown layout: " + layout);
+            }
+            total += count;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d messages in %.1f s (%.0f messages/s), seed %d%n",
+                total, seconds, total / seconds, seed);
+    }
+}
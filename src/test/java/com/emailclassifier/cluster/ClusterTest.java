@@ -0,0 +1,120 @@
+package com.emailclassifier.cluster;
+
+import com.emailclassifier.TestCorpus;
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.ModelIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a coordinator against worker JVMs on the loopback interface.
+ */
+public class ClusterTest {
+    @TempDir
+    Path tempDir;
+
+    private final List<Process> workers = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (Process worker : workers) {
+            worker.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testRingMovesOnlyTheRemovedNodesKeys() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        ring.add("a");
+        ring.add("b");
+        ring.add("c");
+        Map<Long, String> owners = new HashMap<>();
+        for (long key = 0; key < 1000; key++) {
+            owners.put(key, ring.nodesFor(ConsistentHashRing.mix(key)).get(0));
+        }
+
+        ring.remove("b");
+        for (long key = 0; key < 1000; key++) {
+            String owner = ring.nodesFor(ConsistentHashRing.mix(key)).get(0);
+            if (!owners.get(key).equals("b")) {
+                assertEquals(owners.get(key), owner, "Keys of the remaining nodes must not move");
+            }
+            assertNotEquals("b", owner);
+        }
+    }
+
+    @Test
+    public void testFailsOverWhenAWorkerStops() throws Exception {
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        String modelPath = tempDir.resolve("cluster.bin").toString();
+        ModelIO.saveModel(classifier.getModel(), modelPath);
+
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            addresses.add(new InetSocketAddress("127.0.0.1", startWorker(modelPath)));
+        }
+
+        String[] messages = new String[20];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = i % 2 == 0
+                ? "Congratulations! You've won the lottery, buy now! #" + i
+                : "Please review the attached document before the meeting tomorrow. #" + i;
+        }
+
+        try (ClassificationCoordinator coordinator = new ClassificationCoordinator(addresses, 100)) {
+            for (int round = 0; round < 2; round++) {
+                for (String message : messages) {
+                    assertEquals(classifier.classify(message), coordinator.classify(message));
+                }
+            }
+            assertEquals(40, coordinator.getRequests());
+            for (long routed : coordinator.getRequestsPerWorker().values()) {
+                assertTrue(routed > 0, "Both workers should own part of the messages");
+            }
+
+            workers.get(0).destroyForcibly().waitFor();
+            for (String message : messages) {
+                assertEquals(classifier.classify(message), coordinator.classify(message));
+            }
+            assertEquals(1, coordinator.getHealthyWorkers());
+            assertTrue(coordinator.getRebalances() >= 1);
+
+            // The surviving worker answered the second round from its cache
+            Thread.sleep(300);
+            assertTrue(coordinator.getStats().matches(".*cacheHits=[1-9]\\d*, up.*"), coordinator.getStats());
+        }
+    }
+
+    private int startWorker(String modelPath) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ClassificationWorker.class.getName(), modelPath, "0")
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        workers.add(process);
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = out.readLine()) != null) {
+            if (line.startsWith("LISTENING ")) {
+                return Integer.parseInt(line.substring("LISTENING ".length()).trim());
+            }
+        }
+        throw new IOException("Worker exited before listening");
+    }
+}
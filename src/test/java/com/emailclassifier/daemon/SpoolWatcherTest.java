@@ -0,0 +1,140 @@
+package com.emailclassifier.daemon;
+
+import com.emailclassifier.TestCorpus;
+import com.emailclassifier.journal.VerdictJournal;
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.model.LanguageDetector;
+import com.emailclassifier.model.LanguageRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SpoolWatcher.
+ */
+public class SpoolWatcherTest {
+    @TempDir
+    Path tempDir;
+    
+    private Map<String, String[]> dataset;
+    private EmailClassifier classifier;
+    
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataset = TestCorpus.dataset();
+        
+        classifier = new EmailClassifier();
+        classifier.train(dataset, progress -> { });
+    }
+    
+    @Test
+    public void testRoutesExistingAndNewFiles() throws Exception {
+        Path spool = Files.createDirectories(tempDir.resolve("spool"));
+        Path output = tempDir.resolve("out");
+        
+        // Left over from a previous run, must be picked up by the recovery scan
+        write(spool.resolve("leftover.eml"), "Free money, click here to claim your prize now!");
+        write(spool.resolve(".partial"), "still being written");
+        
+        try (SpoolWatcher watcher = new SpoolWatcher(classifier, spool, output, 2, 1)) {
+            watcher.start();
+            for (int i = 0; i < 20; i++) {
+                String text = i % 2 == 0
+                    ? "Congratulations! You've won the lottery, buy now!"
+                    : "Please review the attached document before the meeting tomorrow.";
+                Path staged = write(tempDir.resolve("msg-" + i + ".tmp"), text);
+                Files.move(staged, spool.resolve("msg-" + i + ".eml"), StandardCopyOption.ATOMIC_MOVE);
+            }
+            
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (watcher.getProcessed() < 21 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(21, watcher.getProcessed());
+            assertEquals(0, watcher.getFailed());
+        }
+        
+        assertEquals(11, count(output.resolve("spam")));
+        assertEquals(10, count(output.resolve("ham")));
+        try (Stream<Path> left = Files.list(spool)) {
+            assertEquals(1, left.count(), "Only the hidden file should remain in the spool");
+        }
+    }
+    
+    @Test
+    public void testRoutesOnlyJournaledVerdicts() throws Exception {
+        Path spool = Files.createDirectories(tempDir.resolve("spool"));
+        Path output = tempDir.resolve("out");
+        VerdictJournal journal = VerdictJournal.open(tempDir.resolve("journal"));
+        
+        try (SpoolWatcher watcher = new SpoolWatcher(classifier, spool, output, 2, 1)) {
+            watcher.setJournal(journal, "test-model");
+            watcher.start();
+            write(spool.resolve("first.eml"), "Free money, click here to claim your prize now!");
+            
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (watcher.getProcessed() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, watcher.getProcessed());
+            assertEquals(1, journal.getRecordCount(), "The verdict must be on disk once the file is routed");
+            
+            // A verdict that cannot be journaled sends its file to the error folder
+            journal.close();
+            write(spool.resolve("second.eml"), "Please review the attached document.");
+            deadline = System.currentTimeMillis() + 10_000;
+            while (watcher.getFailed() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, watcher.getFailed());
+        } finally {
+            journal.close();
+        }
+        assertEquals(1, count(output.resolve(SpoolWatcher.ERROR_FOLDER)));
+    }
+    
+    @Test
+    public void testRoutesMessagesByLanguage() throws Exception {
+        Path spool = Files.createDirectories(tempDir.resolve("spool"));
+        Path output = tempDir.resolve("out");
+        EmailClassifier french = new EmailClassifier("fr");
+        french.train(dataset, progress -> { });
+        LanguageRouter router = new LanguageRouter(LanguageDetector.fromResources("en", "en", "fr"));
+        router.register(classifier);
+        router.register(french);
+        
+        try (SpoolWatcher watcher = new SpoolWatcher(router, spool, output, 2, 1)) {
+            watcher.start();
+            write(spool.resolve("en.eml"), "Please review the attached document before the meeting tomorrow.");
+            write(spool.resolve("fr.eml"), "Bonjour, la réunion de demain est reportée à vendredi. Merci de confirmer "
+                + "votre présence avant la fin de la journée.");
+            
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (watcher.getProcessed() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, watcher.getProcessed());
+        }
+        assertEquals(Map.of("en", 1L, "fr", 1L), router.getRoutedCounts());
+    }
+    
+    private static Path write(Path file, String text) throws IOException {
+        return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static long count(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.emailclassifier.gui;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.DatasetLoader;
+import com.emailclassifier.utils.SyntheticCorpusGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableRowSorter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BatchClassificationWorker and BatchResultTableModel.
+ */
+public class BatchClassificationWorkerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testFolderIsStreamedIntoSortedTable() throws Exception {
+        SyntheticCorpusGenerator corpus = new SyntheticCorpusGenerator(11);
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(corpus.dataset(60, 60), progress -> { });
+        corpus.writeDirectory(tempDir, "spam", 300);
+        corpus.writeDirectory(tempDir, "ham", 300);
+
+        BatchResultTableModel results = new BatchResultTableModel();
+        TableRowSorter<BatchResultTableModel> sorter = new TableRowSorter<>(results);
+        List<Integer> insertions = new ArrayList<>();
+        List<String> statuses = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            // The table forwards model events to its sorter
+            new JTable(results).setRowSorter(sorter);
+            sorter.setSortKeys(Collections.singletonList(
+                    new RowSorter.SortKey(BatchResultTableModel.SPAM_COLUMN, SortOrder.DESCENDING)));
+            results.addTableModelListener(e -> insertions.add(e.getLastRow() - e.getFirstRow() + 1));
+        });
+
+        CountDownLatch finished = new CountDownLatch(1);
+        BatchClassificationWorker worker = new BatchClassificationWorker(classifier, new DatasetLoader(), tempDir,
+                results, statuses::add, w -> finished.countDown());
+        worker.execute();
+        String status = worker.get();
+        assertTrue(status.startsWith("600 messages classified"), status);
+        assertTrue(finished.await(5, TimeUnit.SECONDS), "The end of the loop should be signalled");
+
+        // Published chunks reach the table on the event dispatch thread after doInBackground returns
+        long deadline = System.currentTimeMillis() + 5000;
+        int[] rows = new int[1];
+        do {
+            SwingUtilities.invokeAndWait(() -> rows[0] = results.getRowCount());
+        } while (rows[0] < 600 && System.currentTimeMillis() < deadline);
+
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals(600, results.getRowCount());
+            assertTrue(insertions.size() <= 600 / BatchClassificationWorker.CHUNK_SIZE + 1,
+                    "Rows should be inserted by chunks: " + insertions);
+            assertFalse(statuses.isEmpty());
+            assertTrue(results.getSpamCount() > 200 && results.getSpamCount() < 400,
+                    "Spam count: " + results.getSpamCount());
+
+            assertEquals(600, sorter.getViewRowCount());
+            float previous = Float.MAX_VALUE;
+            for (int view = 0; view < sorter.getViewRowCount(); view++) {
+                float spam = (Float) results.getValueAt(sorter.convertRowIndexToModel(view),
+                        BatchResultTableModel.SPAM_COLUMN);
+                assertTrue(spam <= previous, "Rows should stay sorted while streaming in");
+                previous = spam;
+            }
+            String top = results.getFile(sorter.convertRowIndexToModel(0));
+            assertTrue(top.startsWith("spam-"), top);
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package com.emailclassifier.journal;
+
+import com.emailclassifier.TestCorpus;
+import com.emailclassifier.model.EmailClassifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for VerdictJournal and JournalReplay.
+ */
+public class VerdictJournalTest {
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    public void testAppendRollReopenAndRead() throws Exception {
+        Path dir = tempDir.resolve("journal");
+        try (VerdictJournal journal = VerdictJournal.open(dir, 4096, 16)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(journal.append("model-a", verdict(i % 3 == 0), "message number " + i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        }
+        try (Stream<Path> segments = Files.list(dir)) {
+            assertTrue(segments.count() > 1, "Small segments should have rolled");
+        }
+        
+        // Simulate a torn write after the last record, then resume appending
+        Path last;
+        try (Stream<Path> segments = Files.list(dir)) {
+            last = segments.sorted().reduce((a, b) -> b).get();
+        }
+        long end = 0;
+        for (JournalRecord record : VerdictJournal.read(dir)) {
+            end++;
+        }
+        assertEquals(100, end);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            channel.read(data, 0);
+            int position = 0;
+            while (data.getInt(position) != 0) {
+                position += 8 + data.getInt(position);
+            }
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5}), position);
+        }
+        try (VerdictJournal journal = VerdictJournal.open(dir, 4096, 16)) {
+            journal.append("model-a", verdict(true), "after restart").get();
+        }
+        
+        List<JournalRecord> records = new ArrayList<>();
+        VerdictJournal.read(dir).forEach(records::add);
+        assertEquals(101, records.size());
+        assertEquals("message number 0", records.get(0).getBody());
+        assertEquals("spam", records.get(0).getVerdict());
+        assertEquals("ham", records.get(1).getVerdict());
+        assertEquals("after restart", records.get(100).getBody());
+        assertEquals(0.9, records.get(0).getProbabilities().get("spam"), 1e-12);
+    }
+    
+    @Test
+    public void testReplayCountsFlips() throws Exception {
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        
+        Path dir = tempDir.resolve("replay");
+        try (VerdictJournal journal = VerdictJournal.open(dir)) {
+            String spam = "Congratulations! You've won the lottery, buy now!";
+            String ham = "Please review the attached document before the meeting tomorrow.";
+            journal.append("old", classifier.classify(spam), spam);
+            journal.append("old", classifier.classify(ham), ham);
+            // Recorded with the wrong verdict, the candidate model flips it
+            journal.append("old", verdict(false), spam).get();
+        }
+        
+        JournalReplay.Report report = new JournalReplay(classifier, 2).replay(dir);
+        assertEquals(3, report.getRecords());
+        assertEquals(1, report.getFlips());
+        assertEquals(1L, report.getTransitions().get("ham->spam"));
+    }
+    
+    private static Map<String, Double> verdict(boolean spam) {
+        Map<String, Double> probabilities = new LinkedHashMap<>();
+        probabilities.put("spam", spam ? 0.9 : 0.1);
+        probabilities.put("ham", spam ? 0.1 : 0.9);
+        return probabilities;
+    }
+}
@@ -0,0 +1,74 @@
+package com.emailclassifier.model;
+
+import com.emailclassifier.utils.SyntheticCorpusGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for Deduplicator.
+ */
+public class DeduplicatorTest {
+    
+    @Test
+    public void testRemovesExactAndNearDuplicates() {
+        EmailPreprocessor preprocessor = new EmailPreprocessor();
+        Vocabulary vocabulary = new Vocabulary();
+        String base = "Congratulations winner you have been selected to receive a cash prize of one million dollars "
+            + "claim your reward today by replying with your bank details and full name before the offer expires "
+            + "this exclusive promotion is only available to our most valued customers act now";
+        String[] texts = {
+            base,
+            base,
+            base.replace("one million", "two million"),
+            "Meeting scheduled for tomorrow at 10 AM in the main conference room with the project team.",
+            "Please review the attached document and provide feedback before the end of the week."
+        };
+        String[] categories = {"spam", "spam", "spam", "ham", "spam"};
+        
+        List<EncodedSample> samples = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            String[] tokens = preprocessor.tokenize(preprocessor.preprocess(texts[i]));
+            samples.add(new EncodedSample(categories[i], vocabulary.encode(tokens)));
+        }
+        
+        DeduplicationReport report = new Deduplicator(0.7, 3, 100).deduplicate(samples);
+        assertEquals(1, report.getExactDuplicates());
+        assertEquals(1, report.getNearDuplicates());
+        assertEquals(3, report.getKept().size());
+        assertSame(samples.get(0), report.getKept().get(0));
+        assertEquals(2, (int) report.getRemovedPerCategory().get("spam"));
+        
+        // Remembering a single signature forgets the original once another message is kept
+        List<EncodedSample> reordered = List.of(samples.get(0), samples.get(3), samples.get(1), samples.get(2));
+        DeduplicationReport bounded = new Deduplicator(0.7, 3, 1).deduplicate(reordered);
+        assertEquals(1, bounded.getExactDuplicates());
+        assertEquals(0, bounded.getNearDuplicates());
+        assertEquals(3, bounded.getKept().size());
+    }
+    
+    @Test
+    public void testMeasuresTrainingTimeSaved() throws Exception {
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.setDeduplication(0.8, 1000);
+        classifier.setMeasureDeduplicationSavings(true);
+        Map<String, String[]> dataset = new SyntheticCorpusGenerator(11).dataset(60, 60);
+        String[] spam = dataset.get("spam");
+        String[] repeated = new String[spam.length * 3];
+        for (int i = 0; i < repeated.length; i++) {
+            repeated[i] = spam[i % spam.length];
+        }
+        dataset.put("spam", repeated);
+        classifier.train(dataset, progress -> { });
+        
+        DeduplicationReport report = classifier.getLastDeduplicationReport();
+        assertTrue(report.getRemoved() >= 2 * spam.length);
+        assertTrue(report.getTrainingMillis() >= 0);
+        assertTrue(report.getBaselineTrainingMillis() >= 0);
+        assertEquals(report.getBaselineTrainingMillis() - report.getTrainingMillis(), report.getTrainingMillisSaved());
+    }
+}
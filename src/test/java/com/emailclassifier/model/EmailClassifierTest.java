@@ -1,11 +1,22 @@
 package com.emailclassifier.model;
 
+import com.emailclassifier.TestCorpus;
+import opennlp.tools.doccat.DoccatModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,4 +86,311 @@ public class EmailClassifierTest {
         assertTrue(hamResult.containsKey("ham"));
         assertTrue(hamResult.get("ham") > hamResult.get("spam"), "Ham message should be classified as ham");
     }
+    
+    @Test
+    public void testParallelSegmentScoringMatchesWholeDocument() throws IOException {
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("Claim your free prize now. Meeting tomorrow to review the document. ");
+        }
+        String longEmail = sb.toString();
+        
+        Map<String, Double> whole = classifier.classify(longEmail);
+        classifier.setParallelScoringThreshold(1);
+        classifier.setSegmentSize(7);
+        Map<String, Double> segmented = classifier.classify(longEmail);
+        
+        assertEquals(whole.get("spam"), segmented.get("spam"), 1e-9);
+        assertEquals(whole.get("ham"), segmented.get("ham"), 1e-9);
+    }
+    
+    @Test
+    public void testClassifyWithDeadline() throws IOException {
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        
+        ClassificationResult relaxed = classifier.classify("Claim your free prize now!", Duration.ofSeconds(10));
+        assertEquals(ClassificationResult.Status.COMPLETE, relaxed.getStatus());
+        assertNull(relaxed.getExhaustedStage());
+        
+        ClassificationResult expired = classifier.classify("Claim your free prize now!", Duration.ZERO);
+        assertEquals(ClassificationResult.Status.FALLBACK, expired.getStatus());
+        assertEquals(ClassificationResult.Stage.PREPROCESS, expired.getExhaustedStage());
+        assertEquals(0.5, expired.getProbabilities().get("spam"), 1e-9);
+        
+        // Stage costs start from defaults, so a call with no history is already planned ahead
+        String longEmail = String.join(" ", Collections.nCopies(20000, "free prize"));
+        ClassificationResult tight = classifier.classify(longEmail, Duration.ofMillis(1));
+        assertNotEquals(ClassificationResult.Status.COMPLETE, tight.getStatus());
+        if (tight.getStatus() == ClassificationResult.Status.PARTIAL) {
+            assertEquals(ClassificationResult.Stage.PREPROCESS, tight.getExhaustedStage());
+        }
+        
+        DeadlineStats stats = classifier.getDeadlineStats();
+        assertEquals(3, stats.getCalls());
+        assertTrue(stats.getMisses(ClassificationResult.Stage.PREPROCESS) >= 1);
+    }
+    
+    @Test
+    public void testHashedNGramFeaturesSurviveSaveAndLoad() throws IOException {
+        classifier.setHashedNGramFeatures(2, 1 << 12);
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        
+        String email = "Claim your free prize now, then review the attached document.";
+        Map<String, Double> before = classifier.classify(email);
+        
+        Path modelFile = Files.createTempFile("ngram-model", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(modelFile)) {
+                classifier.getModel().serialize(out);
+            }
+            EmailClassifier loaded = new EmailClassifier();
+            loaded.loadModel(modelFile.toString());
+            
+            Map<String, Double> after = loaded.classify(email);
+            assertEquals(before.get("spam"), after.get("spam"), 1e-12);
+            
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 300; i++) {
+                sb.append(email).append(' ');
+            }
+            Map<String, Double> whole = loaded.classify(sb.toString());
+            loaded.setParallelScoringThreshold(1);
+            loaded.setSegmentSize(7);
+            Map<String, Double> segmented = loaded.classify(sb.toString());
+            assertEquals(whole.get("spam"), segmented.get("spam"), 1e-9);
+        } finally {
+            Files.deleteIfExists(modelFile);
+        }
+    }
+    
+    @Test
+    public void testFeatureSelectionIsSavedWithModel() throws IOException {
+        classifier.setFeatureSelection(FeatureSelector.Method.CHI_SQUARE, 6);
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        
+        String email = "Free money, claim your prize before the meeting tomorrow.";
+        Map<String, Double> before = classifier.classify(email);
+        
+        Path modelFile = Files.createTempFile("selected-model", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(modelFile)) {
+                classifier.getModel().serialize(out);
+            }
+            EmailClassifier loaded = new EmailClassifier();
+            loaded.loadModel(modelFile.toString());
+            
+            FeatureVocabulary vocabulary = ((EmailDoccatFactory) loaded.getModel().getFactory()).getSelectedVocabulary();
+            assertNotNull(vocabulary);
+            assertEquals(6, vocabulary.size());
+            assertEquals(before.get("spam"), loaded.classify(email).get("spam"), 1e-12);
+        } finally {
+            Files.deleteIfExists(modelFile);
+        }
+    }
+    
+    @Test
+    public void testCompressedModelKeepsPredictions() throws IOException {
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        String email = "Free money, claim your prize before the meeting tomorrow.";
+        Map<String, Double> before = classifier.classify(email);
+        
+        DoccatModel compressed = new ModelCompressor(0.0, 8).compress(classifier.getModel());
+        Path modelFile = Files.createTempFile("compressed-model", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(modelFile)) {
+                compressed.serialize(out);
+            }
+            EmailClassifier loaded = new EmailClassifier();
+            loaded.loadModel(modelFile.toString());
+            assertEquals(8, ((EmailDoccatFactory) loaded.getModel().getFactory()).getQuantizedWeights().getBits());
+            assertEquals(before.get("spam"), loaded.classify(email).get("spam"), 0.05);
+            
+            // Compressing again starts from the dequantized weights
+            DoccatModel recompressed = new ModelCompressor(0.0, 16).compress(loaded.getModel());
+            loaded.setModel(recompressed);
+            assertEquals(before.get("spam"), loaded.classify(email).get("spam"), 0.05);
+        } finally {
+            Files.deleteIfExists(modelFile);
+        }
+    }
+    
+    @Test
+    public void testBatchScoringMatchesSingleMessageScoring() throws IOException {
+        classifier.setHashedNGramFeatures(2, 1 << 12);
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        List<String> emails = Arrays.asList(
+            "Free money, claim your prize before the meeting tomorrow.",
+            "Please review the attached document.",
+            "Congratulations! You've won the lottery, buy now!",
+            "",
+            "The deadline for the project is next Friday, click here for the offer.");
+        
+        List<Map<String, Double>> batch = classifier.classifyBatch(emails);
+        assertEquals(emails.size(), batch.size());
+        for (int i = 0; i < emails.size(); i++) {
+            assertEquals(classifier.classify(emails.get(i)).get("spam"), batch.get(i).get("spam"), 1e-9);
+        }
+        
+        // The scalar fallback gives the same probabilities as the default kernel
+        BatchScorer vectorOrScalar = BatchScorer.forModel(classifier.getModel());
+        BatchScorer scalar = BatchScorer.forModel(classifier.getModel(), new ScalarScoringKernel());
+        List<int[]> documents = new ArrayList<>();
+        EmailPreprocessor preprocessor = new EmailPreprocessor();
+        for (String email : emails) {
+            documents.add(scalar.encode(preprocessor.tokenize(preprocessor.preprocess(email))));
+        }
+        double[][] expected = scalar.score(documents);
+        double[][] actual = vectorOrScalar.score(documents);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-9);
+        }
+    }
+    
+    @Test
+    public void testDomainReputationDecidesBeforeCategorizer() throws IOException {
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        Path blocklist = Files.createTempFile("blocklist", ".txt");
+        Path allowlist = Files.createTempFile("allowlist", ".txt");
+        try {
+            Files.write(blocklist, Arrays.asList("# spam domains", "cheap-pills.example"));
+            Files.write(allowlist, Arrays.asList("company.example"));
+            classifier.setDomainReputation(DomainReputation.load(blocklist, allowlist));
+            
+            String blocked = "Meeting tomorrow, see http://promo.cheap-pills.example/agenda";
+            assertEquals(1.0, classifier.classify(blocked).get("spam"), 1e-12);
+            
+            String allowed = "From: Alice <alice@company.example>\nFree money, claim your prize now!";
+            assertEquals(1.0, classifier.classify(allowed).get("ham"), 1e-12);
+            
+            String both = "From: bob@company.example\nVisit www.cheap-pills.example today";
+            assertTrue(classifier.classify(both).get("spam") < 1.0);
+            
+            // A link to a trusted site or a From: line quoted in the body never makes a message ham
+            String linked = "Free money, claim your prize at https://www.company.example/prize now!";
+            assertTrue(classifier.classify(linked).get("ham") < 1.0);
+            String quoted = "From: mallory@unknown.example\nSubject: prize\n\nFree money!\n"
+                    + "From: ceo@company.example\nClaim your prize now!";
+            assertTrue(classifier.classify(quoted).get("ham") < 1.0);
+            String replyElsewhere = "From: alice@company.example\nReply-To: alice@unknown.example\n\nFree money!";
+            assertTrue(classifier.classify(replyElsewhere).get("ham") < 1.0);
+            
+            CascadeStats stats = classifier.getCascadeStats();
+            assertEquals(6, stats.getCalls());
+            assertEquals(1, stats.getResolvedSpam());
+            assertEquals(1, stats.getResolvedHam());
+        } finally {
+            Files.deleteIfExists(blocklist);
+            Files.deleteIfExists(allowlist);
+        }
+    }
+    
+    @Test
+    public void testOutOfCoreTrainingIsSeededAndCleansUp() throws IOException {
+        Path spillDir = Files.createTempDirectory("spill");
+        try {
+            String email = "Free money, claim your prize before the meeting tomorrow.";
+            double[] spamProbability = new double[2];
+            for (int run = 0; run < 2; run++) {
+                EmailClassifier outOfCore = new EmailClassifier();
+                outOfCore.setOutOfCoreTraining(spillDir, 4, 42L);
+                outOfCore.train(TestCorpus.dataset(), progress -> { });
+                spamProbability[run] = outOfCore.classify(email).get("spam");
+                
+                try (Stream<Path> left = Files.list(spillDir)) {
+                    assertEquals(0, left.count(), "Spill files should be deleted after training");
+                }
+            }
+            assertEquals(spamProbability[0], spamProbability[1], 1e-12);
+        } finally {
+            Files.deleteIfExists(spillDir);
+        }
+    }
+
+    @Test
+    public void testWarmUpGatesReadiness() throws Exception {
+        assertFalse(classifier.isReady());
+        classifier.setWarmUpOnLoad(true);
+        classifier.setMaxWarmUp(Duration.ofSeconds(2));
+        classifier.setWarmUpSample(Arrays.asList(TestCorpus.dataset().get("spam")));
+        classifier.train(TestCorpus.dataset(), progress -> { });
+
+        assertTrue(classifier.awaitReady(Duration.ofSeconds(10)));
+        WarmUpReport report = classifier.getLastWarmUpReport();
+        assertNotNull(report);
+        assertTrue(report.getRounds() >= 1);
+        assertEquals(15, report.getSampleSize());
+        assertTrue(report.getElapsedMillis() < 5000, report.toString());
+    }
+
+    @Test
+    public void testBatchWaitsForBuiltInWarmUp() throws Exception {
+        classifier.setWarmUpOnLoad(true);
+        classifier.setMaxWarmUp(Duration.ofSeconds(2));
+        classifier.train(TestCorpus.dataset(), progress -> { });
+
+        List<Map<String, Double>> results = classifier.classifyBatch(Arrays.asList(TestCorpus.dataset().get("ham")));
+        assertEquals(15, results.size());
+        assertTrue(classifier.isReady());
+        // The sample shipped as a resource
+        assertEquals(40, classifier.getLastWarmUpReport().getSampleSize());
+    }
+
+    @Test
+    public void testShadowModelComparesVerdicts() throws Exception {
+        classifier.train(TestCorpus.dataset(), progress -> { });
+        classifier.setShadowModel(classifier.getModel(), 1.0);
+
+        String[] spam = TestCorpus.dataset().get("spam");
+        for (int i = 0; i < 20; i++) {
+            classifier.classify(spam[i % spam.length] + " #" + i);
+        }
+        ShadowStats stats = classifier.getShadowStats();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stats.getCompared() + stats.getDropped() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(20, stats.getSampled());
+        assertEquals(20, stats.getCompared() + stats.getDropped());
+        assertTrue(stats.getCompared() > 0);
+        assertEquals(1.0, stats.getAgreementRate(), 1e-9, stats.toString());
+        assertTrue(stats.getDisagreements().isEmpty());
+
+        classifier.setShadowModel(null, 0);
+        assertNull(classifier.getShadowStats());
+    }
+
+    @Test
+    public void testCancelledTrainingResumesFromCheckpoint() throws IOException {
+        Path checkpointDir = Files.createTempDirectory("checkpoint");
+        try {
+            classifier.setCheckpointDirectory(checkpointDir, 2);
+            assertThrows(TrainingCancelledException.class, () -> classifier.train(TestCorpus.dataset(), progress -> {
+                if (progress > 0.55) {
+                    classifier.cancelTraining();
+                }
+            }));
+            assertFalse(classifier.isModelTrained());
+            assertTrue(Files.exists(checkpointDir.resolve("corpus.bin")));
+            assertTrue(Files.exists(checkpointDir.resolve("model.bin")));
+
+            List<Double> progress = new ArrayList<>();
+            classifier.train(TestCorpus.dataset(), progress::add);
+            assertTrue(classifier.isModelTrained());
+            assertTrue(progress.get(0) >= 0.5, "Tokenized corpus should be restored, got " + progress.get(0));
+            assertTrue(progress.size() > 10, "Progress should be reported per iteration");
+            for (int i = 1; i < progress.size(); i++) {
+                assertTrue(progress.get(i) >= progress.get(i - 1), "Progress went backwards: " + progress);
+            }
+            assertEquals(1.0, progress.get(progress.size() - 1), 1e-9);
+
+            try (Stream<Path> left = Files.list(checkpointDir)) {
+                assertEquals(0, left.count(), "Checkpoint should be cleared after training");
+            }
+        } finally {
+            Files.deleteIfExists(checkpointDir);
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.emailclassifier.model;
+
+import com.emailclassifier.utils.SyntheticCorpusGenerator;
+import opennlp.tools.doccat.DoccatModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EmailPreprocessor and StopWordFilter.
+ */
+public class EmailPreprocessorTest {
+    
+    @Test
+    public void testEnglishStopWordsRemoved() {
+        EmailPreprocessor preprocessor = new EmailPreprocessor();
+        List<String> tokens = Arrays.asList(preprocessor.tokenize("the offer is valid for this week"));
+        
+        assertEquals(Arrays.asList("offer", "valid", "week"), tokens);
+    }
+    
+    @Test
+    public void testFrenchStopWordsPerMessage() {
+        EmailPreprocessor preprocessor = new EmailPreprocessor();
+        String text = preprocessor.preprocess("Vous avez été sélectionné pour gagner un prix");
+        List<String> tokens = Arrays.asList(preprocessor.tokenize(text, "fr"));
+        
+        assertEquals(Arrays.asList("sélectionné", "gagner", "prix"), tokens);
+    }
+    
+    @Test
+    public void testModelsKeepTheirPreprocessingVersion() throws Exception {
+        EmailPreprocessor legacy = new EmailPreprocessor("en", EmailPreprocessor.LEGACY_VERSION);
+        assertEquals("r servation confirm e", legacy.preprocess("Réservation confirmée"));
+        assertEquals("réservation confirmée", new EmailPreprocessor().preprocess("Réservation confirmée"));
+        
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(new SyntheticCorpusGenerator(7).dataset(40, 40), progress -> { });
+        assertEquals(EmailPreprocessor.CURRENT_VERSION, EmailPreprocessor.versionOf(classifier.getModel()));
+        assertEquals(EmailPreprocessor.CURRENT_VERSION,
+                EmailPreprocessor.versionOf(new ModelCompressor(0.0, 8).compress(classifier.getModel())));
+        
+        // Models saved before the version was recorded are served with the legacy cleaning
+        DoccatModel unversioned = new DoccatModel("en", classifier.getModel().getMaxentModel(), new HashMap<>(),
+                classifier.getModel().getFactory());
+        assertEquals(EmailPreprocessor.LEGACY_VERSION, EmailPreprocessor.versionOf(unversioned));
+    }
+    
+    @Test
+    public void testFilterProbesCharRange() {
+        StopWordFilter filter = StopWordFilter.of("test", Arrays.asList("to", "top"));
+        char[] buffer = "stop".toCharArray();
+        
+        assertTrue(filter.contains(buffer, 1, 4));
+        assertTrue(filter.contains(buffer, 1, 3));
+        assertFalse(filter.contains(buffer, 1, 2));
+        assertFalse(filter.contains(buffer, 0, 4));
+        assertEquals(2, filter.size());
+    }
+}
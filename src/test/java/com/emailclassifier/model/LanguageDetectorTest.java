@@ -0,0 +1,37 @@
+package com.emailclassifier.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LanguageDetector.
+ */
+public class LanguageDetectorTest {
+    private LanguageDetector detector;
+    
+    @BeforeEach
+    public void setUp() {
+        detector = LanguageDetector.fromResources("en", "en", "fr");
+    }
+    
+    @Test
+    public void testDetectsEnglishAndFrench() {
+        assertEquals("en", detector.detect("Hi John, could you send me the minutes of yesterday's meeting?"));
+        assertEquals("fr", detector.detect("Bonjour Marie, pourriez-vous m'envoyer le compte rendu de la réunion d'hier ?"));
+    }
+    
+    @Test
+    public void testSkipsHeaders() {
+        String email = "Subject: Meeting notes\nFrom: john@example.com\n\n"
+            + "Nous avons le plaisir de vous annoncer que votre commande est arrivée.";
+        assertEquals("fr", detector.detect(email));
+    }
+    
+    @Test
+    public void testFallsBackToDefaultOnShortText() {
+        assertEquals("en", detector.detect("ok"));
+        assertEquals("en", detector.detect(""));
+    }
+}
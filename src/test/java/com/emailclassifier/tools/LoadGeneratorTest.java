@@ -0,0 +1,47 @@
+package com.emailclassifier.tools;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.utils.SyntheticCorpusGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LoadGenerator.
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void testOpenLoopReportAndSlo() throws Exception {
+        SyntheticCorpusGenerator corpus = new SyntheticCorpusGenerator(5);
+        Map<String, String[]> dataset = corpus.dataset(30, 30);
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(dataset, progress -> { });
+
+        LoadGenerator generator = new LoadGenerator(classifier);
+        generator.setRate(200);
+        generator.setDuration(1, 0.2);
+        generator.setThreads(2);
+        LoadGenerator.Report report = generator.run(Arrays.asList(dataset.get("spam")));
+
+        assertEquals(200, report.getCount());
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getLatencyMillis(50) <= report.getLatencyMillis(99));
+        assertTrue(report.getLatencyMillis(99) <= report.getLatencyMillis(99.9));
+        assertTrue(report.getAllocatedBytesPerMessage() > 0);
+
+        LoadGenerator.Slo relaxed = new LoadGenerator.Slo();
+        relaxed.setP99Millis(60_000);
+        assertTrue(relaxed.violations(report).isEmpty());
+
+        LoadGenerator.Slo strict = new LoadGenerator.Slo();
+        strict.setP50Millis(0);
+        strict.setMinThroughputRatio(100);
+        List<String> violations = strict.violations(report);
+        assertEquals(2, violations.size(), violations.toString());
+    }
+}
@@ -0,0 +1,208 @@
+package com.emailclassifier.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DatasetLoader and the mailbox readers.
+ */
+public class DatasetLoaderTest {
+    @TempDir
+    Path tempDir;
+    
+    private DatasetLoader loader;
+    
+    @BeforeEach
+    public void setUp() {
+        loader = new DatasetLoader();
+    }
+    
+    @Test
+    public void testLoadRecursivelyWithTruncation() throws IOException {
+        Path spam = tempDir.resolve("spam");
+        Path ham = tempDir.resolve("ham");
+        Files.createDirectories(spam.resolve("nested"));
+        Files.createDirectories(ham);
+        Files.write(spam.resolve("1.eml"), "short".getBytes(StandardCharsets.UTF_8));
+        Files.write(spam.resolve("nested").resolve("2.eml"), "0123456789".getBytes(StandardCharsets.UTF_8));
+        Files.write(ham.resolve("3.eml"), "hello".getBytes(StandardCharsets.UTF_8));
+        
+        loader.setMaxMessageBytes(6);
+        loader.setReadConcurrency(2);
+        Map<String, String[]> flat = loader.loadFromDirectories(spam.toFile(), ham.toFile());
+        assertEquals(1, flat.get("spam").length);
+        
+        loader.setRecursive(true);
+        Map<String, String[]> nested = loader.loadFromDirectories(spam.toFile(), ham.toFile());
+        assertEquals(2, nested.get("spam").length);
+        assertTrue(List.of(nested.get("spam")).contains("012345"));
+        
+        assertTrue(loader.hasEnoughSamples(spam.toFile(), 2));
+        assertFalse(loader.hasEnoughSamples(spam.toFile(), 3));
+    }
+    
+    @Test
+    public void testParallelReadsKeepListingOrder() throws IOException {
+        Path spam = Files.createDirectories(tempDir.resolve("spam"));
+        Path ham = Files.createDirectories(tempDir.resolve("ham"));
+        for (int i = 0; i < 200; i++) {
+            // Varied sizes so that reads finish out of order
+            Files.write(spam.resolve(i + ".eml"), ("spam " + i + " ".repeat(i * 97 % 5000))
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(ham.resolve("0.eml"), "ham".getBytes(StandardCharsets.UTF_8));
+        
+        String[] sequential = loader.loadFromDirectories(spam.toFile(), ham.toFile()).get("spam");
+        loader.setReadConcurrency(8);
+        for (int run = 0; run < 3; run++) {
+            assertArrayEquals(sequential, loader.loadFromDirectories(spam.toFile(), ham.toFile()).get("spam"));
+        }
+    }
+    
+    @Test
+    public void testMboxSplitsOnFromLines() throws IOException {
+        Path mbox = tempDir.resolve("inbox.mbox");
+        Files.write(mbox, String.join("\n",
+            "From alice@example.com Mon Jan  1 00:00:00 2024",
+            "Subject: first",
+            "",
+            "Hello",
+            ">From the archive",
+            "",
+            "From bob@example.com Mon Jan  1 00:00:01 2024",
+            "Subject: second",
+            "",
+            "World",
+            "").getBytes(StandardCharsets.UTF_8));
+        
+        List<String> messages = readAll(loader.openMailbox(mbox));
+        
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).startsWith("Subject: first"));
+        assertTrue(messages.get(0).contains("\nFrom the archive\n"));
+        assertTrue(messages.get(1).contains("World"));
+    }
+    
+    @Test
+    public void testMaildirReadsCurAndNew() throws IOException {
+        Path maildir = tempDir.resolve("Maildir");
+        Files.createDirectories(maildir.resolve("cur"));
+        Files.createDirectories(maildir.resolve("new"));
+        Files.createDirectories(maildir.resolve("tmp"));
+        Files.write(maildir.resolve("cur").resolve("1.host:2,S"), "seen".getBytes(StandardCharsets.UTF_8));
+        Files.write(maildir.resolve("new").resolve("2.host"), "unseen".getBytes(StandardCharsets.UTF_8));
+        Files.write(maildir.resolve("tmp").resolve("3.host"), "partial".getBytes(StandardCharsets.UTF_8));
+        
+        List<String> messages = readAll(loader.openMailbox(maildir));
+        
+        assertEquals(2, messages.size());
+        assertTrue(messages.contains("seen"));
+        assertTrue(messages.contains("unseen"));
+    }
+    
+    @Test
+    public void testOpenMailboxRejectsPlainDirectory() {
+        assertThrows(IOException.class, () -> loader.openMailbox(tempDir));
+    }
+    
+    @Test
+    public void testStreamArchivesLabelsByPathPrefix() throws IOException {
+        Path archive = tempDir.resolve("corpus.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(zip, "spam/0001", "win money");
+            writeEntry(zip, "easy_ham/0002", "see you tomorrow");
+            writeEntry(zip, "README", "not a message");
+        }
+        
+        Map<String, String> received = new ConcurrentHashMap<>();
+        Map<String, Integer> counts = loader.streamArchives(List.of(archive), ArchiveLabeler.DEFAULT, 2,
+            (label, text) -> received.put(text, label));
+        
+        assertEquals(1, counts.get("spam"));
+        assertEquals(1, counts.get("ham"));
+        assertEquals("spam", received.get("win money"));
+        assertEquals("ham", received.get("see you tomorrow"));
+        assertFalse(received.containsKey("not a message"));
+    }
+    
+    @Test
+    public void testStreamArchivesMatchesWholeLabelsAndPaxPaths() throws IOException {
+        Path archive = tempDir.resolve("20030228_corpus.tar");
+        String longPath = "corpus/" + "nested/".repeat(20) + "spam/0001";
+        String paxRecord = " path=" + longPath + "\n";
+        // The record length counts its own digits
+        String pax = (paxRecord.length() + 3) + paxRecord;
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            writeTarEntry(out, "PaxHeaders/0001", 'x', pax);
+            writeTarEntry(out, "truncated-name", '0', "win money");
+            writeTarEntry(out, "graham/0002", '0', "lunch with graham");
+            writeTarEntry(out, "champion/0003", '0', "league results");
+            writeTarEntry(out, "hard_ham_2/0004", '0', "see you tomorrow");
+            out.write(new byte[1024]);
+        }
+        
+        Map<String, String> received = new ConcurrentHashMap<>();
+        Map<String, Integer> counts = loader.streamArchives(List.of(archive), ArchiveLabeler.DEFAULT, 1,
+            (label, text) -> received.put(text, label));
+        
+        assertEquals(Map.of("win money", "spam", "see you tomorrow", "ham"), received);
+        assertEquals(1, counts.get("spam"));
+        assertEquals("spam", ArchiveLabeler.DEFAULT.label(tempDir.resolve("20030228_spam_2.tar.gz"), "0001"));
+        assertNull(ArchiveLabeler.DEFAULT.label(tempDir.resolve("hamburg.zip"), "shampoo/0001"));
+    }
+    
+    private void writeTarEntry(OutputStream out, String name, char type, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[512];
+        System.arraycopy(name.getBytes(StandardCharsets.UTF_8), 0, header, 0, name.length());
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, data.length);
+        putOctal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 8, checksum);
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+    
+    private void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+    
+    private void writeEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+    
+    private List<String> readAll(MailReader reader) throws IOException {
+        List<String> messages = new ArrayList<>();
+        try (MailReader r = reader) {
+            r.forEachRemaining(messages::add);
+        }
+        return messages;
+    }
+}
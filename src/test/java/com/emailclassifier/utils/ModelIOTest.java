@@ -0,0 +1,88 @@
+package com.emailclassifier.utils;
+
+import com.emailclassifier.model.EmailClassifier;
+import com.emailclassifier.model.EmailDoccatFactory;
+import com.emailclassifier.model.FeatureSelector;
+import opennlp.tools.doccat.DoccatModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ModelIO.
+ */
+public class ModelIOTest {
+    private static final String EMAIL = "Claim your free prize now, then review the attached document.";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSavedModelLoadsWithOpenNlpAndModelIO() throws Exception {
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.setFeatureSelection(FeatureSelector.Method.CHI_SQUARE, 50);
+        classifier.train(new SyntheticCorpusGenerator(3).dataset(40, 40), progress -> { });
+        Map<String, Double> before = classifier.classify(EMAIL);
+
+        Path modelFile = tempDir.resolve("models").resolve("model.bin");
+        Files.createDirectories(modelFile.getParent());
+        Files.write(modelFile, new byte[] {1, 2, 3});
+        ModelIO.saveModel(classifier.getModel(), modelFile.toString(), 9);
+        // The previous model is replaced and no temporary file is left behind
+        try (Stream<Path> files = Files.list(modelFile.getParent())) {
+            assertEquals(1, files.count());
+        }
+
+        EmailClassifier loaded = new EmailClassifier();
+        loaded.loadModel(modelFile.toString());
+        assertEquals(before.get("spam"), loaded.classify(EMAIL).get("spam"), 1e-12);
+        assertEquals(50, ((EmailDoccatFactory) loaded.getModel().getFactory()).getSelectedVocabulary().size());
+
+        // The checksum lives in the archive comment, plain OpenNLP still reads the file
+        try (InputStream in = Files.newInputStream(modelFile)) {
+            assertNotNull(new DoccatModel(in));
+        }
+
+        // Models written by OpenNLP itself carry no checksum and still load
+        Path plainFile = tempDir.resolve("plain.bin");
+        try (OutputStream out = Files.newOutputStream(plainFile)) {
+            classifier.getModel().serialize(out);
+        }
+        assertNotNull(ModelIO.loadModel(plainFile.toString()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ModelIO.saveModel(classifier.getModel(), modelFile.toString(), 10));
+    }
+
+    @Test
+    public void testCorruptedOrTruncatedModelIsRejected() throws Exception {
+        EmailClassifier classifier = new EmailClassifier();
+        classifier.train(new SyntheticCorpusGenerator(5).dataset(40, 40), progress -> { });
+
+        Path modelFile = tempDir.resolve("model.bin");
+        Path saved = ModelIO.saveModelAsync(classifier.getModel(), modelFile.toString(), 0).get(30, TimeUnit.SECONDS);
+        assertEquals(modelFile, saved);
+
+        byte[] content = Files.readAllBytes(modelFile);
+        // Detected by the checksum before OpenNLP decodes anything
+        content[content.length / 2] ^= 0x10;
+        Files.write(modelFile, content);
+        IOException corrupted = assertThrows(IOException.class, () -> ModelIO.loadModel(modelFile.toString()));
+        assertTrue(corrupted.getMessage().contains("corrompu"), corrupted.getMessage());
+
+        content[content.length / 2] ^= 0x10;
+        Files.write(modelFile, Arrays.copyOf(content, content.length - 40));
+        assertThrows(IOException.class, () -> ModelIO.loadModel(modelFile.toString()));
+    }
+}
@@ -0,0 +1,85 @@
+package com.emailclassifier.utils;
+
+import com.emailclassifier.model.EmailClassifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SyntheticCorpusGenerator.
+ */
+public class SyntheticCorpusGeneratorTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSameSeedGivesSameCorpus() {
+        SyntheticCorpusGenerator first = new SyntheticCorpusGenerator(7);
+        SyntheticCorpusGenerator second = new SyntheticCorpusGenerator(7);
+        second.setParallelism(1);
+
+        Map<String, String[]> dataset = first.dataset(1500, 10);
+        Iterator<String> streamed = second.stream("spam", 1500);
+        for (String message : dataset.get("spam")) {
+            assertEquals(message, streamed.next());
+        }
+        assertFalse(streamed.hasNext());
+        assertNotEquals(first.generate("spam", 3), new SyntheticCorpusGenerator(8).generate("spam", 3));
+        assertNotEquals(first.generate("spam", 3), first.generate("ham", 3));
+    }
+
+    @Test
+    public void testProfileShapesMessages() {
+        SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator(1);
+        SyntheticCorpusGenerator.Profile profile = generator.getProfile("ham");
+        profile.setSize(400, 0);
+        profile.setHtmlRatio(1);
+        profile.setAttachmentRatio(0);
+
+        String message = generator.generate("ham", 0);
+        assertTrue(message.startsWith("From: "));
+        assertTrue(message.contains("Content-Type: text/html"));
+        assertFalse(message.contains("multipart/mixed"));
+        assertTrue(message.length() < 2000, "Fixed-size body of 400 bytes: " + message.length());
+
+        assertThrows(IllegalArgumentException.class, () -> profile.setHtmlRatio(1.5));
+    }
+
+    @Test
+    public void testWrittenLayoutsAreReadBack() throws IOException {
+        SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator(3);
+        generator.writeDirectory(tempDir.resolve("spam"), "spam", 40);
+        generator.writeDirectory(tempDir.resolve("ham"), "ham", 40);
+        generator.writeMbox(tempDir.resolve("spam.mbox"), "spam", 25);
+        generator.writeMaildir(tempDir.resolve("ham.maildir"), "ham", 25);
+
+        DatasetLoader loader = new DatasetLoader();
+        Map<String, String[]> dataset = loader.loadFromDirectories(
+            tempDir.resolve("spam").toFile(), tempDir.resolve("ham").toFile());
+        assertEquals(40, dataset.get("spam").length);
+        assertEquals(40, dataset.get("ham").length);
+
+        assertEquals(25, count(loader.openMailbox(tempDir.resolve("spam.mbox"))));
+        assertEquals(25, count(loader.openMailbox(tempDir.resolve("ham.maildir"))));
+
+        EmailClassifier classifier = new EmailClassifier();
+        assertTrue(classifier.train(dataset, progress -> { }) > 0.8);
+    }
+
+    private static int count(MailReader reader) throws IOException {
+        int count = 0;
+        try (MailReader messages = reader) {
+            while (messages.hasNext()) {
+                assertTrue(messages.next().contains("Subject: "));
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,74 @@
+package com.emailclassifier.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scoring kernel built on jdk.incubator.vector. Weights are gathered a vector
+ * of feature ids at a time, and the softmax runs across documents so that all
+ * lanes are used even with only two outcomes.
+ *
+ * Kept in its own source set, compiled with --add-modules jdk.incubator.vector
+ * into the same output as the rest of the tree (see run.sh), so that the main
+ * sources build without the incubator module. Only loaded through BatchScorer
+ * once the module is known to be present.
+ */
+class VectorScoringKernel implements ScoringKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void sum(double[][] weights, int[] featureIds, double[] sums) {
+        int bound = SPECIES.loopBound(featureIds.length);
+        for (int o = 0; o < weights.length; o++) {
+            double[] outcomeWeights = weights[o];
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                acc = acc.add(DoubleVector.fromArray(SPECIES, outcomeWeights, 0, featureIds, i));
+            }
+            double sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < featureIds.length; i++) {
+                sum += outcomeWeights[featureIds[i]];
+            }
+            sums[o] = sum;
+        }
+    }
+
+    @Override
+    public void softmax(double[][] sums, int count) {
+        int bound = SPECIES.loopBound(count);
+        int d = 0;
+        for (; d < bound; d += SPECIES.length()) {
+            DoubleVector max = DoubleVector.fromArray(SPECIES, sums[0], d);
+            for (int o = 1; o < sums.length; o++) {
+                max = max.max(DoubleVector.fromArray(SPECIES, sums[o], d));
+            }
+            DoubleVector normal = DoubleVector.zero(SPECIES);
+            for (double[] outcome : sums) {
+                DoubleVector e = DoubleVector.fromArray(SPECIES, outcome, d).sub(max).lanewise(VectorOperators.EXP);
+                e.intoArray(outcome, d);
+                normal = normal.add(e);
+            }
+            for (double[] outcome : sums) {
+                DoubleVector.fromArray(SPECIES, outcome, d).div(normal).intoArray(outcome, d);
+            }
+        }
+
+        // Tail documents that do not fill a vector
+        for (; d < count; d++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] outcome : sums) {
+                max = Math.max(max, outcome[d]);
+            }
+            double normal = 0;
+            for (double[] outcome : sums) {
+                outcome[d] = StrictMath.exp(outcome[d] - max);
+                normal += outcome[d];
+            }
+            for (double[] outcome : sums) {
+                outcome[d] /= normal;
+            }
+        }
+    }
+}